@@ -0,0 +1,52 @@
+#!/usr/bin/env python3
+"""Catálogo de libros simulado detrás del Gateway: responde a POST /ms-books-catalogue/books/{isbn}
+con un libro visible y con existencias tras --latency segundos, como una llamada real por la red.
+Las peticiones PATCH (ocultar el libro) responden 200 sin cuerpo.
+"""
+import argparse
+import json
+import time
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+
+def handler(latency, stock):
+    class CatalogueHandler(BaseHTTPRequestHandler):
+        protocol_version = "HTTP/1.1"
+
+        def do_POST(self):
+            body = self.rfile.read(int(self.headers.get("Content-Length") or 0))
+            if latency:
+                time.sleep(latency)
+            if b'"PATCH"' in body:
+                self.send_response(200)
+                self.send_header("Content-Length", "0")
+                self.end_headers()
+                return
+            isbn = self.path.rsplit("/", 1)[-1]
+            book = json.dumps({"bookId": 1, "title": "Load test", "isbn": isbn, "visible": True,
+                               "stock": stock}).encode()
+            self.send_response(200)
+            self.send_header("Content-Type", "application/json")
+            self.send_header("Content-Length", str(len(book)))
+            self.end_headers()
+            self.wfile.write(book)
+
+        def log_message(self, *args):
+            pass
+
+    return CatalogueHandler
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Catálogo de libros simulado")
+    parser.add_argument("--port", type=int, default=8762)
+    parser.add_argument("--latency", type=float, default=0.0, help="Segundos de espera por respuesta")
+    parser.add_argument("--stock", type=int, default=1_000_000)
+    args = parser.parse_args()
+    ThreadingHTTPServer.request_queue_size = 1024
+    ThreadingHTTPServer.daemon_threads = True
+    ThreadingHTTPServer(("127.0.0.1", args.port), handler(args.latency, args.stock)).serve_forever()
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,91 @@
+#!/usr/bin/env bash
+# Funciones compartidas por los escenarios de carga: construir la aplicación, arrancarla con H2 en memoria
+# frente al catálogo simulado y pararla. Los escenarios se ejecutan desde cualquier directorio.
+set -euo pipefail
+
+LOAD_DIR=$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)
+PROJECT_DIR=$(cd "$LOAD_DIR/../.." && pwd)
+RESULTS_DIR="$LOAD_DIR/results"
+JAR="$PROJECT_DIR/target/books-payments-0.0.1-SNAPSHOT.jar"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+APP_PORT=${APP_PORT:-8089}
+STUB_PORT=${STUB_PORT:-8762}
+APP_URL="http://localhost:$APP_PORT"
+# Base de datos de la aplicación; por defecto H2 en memoria (cada arranque empieza vacío)
+DATASOURCE_ARGS=${DATASOURCE_ARGS:---spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1 --spring.datasource.driver-class-name=org.h2.Driver --spring.datasource.username=sa --spring.datasource.password=}
+
+APP_PID=""
+STUB_PID=""
+
+# build [argumentos de Maven...]: empaqueta la aplicación si no hay jar (o con REBUILD=1)
+build() {
+    if [[ ! -f "$JAR" || -n "${REBUILD:-}" ]]; then
+        (cd "$PROJECT_DIR" && mvn -B -q -DskipTests package "$@")
+    fi
+}
+
+# jar_contains <entrada>: el jar empaquetado incluye esa entrada (p. ej. una clase de un perfil de Maven)
+jar_contains() {
+    python3 -c 'import sys, zipfile; sys.exit(sys.argv[2] not in zipfile.ZipFile(sys.argv[1]).namelist())' "$JAR" "$1"
+}
+
+# start_stub <latencia en segundos>
+start_stub() {
+    python3 "$LOAD_DIR/catalogue_stub.py" --port "$STUB_PORT" --latency "$1" &
+    STUB_PID=$!
+}
+
+# start_app <fichero de log> [argumentos de la aplicación...]; espera a que la aplicación acepte peticiones
+start_app() {
+    local log=$1
+    shift
+    # shellcheck disable=SC2086
+    "$JAVA" ${JAVA_OPTS:-} -jar "$JAR" --server.port="$APP_PORT" --gateway.url="http://localhost:$STUB_PORT" \
+        --eureka.client.enabled=false $DATASOURCE_ARGS "$@" > "$log" 2>&1 &
+    APP_PID=$!
+    for _ in $(seq 1 120); do
+        if grep -q "Started BooksApplication" "$log"; then
+            return 0
+        fi
+        if ! kill -0 "$APP_PID" 2> /dev/null; then
+            echo "La aplicación no ha arrancado, ver $log" >&2
+            return 1
+        fi
+        sleep 1
+    done
+    echo "La aplicación no ha arrancado en 120 s, ver $log" >&2
+    return 1
+}
+
+stop_app() {
+    if [[ -n "$APP_PID" ]]; then
+        kill "$APP_PID" 2> /dev/null || true
+        wait "$APP_PID" 2> /dev/null || true
+        APP_PID=""
+    fi
+}
+
+stop_all() {
+    stop_app
+    if [[ -n "$STUB_PID" ]]; then
+        kill "$STUB_PID" 2> /dev/null || true
+        wait "$STUB_PID" 2> /dev/null || true
+        STUB_PID=""
+    fi
+}
+
+trap stop_all EXIT
+
+# load <etiqueta> <fichero de resultados> [argumentos de loadgen.py...]
+load() {
+    local label=$1 results=$2
+    shift 2
+    python3 "$LOAD_DIR/loadgen.py" --label "$label" --json "$results" "$@"
+}
+
+# Cabecera de un fichero de resultados con el entorno de la medición
+describe_environment() {
+    echo "# $1"
+    echo "# $(date -u +%Y-%m-%dT%H:%M:%SZ) - $(nproc) CPU - $("$JAVA" -version 2>&1 | head -1)"
+    echo "# commit $(git -C "$PROJECT_DIR" rev-parse --short HEAD)"
+}
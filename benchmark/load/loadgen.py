@@ -0,0 +1,135 @@
+#!/usr/bin/env python3
+"""Generador de carga HTTP/1.1 de modelo cerrado: N conexiones keep-alive, cada una envía la siguiente
+petición al recibir la respuesta anterior. Solo biblioteca estándar (asyncio), para que el generador
+consuma poca CPU junto a la aplicación en la misma máquina.
+
+    loadgen.py --url http://localhost:8089/purchases --method POST \\
+               --body '{"bookId": "load-{i}", "quantity": 1, "buyer": "load@example.com", "status": "PENDING"}' \\
+               --requests 2000 --concurrency 100 --warmup 200
+
+{i} en la URL o el cuerpo se sustituye por el número de petición. Imprime una línea con el resumen
+(peticiones por segundo, latencias y errores) y, con --json, la añade a ese fichero.
+"""
+import argparse
+import asyncio
+import json
+import os
+import time
+from urllib.parse import urlsplit
+
+
+async def read_response(reader):
+    status_line = await reader.readline()
+    if not status_line:
+        raise ConnectionError("conexión cerrada por el servidor")
+    status = int(status_line.split()[1])
+    length, chunked, close = None, False, False
+    while True:
+        line = await reader.readline()
+        if line in (b"\r\n", b""):
+            break
+        name, _, value = line.decode("latin-1").partition(":")
+        name, value = name.strip().lower(), value.strip().lower()
+        if name == "content-length":
+            length = int(value)
+        elif name == "transfer-encoding" and "chunked" in value:
+            chunked = True
+        elif name == "connection" and value == "close":
+            close = True
+    if chunked:
+        while True:
+            size = int((await reader.readline()).split(b";")[0], 16)
+            await reader.readexactly(size + 2)
+            if size == 0:
+                break
+    elif length:
+        await reader.readexactly(length)
+    return status, close
+
+
+async def worker(args, target, counter, total, latencies, errors):
+    reader = writer = None
+    while True:
+        i = counter[0]
+        if i >= total:
+            break
+        counter[0] += 1
+        path = target.path.replace("{i}", str(i))
+        body = args.body.replace("{i}", str(i)).encode() if args.body else b""
+        request = (f"{args.method} {path} HTTP/1.1\r\nHost: {target.netloc}\r\n"
+                   + "".join(f"{h}\r\n" for h in args.header)
+                   + (f"Content-Type: application/json\r\nContent-Length: {len(body)}\r\n" if body else "")
+                   + "\r\n").encode() + body
+        start = time.perf_counter()
+        try:
+            if writer is None:
+                reader, writer = await asyncio.open_connection(target.hostname, target.port or 80)
+            writer.write(request)
+            status, close = await asyncio.wait_for(read_response(reader), args.timeout)
+            if status >= 400:
+                errors[status] = errors.get(status, 0) + 1
+            if close:
+                writer.close()
+                writer = None
+        except (OSError, asyncio.TimeoutError, asyncio.IncompleteReadError, ConnectionError) as e:
+            errors[type(e).__name__] = errors.get(type(e).__name__, 0) + 1
+            if writer is not None:
+                writer.close()
+            writer = None
+        latencies.append(time.perf_counter() - start)
+    if writer is not None:
+        writer.close()
+
+
+async def run(args, total, offset=0):
+    target = urlsplit(args.url)
+    target = target._replace(path=(target.path or "/") + (f"?{target.query}" if target.query else ""))
+    counter, latencies, errors = [offset], [], {}
+    start = time.perf_counter()
+    await asyncio.gather(*(worker(args, target, counter, offset + total, latencies, errors)
+                           for _ in range(args.concurrency)))
+    return time.perf_counter() - start, sorted(latencies), errors
+
+
+def percentile(values, p):
+    return values[min(len(values) - 1, int(len(values) * p))] * 1000 if values else 0
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Generador de carga HTTP de modelo cerrado")
+    parser.add_argument("--url", required=True)
+    parser.add_argument("--method", default="GET")
+    parser.add_argument("--body")
+    parser.add_argument("--header", action="append", default=[], help="Cabecera adicional, 'Nombre: valor'")
+    parser.add_argument("--requests", type=int, default=1000)
+    parser.add_argument("--concurrency", type=int, default=50)
+    parser.add_argument("--warmup", type=int, default=0, help="Peticiones previas que no se miden")
+    parser.add_argument("--timeout", type=float, default=60)
+    parser.add_argument("--label", default="")
+    parser.add_argument("--json", help="Fichero al que se añade el resultado (una línea JSON)")
+    args = parser.parse_args()
+
+    if args.warmup:
+        asyncio.run(run(args, args.warmup))
+    elapsed, latencies, errors = asyncio.run(run(args, args.requests, args.warmup))
+    result = {
+        "label": args.label, "requests": args.requests, "concurrency": args.concurrency,
+        "rps": round(args.requests / elapsed, 1),
+        "p50_ms": round(percentile(latencies, 0.50), 1),
+        "p95_ms": round(percentile(latencies, 0.95), 1),
+        "p99_ms": round(percentile(latencies, 0.99), 1),
+        "max_ms": round(latencies[-1] * 1000, 1) if latencies else 0,
+        "errors": errors,
+        # CPU disponibles para este proceso (como nproc): la aplicación y el generador comparten máquina
+        "cpus": len(os.sched_getaffinity(0)),
+    }
+    print(f"{args.label:<28} n={args.requests} c={args.concurrency} rps={result['rps']} "
+          f"p50={result['p50_ms']}ms p95={result['p95_ms']}ms p99={result['p99_ms']}ms "
+          f"max={result['max_ms']}ms errors={errors or 0}")
+    if args.json:
+        with open(args.json, "a") as out:
+            out.write(json.dumps(result) + "\n")
+
+
+if __name__ == "__main__":
+    main()
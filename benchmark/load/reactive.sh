@@ -0,0 +1,61 @@
+#!/usr/bin/env bash
+# Pila servlet (Spring MVC, JPA/JDBC, RestTemplate) frente al perfil reactive (WebFlux, R2DBC, WebClient) con dos
+# cargas: POST /purchases, cuya latencia domina la llamada al catálogo, y GET /purchases?limit=20, que solo
+# consulta la base de datos. Ambas pilas usan el mismo pool hacia el catálogo y el mismo número de conexiones a
+# la base de datos (Hikari con el tamaño del pool de R2DBC).
+#
+#   benchmark/load/reactive.sh                   resultados en benchmark/load/results/reactive.txt
+#
+# Variables: CATALOGUE_LATENCY (s, 0.2), REQUESTS (2000), CONCURRENCY (200), DB_POOL (20). R2DBC_ARGS sustituye
+# la conexión R2DBC junto con DATASOURCE_ARGS (common.sh), p. ej. para medir sobre el PostgreSQL local:
+#   DATASOURCE_ARGS=--spring.datasource.url=jdbc:postgresql://localhost:5432/catalogue \
+#   R2DBC_ARGS=--spring.r2dbc.url=r2dbc:postgresql://localhost:5432/catalogue benchmark/load/reactive.sh
+source "$(dirname "$0")/common.sh"
+
+CATALOGUE_LATENCY=${CATALOGUE_LATENCY:-0.2}
+REQUESTS=${REQUESTS:-2000}
+CONCURRENCY=${CONCURRENCY:-200}
+DB_POOL=${DB_POOL:-20}
+R2DBC_ARGS=${R2DBC_ARGS:---spring.r2dbc.url=r2dbc:h2:mem:///load?options=DB_CLOSE_DELAY=-1 --spring.r2dbc.username=sa --spring.r2dbc.password=}
+RESULTS="$RESULTS_DIR/reactive.jsonl"
+SUMMARY="$RESULTS_DIR/reactive.txt"
+
+# La pila reactiva solo se empaqueta con el perfil de Maven reactive; un jar construido sin él se rehace
+if [[ -f "$JAR" ]] && ! jar_contains BOOT-INF/classes/com/unir/payments/config/ReactiveConfig.class; then
+    REBUILD=1
+fi
+build -Preactive
+rm -f "$RESULTS"
+describe_environment "POST /purchases (catálogo con ${CATALOGUE_LATENCY}s de latencia) y GET /purchases?limit=20" > "$SUMMARY"
+start_stub "$CATALOGUE_LATENCY"
+
+# Como en virtual-threads.sh: el pool hacia el catálogo no limita y las llamadas lentas no abren el circuito.
+# Con la máquina saturada el catálogo simulado tarda más que catalogue.http.read-timeout, y unos pocos errores
+# seguidos dejarían el resto de la medición en 503: se amplía el plazo y solo abre el circuito un fallo total
+# (los errores siguen contándose en errors)
+CATALOGUE_POOL="--catalogue.http.max-connections-per-route=$CONCURRENCY --catalogue.http.max-connections=$CONCURRENCY \
+    --resilience4j.bulkhead.instances.booksCatalogue.max-concurrent-calls=$CONCURRENCY \
+    --resilience4j.circuitbreaker.instances.booksCatalogue.slow-call-duration-threshold=60s \
+    --resilience4j.circuitbreaker.instances.booksCatalogue.failure-rate-threshold=100 --catalogue.http.read-timeout=30s"
+# R2DBC sobre la misma base de datos que migra Flyway por JDBC (por defecto la H2 en memoria), con la misma espera
+# máxima por una conexión que Hikari (30 s; la de application.yml, 2 s, convertiría la cola en errores 500).
+# Sin data.sql: el inicializador de R2DBC lo ejecutaría antes de que Flyway cree las tablas
+REACTIVE="--spring.profiles.active=reactive $R2DBC_ARGS --spring.r2dbc.pool.max-size=$DB_POOL \
+    --spring.r2dbc.pool.max-acquire-time=30s --spring.sql.init.mode=never"
+
+for stack in mvc reactive; do
+    if [[ $stack == mvc ]]; then
+        # shellcheck disable=SC2086
+        start_app "$RESULTS_DIR/$stack.log" --spring.datasource.hikari.maximum-pool-size="$DB_POOL" $CATALOGUE_POOL
+    else
+        # shellcheck disable=SC2086
+        start_app "$RESULTS_DIR/$stack.log" $REACTIVE $CATALOGUE_POOL
+    fi
+    load "$stack POST" "$RESULTS" --url "$APP_URL/purchases" --method POST \
+        --body "{\"bookId\": \"$stack-{i}\", \"quantity\": 1, \"buyer\": \"load@example.com\", \"status\": \"PENDING\"}" \
+        --requests "$REQUESTS" --concurrency "$CONCURRENCY" --warmup "$CONCURRENCY" | tee -a "$SUMMARY"
+    # Sobre las compras que acaba de registrar la carga anterior
+    load "$stack GET" "$RESULTS" --url "$APP_URL/purchases?limit=20" \
+        --requests "$REQUESTS" --concurrency "$CONCURRENCY" --warmup "$CONCURRENCY" | tee -a "$SUMMARY"
+    stop_app
+done
@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+# Hilos de plataforma frente a hilos virtuales (spring.threads.virtual.enabled) en POST /purchases, cuya
+# latencia la domina la llamada al catálogo. Con hilos de plataforma el pool de Tomcat (PLATFORM_THREADS)
+# limita las peticiones en curso; con hilos virtuales el límite pasa a ser el pool HTTP del catálogo.
+#
+#   benchmark/load/virtual-threads.sh            resultados en benchmark/load/results/virtual-threads.txt
+#
+# La comparación solo es significativa con CPU libre: con menos de MIN_CPUS CPU (4) la aplicación, el catálogo
+# simulado y el generador se reparten la CPU, el límite deja de ser el pool de Tomcat y el resultado lo avisa.
+#
+# Variables: CATALOGUE_LATENCY (s, 0.2), REQUESTS (2000), CONCURRENCY (200), PLATFORM_THREADS (50), MIN_CPUS (4)
+source "$(dirname "$0")/common.sh"
+
+CATALOGUE_LATENCY=${CATALOGUE_LATENCY:-0.2}
+REQUESTS=${REQUESTS:-2000}
+CONCURRENCY=${CONCURRENCY:-200}
+PLATFORM_THREADS=${PLATFORM_THREADS:-50}
+MIN_CPUS=${MIN_CPUS:-4}
+CPUS=$(nproc)
+RESULTS="$RESULTS_DIR/virtual-threads.jsonl"
+SUMMARY="$RESULTS_DIR/virtual-threads.txt"
+
+build
+rm -f "$RESULTS"
+describe_environment "POST /purchases, catálogo con ${CATALOGUE_LATENCY}s de latencia" > "$SUMMARY"
+if (( CPUS < MIN_CPUS )); then
+    echo "# AVISO: $CPUS CPU (nproc), menos de $MIN_CPUS: resultado limitado por la CPU, no por el pool de hilos" \
+        | tee -a "$SUMMARY" >&2
+fi
+start_stub "$CATALOGUE_LATENCY"
+
+# El mismo pool hacia el catálogo en ambos modos, para que solo cambie el modelo de hilos. Las llamadas lentas
+# no abren el circuito: con la máquina saturada el catálogo simulado tarda más de slow-call-duration-threshold
+CATALOGUE_POOL="--catalogue.http.max-connections-per-route=$CONCURRENCY --catalogue.http.max-connections=$CONCURRENCY \
+    --resilience4j.bulkhead.instances.booksCatalogue.max-concurrent-calls=$CONCURRENCY \
+    --resilience4j.circuitbreaker.instances.booksCatalogue.slow-call-duration-threshold=60s"
+
+for mode in platform virtual; do
+    if [[ $mode == platform ]]; then
+        # shellcheck disable=SC2086
+        start_app "$RESULTS_DIR/$mode.log" --spring.threads.virtual.enabled=false \
+            --server.tomcat.threads.max="$PLATFORM_THREADS" $CATALOGUE_POOL
+        label="platform (${PLATFORM_THREADS} threads)"
+    else
+        # shellcheck disable=SC2086
+        start_app "$RESULTS_DIR/$mode.log" --spring.threads.virtual.enabled=true $CATALOGUE_POOL
+        label="virtual"
+    fi
+    load "$label" "$RESULTS" --url "$APP_URL/purchases" --method POST \
+        --body "{\"bookId\": \"$mode-{i}\", \"quantity\": 1, \"buyer\": \"load@example.com\", \"status\": \"PENDING\"}" \
+        --requests "$REQUESTS" --concurrency "$CONCURRENCY" --warmup "$CONCURRENCY" | tee -a "$SUMMARY"
+    stop_app
+done
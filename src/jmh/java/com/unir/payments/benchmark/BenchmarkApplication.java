@@ -0,0 +1,22 @@
+package com.unir.payments.benchmark;
+
+import com.unir.payments.BooksApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Arranca el microservicio sin servidor web con el perfil "benchmark" (H2 en memoria)
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String gatewayUrl, String... properties) {
+        return new SpringApplicationBuilder(BooksApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("benchmark")
+                .properties("gateway.url=" + gatewayUrl)
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,41 @@
+package com.unir.payments.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+// Catálogo de libros simulado: responde a cualquier petición del Gateway con un libro visible
+public class CatalogueStub implements AutoCloseable {
+
+    private static final byte[] BOOK = "{\"bookId\": 1, \"title\": \"Benchmark\", \"visible\": true}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    public CatalogueStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BOOK.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BOOK);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,77 @@
+package com.unir.payments.benchmark;
+
+import com.unir.payments.controller.model.CreatePurchaseRequest;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.service.PurchasesService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Alta de compras de extremo a extremo sobre H2, con el catálogo simulado por CatalogueStub.
+// newBook consulta siempre el catálogo (fallo de caché) y confirma la compra; soldBook repite
+// un libro ya vendido, que se resuelve con la caché y la reserva agotada y queda CANCELLED.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreatePurchaseBenchmark {
+
+    private static final String SOLD_BOOK = "9780306406157";
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private CatalogueStub catalogue;
+
+    private ConfigurableApplicationContext context;
+
+    private PurchasesService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        catalogue = new CatalogueStub();
+        // El outbox no se despacha durante la medición para que el libro vendido siga visible en el stub y en caché
+        context = BenchmarkApplication.start(catalogue.getUrl(), "catalogue.outbox.poll-interval=1h");
+        service = context.getBean(PurchasesService.class);
+        service.createPurchase(request(SOLD_BOOK));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        catalogue.close();
+    }
+
+    @Benchmark
+    public Purchase newBook() {
+        return service.createPurchase(request(String.format("979%010d", sequence.incrementAndGet())));
+    }
+
+    @Benchmark
+    public Purchase soldBook() {
+        return service.createPurchase(request(SOLD_BOOK));
+    }
+
+    private static CreatePurchaseRequest request(String bookId) {
+        return CreatePurchaseRequest.builder()
+                .bookId(bookId)
+                .quantity(1)
+                .buyer("buyer@example.com")
+                .status("PENDING")
+                .build();
+    }
+}
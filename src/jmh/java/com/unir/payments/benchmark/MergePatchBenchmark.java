@@ -0,0 +1,72 @@
+package com.unir.payments.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.service.PurchaseMergePatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Aplicación de un JSON Merge Patch sobre una compra: la ruta anterior con json-patch
+// (serializar, parchear el árbol y deserializar) frente a PurchaseMergePatcher en streaming
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergePatchBenchmark {
+
+    private static final String PATCH = "{\"quantity\": 3, \"status\": \"CANCELLED\"}";
+
+    private ObjectMapper objectMapper;
+
+    private PurchaseMergePatcher mergePatcher;
+
+    private Purchase purchase;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        mergePatcher = new PurchaseMergePatcher(objectMapper);
+        purchase = Purchase.builder()
+                .id(1L)
+                .bookId("9780306406157")
+                .purchaseDate(LocalDateTime.of(2025, 1, 1, 10, 30))
+                .quantity(1)
+                .buyer("buyer@example.com")
+                .status("CONFIRMED")
+                .build();
+    }
+
+    @Benchmark
+    public Purchase jsonPatchTree() throws IOException, JsonPatchException {
+        JsonMergePatch jsonMergePatch = JsonMergePatch.fromJson(objectMapper.readTree(PATCH));
+        JsonNode target = jsonMergePatch.apply(objectMapper.readTree(objectMapper.writeValueAsString(purchase)));
+        return objectMapper.treeToValue(target, Purchase.class);
+    }
+
+    @Benchmark
+    public boolean streamingMergePatch() throws IOException {
+        // Se restaura el estado para que cada invocación aplique el mismo cambio
+        purchase.setQuantity(1);
+        purchase.setStatus("CONFIRMED");
+        return mergePatcher.apply(purchase, PATCH);
+    }
+}
@@ -0,0 +1,111 @@
+package com.unir.payments.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.data.PurchaseJpaRepository;
+import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Lectura y serialización JSON de una página de compras: entidades gestionadas frente a proyecciones PurchaseView.
+// Con -prof gc se obtiene además la memoria reservada por operación.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PurchaseSerializationBenchmark {
+
+    private static final int ROWS = 5_000;
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+
+    private PurchaseRepository repository;
+
+    private PurchaseJpaRepository jpaRepository;
+
+    private ObjectMapper objectMapper;
+
+    private Purchase purchase;
+
+    private PurchaseView view;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("http://localhost:0");
+        repository = context.getBean(PurchaseRepository.class);
+        jpaRepository = context.getBean(PurchaseJpaRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        List<Purchase> purchases = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            purchases.add(Purchase.builder()
+                    .bookId(String.format("978%010d", i % 500))
+                    .purchaseDate(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(i))
+                    .quantity(1 + i % 3)
+                    .buyer("buyer" + (i % 100) + "@example.com")
+                    .status(i % 4 == 0 ? "CANCELLED" : "CONFIRMED")
+                    .build());
+        }
+        repository.saveAll(purchases);
+
+        purchase = jpaRepository.findAll(PageRequest.of(0, 1)).getContent().getFirst();
+        view = firstPage(1).getFirst();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] serializeEntity() throws IOException {
+        return objectMapper.writeValueAsBytes(purchase);
+    }
+
+    @Benchmark
+    public byte[] serializeView() throws IOException {
+        return objectMapper.writeValueAsBytes(view);
+    }
+
+    @Benchmark
+    public byte[] entityPage() throws IOException {
+        return objectMapper.writeValueAsBytes(
+                jpaRepository.findAll(PageRequest.of(0, pageSize, Sort.by("id"))).getContent());
+    }
+
+    @Benchmark
+    public byte[] viewPage() throws IOException {
+        return objectMapper.writeValueAsBytes(firstPage(pageSize));
+    }
+
+    // Primera página en el orden por defecto (id), la misma que sirve GET /purchases sin filtros
+    private List<PurchaseView> firstPage(int limit) {
+        return repository.search(PurchaseQuery.builder().limit(limit).build()).purchases();
+    }
+}
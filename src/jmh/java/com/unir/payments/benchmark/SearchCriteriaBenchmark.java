@@ -0,0 +1,80 @@
+package com.unir.payments.benchmark;
+
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.utils.Consts;
+import com.unir.payments.data.utils.SearchCriteria;
+import com.unir.payments.data.utils.SearchOperation;
+import com.unir.payments.data.utils.SearchStatement;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// Coste de traducir los criterios de búsqueda de compras a un predicado JPA
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchCriteriaBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private CriteriaBuilder builder;
+
+    private SearchCriteria<Purchase> equality;
+
+    private SearchCriteria<Purchase> prefix;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("http://localhost:0");
+        builder = context.getBean(EntityManagerFactory.class).getCriteriaBuilder();
+
+        equality = new SearchCriteria<>();
+        equality.add(new SearchStatement(Consts.BOOK_ID, "9780306406157", SearchOperation.EQUAL));
+        equality.add(new SearchStatement(Consts.BUYER, "buyer@example.com", SearchOperation.EQUAL));
+        equality.add(new SearchStatement(Consts.STATUS, "CONFIRMED", SearchOperation.EQUAL));
+
+        prefix = new SearchCriteria<>();
+        prefix.add(new SearchStatement(Consts.BOOK_ID, "978030", SearchOperation.STARTS_WITH));
+        prefix.add(new SearchStatement(Consts.BUYER, "buyer", SearchOperation.MATCH));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Predicate equalityCriteria() {
+        return toPredicate(equality);
+    }
+
+    @Benchmark
+    public Predicate prefixCriteria() {
+        return toPredicate(prefix);
+    }
+
+    private Predicate toPredicate(SearchCriteria<Purchase> criteria) {
+        CriteriaQuery<Purchase> query = builder.createQuery(Purchase.class);
+        Root<Purchase> root = query.from(Purchase.class);
+        return criteria.toPredicate(root, query, builder);
+    }
+}
@@ -0,0 +1,106 @@
+package com.unir.payments.client;
+
+import com.unir.payments.config.CacheConfig;
+import com.unir.payments.controller.model.BookResponseDTO;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.function.Supplier;
+
+// Cliente del microservicio de libros (ms-books-catalogue) vía Gateway
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BooksCatalogueClient {
+
+    // Nombre del circuit breaker y del bulkhead (configuración en resilience4j.*.instances.booksCatalogue)
+    public static final String CATALOGUE = "booksCatalogue";
+
+    private static final String BOOK_PATH = "/ms-books-catalogue/books/{bookId}";
+    private static final String GET_PAYLOAD = "{\"targetMethod\": \"GET\"}";
+    private static final String HIDE_PAYLOAD = "{\"targetMethod\": \"PATCH\", \"queryParams\": {}, \"body\": {\"visible\": false}}";
+    private static final String SHOW_PAYLOAD = "{\"targetMethod\": \"PATCH\", \"queryParams\": {}, \"body\": {\"visible\": true}}";
+
+    private final RestTemplate restTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    // Inyectamos la URL del Gateway (definida en las propiedades o variables de entorno)
+    @Value("${gateway.url:http://localhost:8762}")
+    private String gatewayUrl;
+
+    // Devuelve el libro consultado, o null si el catálogo no lo conoce.
+    // Ambos resultados se cachean; los errores de red o del catálogo no. La caché se aplica antes que el
+    // circuit breaker y el bulkhead (ver CacheConfig), así que los aciertos no ocupan llamadas al catálogo.
+    @Cacheable(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
+    @CircuitBreaker(name = CATALOGUE)
+    @Bulkhead(name = CATALOGUE)
+    public BookResponseDTO getBook(String bookId) {
+        log.info("Consultando disponibilidad del libro {} en: {}", bookId, gatewayUrl);
+        try {
+            ResponseEntity<BookResponseDTO> response = execute("getBook",
+                    () -> restTemplate.postForEntity(gatewayUrl + BOOK_PATH, GET_PAYLOAD, BookResponseDTO.class, bookId));
+            return response.getStatusCode() == HttpStatus.OK ? response.getBody() : null;
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+    }
+
+    // Cambia 'visible' a false en el catálogo. La entrada cacheada se descarta antes de la llamada,
+    // aunque esta falle, para no confirmar más compras con un estado obsoleto.
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId", beforeInvocation = true)
+    @CircuitBreaker(name = CATALOGUE)
+    @Bulkhead(name = CATALOGUE)
+    public void hideBook(String bookId) {
+        log.info("Actualizando visibilidad del libro {} a false", bookId);
+        execute("hideBook", () -> restTemplate.postForEntity(gatewayUrl + BOOK_PATH, HIDE_PAYLOAD, Void.class, bookId));
+    }
+
+    // Cambia 'visible' a true en el catálogo cuando el libro vuelve a tener ejemplares; la caché, como en hideBook
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId", beforeInvocation = true)
+    @CircuitBreaker(name = CATALOGUE)
+    @Bulkhead(name = CATALOGUE)
+    public void showBook(String bookId) {
+        log.info("Actualizando visibilidad del libro {} a true", bookId);
+        execute("showBook", () -> restTemplate.postForEntity(gatewayUrl + BOOK_PATH, SHOW_PAYLOAD, Void.class, bookId));
+    }
+
+    // Descarta la entrada cacheada del libro, por ejemplo al registrar una compra que lo agota
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
+    public void invalidate(String bookId) {
+        log.debug("Invalidando libro {} en caché", bookId);
+    }
+
+    private <T> T execute(String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "SUCCESS";
+        try {
+            return call.get();
+        } catch (HttpStatusCodeException e) {
+            outcome = e.getStatusCode().is4xxClientError() ? "CLIENT_ERROR" : "SERVER_ERROR";
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = "ERROR";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("catalogue.requests")
+                    .description("Latencia de las llamadas al catálogo de libros")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.unir.payments.client;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// El catálogo de libros no ha respondido, tiene el circuito abierto o no admite más llamadas concurrentes
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Catálogo de libros no disponible")
+public class CatalogueUnavailableException extends RuntimeException {
+
+    public CatalogueUnavailableException(Throwable cause) {
+        super("Catálogo de libros no disponible", cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.unir.payments.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// La caché envuelve a los aspectos de Resilience4j (circuit breaker en LOWEST_PRECEDENCE - 3, bulkhead en LOWEST_PRECEDENCE)
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 10)
+public class CacheConfig {
+
+    // Caché local de libros consultados al catálogo (tamaño y TTL en spring.cache.caffeine.spec)
+    public static final String BOOKS_CACHE = "books";
+}
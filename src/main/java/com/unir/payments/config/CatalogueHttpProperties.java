@@ -0,0 +1,43 @@
+package com.unir.payments.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Configuración del cliente HTTP usado para llamar al catálogo de libros a través del Gateway
+@ConfigurationProperties(prefix = "catalogue.http")
+@Getter
+@Setter
+public class CatalogueHttpProperties {
+
+    // Conexiones máximas del pool, en total y por ruta (host destino)
+    private int maxConnections = 100;
+    private int maxConnectionsPerRoute = 20;
+
+    // STRICT respeta exactamente max-connections; LAX evita el bloqueo global del pool,
+    // recomendable con hilos virtuales y muchas peticiones concurrentes
+    private PoolConcurrencyPolicy poolConcurrencyPolicy = PoolConcurrencyPolicy.STRICT;
+
+    // Límites específicos por ruta, por ejemplo "http://localhost:8762": 50
+    private Map<String, Integer> routes = new LinkedHashMap<>();
+
+    // Tiempo máximo para establecer la conexión
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    // Tiempo máximo de espera de la respuesta
+    private Duration readTimeout = Duration.ofSeconds(2);
+
+    // Tiempo máximo de espera para obtener una conexión libre del pool
+    private Duration connectionRequestTimeout = Duration.ofMillis(500);
+
+    // Las conexiones ociosas más tiempo que este se cierran
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    // Vida máxima de una conexión, para repartir carga entre instancias tras el Gateway
+    private Duration timeToLive = Duration.ofMinutes(5);
+}
@@ -0,0 +1,91 @@
+package com.unir.payments.config;
+
+import com.unir.payments.data.ReadYourWrites;
+import com.unir.payments.data.utils.ReplicaDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Primario y réplicas de solo lectura. Las transacciones readOnly (consultas de PurchaseRepository y de las
+// estadísticas) toman la conexión de una réplica y el resto del primario. La conexión física se obtiene con la
+// primera sentencia (LazyConnectionDataSourceProxy), cuando ya se sabe si la transacción es de solo lectura.
+// Sin réplicas configuradas, todo va al primario como con la autoconfiguración de Spring Boot.
+@Configuration
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class DataSourceConfig {
+
+    // spring.datasource y spring.datasource.hikari, como en la autoconfiguración de Spring Boot.
+    // Los pools no son candidatos para inyección: el resto de la aplicación usa dataSource
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(defaultCandidate = false)
+    public ReplicaDataSource replicaDataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                               DataSourceProperties dataSourceProperties,
+                                               ReplicaDataSourceProperties properties,
+                                               ReadYourWrites readYourWrites,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : properties.getUrls()) {
+            HikariConfig config = new HikariConfig();
+            properties.getHikari().copyStateTo(config);
+            config.setJdbcUrl(url);
+            config.setUsername(properties.getUsername() != null
+                    ? properties.getUsername() : dataSourceProperties.determineUsername());
+            config.setPassword(properties.getPassword() != null
+                    ? properties.getPassword() : dataSourceProperties.determinePassword());
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            // Métricas hikaricp.* con la etiqueta pool, como las del primario
+            meterRegistry.ifAvailable(registry -> config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, readYourWrites::requiresPrimary, properties.getRetryAfter());
+    }
+
+    // Una conexión al primario solo para numerar el registro de cambios (PurchaseChangeFeed), fuera del pool
+    // que retienen las escrituras; las numeraciones de la instancia van de una en una. Se abre en el primer uso
+    @Bean(defaultCandidate = false)
+    public HikariDataSource changeSequenceDataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource) {
+        HikariDataSource dataSource = new HikariDataSource();
+        primaryDataSource.copyStateTo(dataSource);
+        dataSource.setPoolName("change-sequence");
+        dataSource.setMaximumPoolSize(1);
+        dataSource.setMinimumIdle(1);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") ReplicaDataSource replicaDataSource,
+                                 ReplicaDataSourceProperties properties) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        if (!properties.getUrls().isEmpty()) {
+            dataSource.setReadOnlyDataSource(replicaDataSource);
+        }
+        // Valores por defecto de las conexiones, para no abrir una solo para averiguarlos
+        dataSource.setDefaultAutoCommit(primaryDataSource.isAutoCommit());
+        if (primaryDataSource.getTransactionIsolation() != null) {
+            dataSource.setDefaultTransactionIsolationName(primaryDataSource.getTransactionIsolation());
+        }
+        return dataSource;
+    }
+}
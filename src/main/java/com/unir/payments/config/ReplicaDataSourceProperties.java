@@ -0,0 +1,38 @@
+package com.unir.payments.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Réplicas de solo lectura de la base de datos (DataSourceConfig)
+@ConfigurationProperties(prefix = "purchases.datasource.replica")
+@Getter
+@Setter
+public class ReplicaDataSourceProperties {
+
+    // URLs JDBC de las réplicas; sin ninguna, todas las conexiones van al primario
+    private List<String> urls = new ArrayList<>();
+
+    // Credenciales de las réplicas; sin indicar, las de spring.datasource
+    private String username;
+    private String password;
+
+    // Pool de cada réplica, independiente de spring.datasource.hikari. Por defecto la aplicación arranca
+    // aunque una réplica no responda, y las lecturas esperan poco por ella antes de probar la siguiente
+    private HikariConfig hikari = defaultHikari();
+
+    // Tiempo durante el que no se piden conexiones a una réplica que no ha respondido
+    private Duration retryAfter = Duration.ofSeconds(10);
+
+    private static HikariConfig defaultHikari() {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setInitializationFailTimeout(-1);
+        hikari.setConnectionTimeout(1000);
+        return hikari;
+    }
+}
@@ -0,0 +1,115 @@
+package com.unir.payments.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.event.Level;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+// Registra una línea estructurada por petición (método, ruta, estado y duración) al terminar de procesarla.
+// Las peticiones se muestrean; las lentas y las que acaban en 5xx se registran siempre en WARN.
+// La escritura es asíncrona (ver logback-spring.xml), así que no bloquea el hilo de la petición.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@EnableConfigurationProperties(RequestLoggingProperties.class)
+@Slf4j
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    private static final String REDACTED = "[REDACTED]";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final RequestLoggingProperties properties;
+
+    private final Set<String> redactedHeaders;
+
+    public RequestLoggingFilter(RequestLoggingProperties properties) {
+        this.properties = properties;
+        this.redactedHeaders = properties.getRedactedHeaders().stream()
+                .map(header -> header.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || levelFor(request.getRequestURI()) == LogLevel.OFF;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            int status = response.getStatus();
+            if (status >= 500 || elapsedMs >= properties.getSlowThreshold().toMillis()) {
+                log(Level.WARN, request, status, elapsedMs);
+            } else if (ThreadLocalRandom.current().nextDouble() < properties.getSampleRate()) {
+                log(toSlf4j(levelFor(request.getRequestURI())), request, status, elapsedMs);
+            }
+        }
+    }
+
+    private void log(Level level, HttpServletRequest request, int status, long elapsedMs) {
+        if (!log.isEnabledForLevel(level)) {
+            return;
+        }
+        var event = log.atLevel(level)
+                .addKeyValue("http.method", request.getMethod())
+                .addKeyValue("url.path", request.getRequestURI())
+                .addKeyValue("http.status", status)
+                .addKeyValue("duration.ms", elapsedMs);
+        if (properties.isIncludeHeaders()) {
+            event = event.addKeyValue("headers", headers(request));
+        }
+        event.log("{} {} {} {}ms", request.getMethod(), request.getRequestURI(), status, elapsedMs);
+    }
+
+    private LogLevel levelFor(String path) {
+        for (Map.Entry<String, LogLevel> endpoint : properties.getEndpoints().entrySet()) {
+            if (pathMatcher.match(endpoint.getKey(), path)) {
+                return endpoint.getValue();
+            }
+        }
+        return properties.getLevel();
+    }
+
+    private Map<String, String> headers(HttpServletRequest request) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : Collections.list(request.getHeaderNames())) {
+            headers.put(name, redactedHeaders.contains(name.toLowerCase(Locale.ROOT))
+                    ? REDACTED
+                    : String.join(",", Collections.list(request.getHeaders(name))));
+        }
+        return headers;
+    }
+
+    private static Level toSlf4j(LogLevel level) {
+        return switch (level) {
+            case TRACE -> Level.TRACE;
+            case DEBUG -> Level.DEBUG;
+            case INFO -> Level.INFO;
+            case WARN -> Level.WARN;
+            case ERROR, FATAL, OFF -> Level.ERROR;
+        };
+    }
+}
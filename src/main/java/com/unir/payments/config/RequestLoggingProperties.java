@@ -0,0 +1,38 @@
+package com.unir.payments.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.logging.LogLevel;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Configuración del log de peticiones HTTP (RequestLoggingFilter)
+@ConfigurationProperties(prefix = "purchases.request-logging")
+@Getter
+@Setter
+public class RequestLoggingProperties {
+
+    private boolean enabled = true;
+
+    // Fracción de peticiones que se registran (0.0 - 1.0); las lentas y los errores 5xx se registran siempre
+    private double sampleRate = 0.01;
+
+    // Nivel con el que se registran las peticiones muestreadas
+    private LogLevel level = LogLevel.INFO;
+
+    // Nivel por endpoint (patrón Ant sobre la ruta), por ejemplo "/actuator/**": OFF. Gana el primero que coincide
+    private Map<String, LogLevel> endpoints = new LinkedHashMap<>();
+
+    // Peticiones más lentas que este umbral se registran en WARN sin muestreo
+    private Duration slowThreshold = Duration.ofSeconds(1);
+
+    // Incluye las cabeceras de la petición, ocultando el valor de las sensibles
+    private boolean includeHeaders = false;
+
+    // Cabeceras cuyo valor nunca se escribe en el log (sin distinguir mayúsculas)
+    private Set<String> redactedHeaders = Set.of("authorization", "proxy-authorization", "cookie", "set-cookie", "x-api-key");
+}
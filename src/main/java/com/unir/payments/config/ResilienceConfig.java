@@ -0,0 +1,46 @@
+package com.unir.payments.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class ResilienceConfig {
+
+    // Además del gauge resilience4j.circuitbreaker.state, cuenta cada cambio de estado (from -> to) y lo registra en el log
+    @Bean
+    public RegistryEventConsumer<CircuitBreaker> circuitBreakerTransitions(MeterRegistry meterRegistry) {
+        return new RegistryEventConsumer<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<CircuitBreaker> entryAddedEvent) {
+                CircuitBreaker circuitBreaker = entryAddedEvent.getAddedEntry();
+                circuitBreaker.getEventPublisher().onStateTransition(event -> {
+                    log.warn("Circuit breaker {}: {}", circuitBreaker.getName(), event.getStateTransition());
+                    Counter.builder("resilience4j.circuitbreaker.transitions")
+                            .description("Cambios de estado del circuit breaker")
+                            .tag("name", circuitBreaker.getName())
+                            .tag("from", event.getStateTransition().getFromState().name())
+                            .tag("to", event.getStateTransition().getToState().name())
+                            .register(meterRegistry)
+                            .increment();
+                });
+            }
+
+            @Override
+            public void onEntryRemovedEvent(EntryRemovedEvent<CircuitBreaker> entryRemoveEvent) {
+            }
+
+            @Override
+            public void onEntryReplacedEvent(EntryReplacedEvent<CircuitBreaker> entryReplacedEvent) {
+            }
+        };
+    }
+}
@@ -1,14 +1,88 @@
 package com.unir.payments.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URISyntaxException;
+
 @Configuration
+@EnableConfigurationProperties(CatalogueHttpProperties.class)
 public class RestTemplateConfig {
 
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager catalogueConnectionManager(CatalogueHttpProperties properties)
+            throws URISyntaxException {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                .setPoolConcurrencyPolicy(properties.getPoolConcurrencyPolicy())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+                        .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+                        .build())
+                .build();
+        for (var route : properties.getRoutes().entrySet()) {
+            connectionManager.setMaxPerRoute(new HttpRoute(HttpHost.create(route.getKey())), route.getValue());
+        }
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient catalogueHttpClient(PoolingHttpClientConnectionManager catalogueConnectionManager,
+                                                   CatalogueHttpProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(catalogueConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.of(properties.getReadTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                .build();
+    }
+
+    // Se construye con el RestTemplateBuilder de Spring Boot para conservar la métrica http.client.requests.
+    // En una aplicación reactiva Spring Boot no lo configura y se usa uno sin personalizar.
+    @Bean
+    public RestTemplate restTemplate(ObjectProvider<RestTemplateBuilder> builder, CloseableHttpClient catalogueHttpClient) {
+        return builder.getIfAvailable(RestTemplateBuilder::new)
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(catalogueHttpClient))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public MeterBinder catalogueConnectionPoolMetrics(PoolingHttpClientConnectionManager catalogueConnectionManager) {
+        return registry -> {
+            Gauge.builder("catalogue.http.pool.leased", catalogueConnectionManager, pool -> pool.getTotalStats().getLeased())
+                    .description("Conexiones en uso hacia el catálogo")
+                    .register(registry);
+            Gauge.builder("catalogue.http.pool.available", catalogueConnectionManager, pool -> pool.getTotalStats().getAvailable())
+                    .description("Conexiones ociosas disponibles en el pool")
+                    .register(registry);
+            Gauge.builder("catalogue.http.pool.pending", catalogueConnectionManager, pool -> pool.getTotalStats().getPending())
+                    .description("Peticiones esperando una conexión libre")
+                    .register(registry);
+            Gauge.builder("catalogue.http.pool.max", catalogueConnectionManager, pool -> pool.getTotalStats().getMax())
+                    .description("Tamaño máximo del pool")
+                    .register(registry);
+        };
     }
 }
@@ -0,0 +1,17 @@
+package com.unir.payments.config;
+
+import com.unir.payments.data.utils.SqlTraceInspector;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SqlTraceConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlTraceCustomizer(@Value("${purchases.sql-trace.sample-rate:1.0}") double sampleRate) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlTraceInspector(sampleRate));
+    }
+}
@@ -0,0 +1,46 @@
+package com.unir.payments.controller;
+
+import com.unir.payments.data.model.Purchase;
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Endpoint entre réplicas: descarta una compra de la caché de segundo nivel local. Sin token configurado el endpoint
+// está desactivado; en modo discovery el token es obligatorio (DiscoveryPurchaseCacheBroadcaster)
+@Hidden
+@RestController
+@RequiredArgsConstructor
+public class InternalCacheController {
+
+    public static final String PURCHASE_CACHE_PATH = "/internal/cache/purchases/{purchaseId}";
+
+    public static final String TOKEN_HEADER = "X-Cache-Token";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // Las peticiones deben traer el mismo valor en la cabecera X-Cache-Token
+    @Value("${purchases.cache.invalidation.token:}")
+    private String token;
+
+    @DeleteMapping(PURCHASE_CACHE_PATH)
+    public ResponseEntity<Void> evictPurchase(@PathVariable Long purchaseId,
+                                              @RequestHeader(name = TOKEN_HEADER, required = false) String requestToken) {
+        if (!StringUtils.hasText(token) || requestToken == null
+                || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        entityManagerFactory.getCache().evict(Purchase.class, purchaseId);
+        return ResponseEntity.noContent().build();
+    }
+}
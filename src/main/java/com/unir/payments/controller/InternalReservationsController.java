@@ -0,0 +1,48 @@
+package com.unir.payments.controller;
+
+import com.unir.payments.service.PurchasesService;
+import io.swagger.v3.oas.annotations.Hidden;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Sincronización explícita del stock de un libro con el del catálogo, por ejemplo tras una reposición: las compras
+// solo lo toman en la primera reserva (ver V11). Sin token configurado el endpoint está desactivado
+@Hidden
+@RestController
+@RequiredArgsConstructor
+public class InternalReservationsController {
+
+    public static final String STOCK_PATH = "/internal/reservations/{bookId}/stock";
+
+    public static final String TOKEN_HEADER = "X-Reservations-Token";
+
+    private final PurchasesService service;
+
+    @Value("${purchases.reservations.sync-token:}")
+    private String token;
+
+    @PutMapping(STOCK_PATH)
+    public ResponseEntity<Void> restock(@PathVariable String bookId, @RequestParam int stock,
+                                        @RequestHeader(name = TOKEN_HEADER, required = false) String requestToken) {
+        if (!StringUtils.hasText(token) || requestToken == null
+                || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (stock < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        service.restockBook(bookId, stock);
+        return ResponseEntity.noContent().build();
+    }
+}
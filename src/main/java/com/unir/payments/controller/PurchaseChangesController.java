@@ -0,0 +1,204 @@
+package com.unir.payments.controller;
+
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.service.PurchaseChangeFeed;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Con el perfil reactive el registro de cambios lo sirve ReactivePurchaseChangesController
+@RestController
+@Profile("!reactive")
+@Slf4j
+@Tag(name = "Purchase Changes Controller", description = "Cambios de las compras en orden, para consumidores que antes sondeaban GET /purchases.")
+public class PurchaseChangesController {
+
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    private final PurchaseChangeFeed changeFeed;
+
+    // Las esperas de los consumidores ocupan hilos virtuales, no hilos del servidor
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Semaphore subscribers;
+
+    @Value("${purchases.changes.batch-size:500}")
+    private int batchSize;
+
+    @Value("${purchases.changes.max-wait:30s}")
+    private Duration maxWait;
+
+    @Value("${purchases.changes.heartbeat:15s}")
+    private Duration heartbeat;
+
+    @Value("${purchases.changes.sse-timeout:30m}")
+    private Duration sseTimeout;
+
+    public PurchaseChangesController(PurchaseChangeFeed changeFeed,
+                                     @Value("${purchases.changes.max-subscribers:200}") int maxSubscribers) {
+        this.changeFeed = changeFeed;
+        this.subscribers = new Semaphore(maxSubscribers);
+    }
+
+    // Al empezar a parar la aplicación, antes de que el apagado ordenado de Tomcat espere a las peticiones en
+    // curso: interrumpe las suscripciones SSE que esperan cambios, que se cierran (send)
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @GetMapping(value = "/purchases/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            operationId = "Obtener cambios de compras",
+            description = "Operación de lectura con espera (long polling): si no hay cambios posteriores a 'since', la respuesta espera hasta 'wait' segundos a que se produzcan. La cabecera X-Next-Cursor indica el valor de 'since' para la siguiente petición.",
+            summary = "Se devuelven, en orden, los cambios (altas, modificaciones y bajas) posteriores a una secuencia.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PurchaseChange.class)))
+    @ApiResponse(
+            responseCode = "410",
+            description = "Los cambios posteriores a 'since' ya se han eliminado; hay que volver a cargar las compras.")
+    public DeferredResult<ResponseEntity<List<PurchaseChange>>> getChanges(
+            @Parameter(name = "since", description = "Última secuencia recibida; sin indicar, solo los cambios a partir de ahora", example = "1500", required = false)
+            @RequestParam(required = false) Long since,
+            @Parameter(name = "limit", description = "Número máximo de cambios a devolver", example = "500", required = false)
+            @RequestParam(required = false) Integer limit,
+            @Parameter(name = "wait", description = "Segundos de espera si no hay cambios", example = "30", required = false)
+            @RequestParam(required = false) Integer wait) {
+
+        long from = since != null ? since : changeFeed.lastSeq();
+        int size = limit != null ? Math.max(1, Math.min(limit, batchSize)) : batchSize;
+        long waitMillis = wait != null ? Math.max(0, Math.min(TimeUnit.SECONDS.toMillis(wait), maxWait.toMillis())) : maxWait.toMillis();
+
+        DeferredResult<ResponseEntity<List<PurchaseChange>>> result = new DeferredResult<>(waitMillis + heartbeat.toMillis());
+        changeFeed.awaitAfter(from)
+                .completeOnTimeout(from, waitMillis, TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((seq, error) -> {
+                    try {
+                        List<PurchaseChange> changes = changeFeed.read(from, size);
+                        result.setResult(ResponseEntity.ok()
+                                .header(PurchasesController.NEXT_CURSOR_HEADER,
+                                        String.valueOf(changes.isEmpty() ? from : changes.getLast().seq()))
+                                .body(changes));
+                    } catch (RuntimeException e) {
+                        result.setErrorResult(e);
+                    }
+                }, executor);
+        return result;
+    }
+
+    @GetMapping(value = "/purchases/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            operationId = "Suscribirse a los cambios de compras",
+            description = "Server-Sent Events: un evento por cambio, con la secuencia como id para reanudar con Last-Event-ID. Los cambios se leen por lotes y solo se lee el siguiente cuando el cliente ha recibido el anterior.",
+            summary = "Se envían los cambios de las compras posteriores a una secuencia según se producen.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = PurchaseChange.class)))
+    @ApiResponse(
+            responseCode = "410",
+            description = "Los cambios posteriores a 'since' ya se han eliminado; hay que volver a cargar las compras.")
+    @ApiResponse(
+            responseCode = "503",
+            description = "Se ha alcanzado el número máximo de suscriptores.")
+    public ResponseEntity<SseEmitter> streamChanges(
+            @Parameter(name = "since", description = "Última secuencia recibida; sin indicar, solo los cambios a partir de ahora", example = "1500", required = false)
+            @RequestParam(required = false) Long since,
+            @Parameter(name = LAST_EVENT_ID_HEADER, description = "Última secuencia recibida al reconectar; tiene prioridad sobre 'since'", required = false)
+            @RequestHeader(name = LAST_EVENT_ID_HEADER, required = false) Long lastEventId) {
+
+        if (!subscribers.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        long from = lastEventId != null ? lastEventId : since != null ? since : changeFeed.lastSeq();
+        List<PurchaseChange> first;
+        try {
+            first = changeFeed.read(from, batchSize);
+        } catch (RuntimeException e) {
+            subscribers.release();
+            throw e;
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(e -> open.set(false));
+        executor.execute(() -> {
+            try {
+                send(emitter, open, from, first);
+            } finally {
+                subscribers.release();
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Cada send se bloquea hasta que el cliente acepta los datos, así que un consumidor lento solo retiene
+    // su hilo virtual y un lote; sin cambios, un comentario periódico detecta las conexiones cerradas
+    private void send(SseEmitter emitter, AtomicBoolean open, long from, List<PurchaseChange> first) {
+        long cursor = from;
+        List<PurchaseChange> batch = first;
+        try {
+            while (open.get()) {
+                if (batch.isEmpty()) {
+                    try {
+                        changeFeed.awaitAfter(cursor).get(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                } else {
+                    for (PurchaseChange change : batch) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(change.seq()))
+                                .name(change.operation().name())
+                                .data(change, MediaType.APPLICATION_JSON));
+                    }
+                    cursor = batch.getLast().seq();
+                }
+                batch = changeFeed.read(cursor, batchSize);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // El cliente se ha desconectado
+            log.debug("Suscripción a los cambios de compras cerrada: {}", e.getMessage());
+        } catch (ResponseStatusException e) {
+            // La retención ha eliminado cambios que este cliente aún no había recibido
+            emitter.completeWithError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } catch (ExecutionException | RuntimeException e) {
+            log.warn("Error enviando los cambios de compras: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+}
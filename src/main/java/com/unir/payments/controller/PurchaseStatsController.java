@@ -0,0 +1,50 @@
+package com.unir.payments.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.unir.payments.controller.model.PurchaseStatDto;
+import com.unir.payments.service.PurchaseStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Purchase Stats Controller", description = "Estadísticas agregadas de ventas.")
+public class PurchaseStatsController {
+
+    private final PurchaseStatsService service;
+
+    @GetMapping("/purchases/stats")
+    @Operation(
+            operationId = "Obtener estadísticas de compras",
+            description = "Operación de lectura. Se calcula sobre el resumen diario mantenido en cada escritura.",
+            summary = "Se devuelve el número de compras y de ejemplares agrupados por libro, comprador, estado o día.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PurchaseStatDto.class)))
+    @ApiResponse(
+            responseCode = "400",
+            description = "Agrupación no soportada.")
+    public ResponseEntity<List<PurchaseStatDto>> getStats(
+            @Parameter(name = "groupBy", description = "Agrupación: bookId, buyer, status o day", example = "bookId", required = true)
+            @RequestParam String groupBy,
+            @Parameter(name = "from", description = "Fecha de compra inicial (incluida)", example = "2025-02-01", required = false)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(name = "to", description = "Fecha de compra final (incluida)", example = "2025-02-28", required = false)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        List<PurchaseStatDto> stats = service.getStats(groupBy, from, to);
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.badRequest().build();
+    }
+}
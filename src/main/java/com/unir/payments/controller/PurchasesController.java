@@ -1,12 +1,26 @@
 package com.unir.payments.controller;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Map;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.controller.model.BatchPurchaseResult;
 
 import com.unir.payments.controller.model.PurchaseDto;
+import com.unir.payments.controller.model.PurchaseFilter;
 import com.unir.payments.controller.model.CreatePurchaseRequest;
 import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchasePage;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseExportFormat;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.unir.payments.service.IdempotencyService;
+import com.unir.payments.service.PurchaseExportService;
 import com.unir.payments.service.PurchasesService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,40 +28,172 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+// Con el perfil reactive la API la sirve ReactivePurchasesController
 @RestController
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Slf4j
 @Tag(name = "Purchases Controller", description = "Microservicio encargado de registrar y gestionar compras.")
 public class PurchasesController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final PurchasesService service;
 
-    @GetMapping("/purchases")
+    private final IdempotencyService idempotencyService;
+
+    private final PurchaseExportService exportService;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${purchases.pagination.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${purchases.pagination.max-limit:1000}")
+    private int maxLimit;
+
+    @GetMapping(value = "/purchases", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(
             operationId = "Obtener compras",
-            description = "Operación de lectura",
-            summary = "Se devuelve una lista de todas las compras registradas.")
+            description = "Operación de lectura. Paginación por cursor: si la página está completa, la cabecera X-Next-Cursor indica el valor de 'after' para la siguiente con la misma ordenación.",
+            summary = "Se devuelve una página de las compras registradas, ordenadas por identificador o por los campos indicados en 'sort'.")
     @ApiResponse(
             responseCode = "200",
-            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
-    public ResponseEntity<List<Purchase>> getPurchases(
-            @RequestHeader Map<String, String> headers,
-            @Parameter(name = "bookIsbn", description = "ISBN del libro comprado", example = "9780307389732", required = false)
-            @RequestParam(required = false) String bookIsbn,
-            @Parameter(name = "buyer", description = "Información del comprador (por ejemplo, email)", example = "juan.perez@example.com", required = false)
-            @RequestParam(required = false) String buyer,
-            @Parameter(name = "status", description = "Estado de la compra (e.g., COMPLETED, PENDING)", example = "COMPLETED", required = false)
-            @RequestParam(required = false) String status) {
-
-        log.info("headers: {}", headers);
-        List<Purchase> purchases = service.getPurchases(bookIsbn, buyer, status);
-        return ResponseEntity.ok(purchases != null ? purchases : Collections.emptyList());
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PurchaseView.class)))
+    @ApiResponse(
+            responseCode = "304",
+            description = "No ha cambiado ninguna compra desde la versión indicada en If-None-Match.")
+    @ApiResponse(
+            responseCode = "400",
+            description = "Campo de ordenación o selección desconocido, o cursor que no corresponde a la ordenación.")
+    public ResponseEntity<List<PurchaseView>> getPurchases(
+            @ParameterObject PurchaseFilter filter,
+            @Parameter(name = "after", description = "Cursor recibido en X-Next-Cursor (con la ordenación por defecto, el identificador de la última compra)", example = "100", required = false)
+            @RequestParam(required = false) String after,
+            @Parameter(name = "limit", description = "Número máximo de compras a devolver", example = "100", required = false)
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, maxLimit)) : defaultLimit;
+        PurchaseQuery query;
+        try {
+            query = filter.query()
+                    .after(after).limit(pageSize)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Consulta de compras inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Si ninguna compra ha cambiado desde la versión del cliente, 304 leyendo solo la secuencia, sin consultar las compras
+        if (request.checkNotModified(etag(service.getPurchasesVersion()))) {
+            return null;
+        }
+
+        PurchasePage page = service.getPurchases(query);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag(page.version()));
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.purchases());
+    }
+
+    // Como la exportación, se escribe en el hilo de la petición y no está sujeto a spring.mvc.async.request-timeout;
+    // la consulta tiene sus propios límites (purchases.stream), de forma que un cliente lento no retiene la conexión
+    @GetMapping(value = "/purchases", produces = APPLICATION_NDJSON)
+    @Operation(
+            operationId = "Exportar compras",
+            description = "Operación de lectura. Respuesta NDJSON escrita fila a fila, con memoria constante.",
+            summary = "Se devuelven todas las compras que cumplen los filtros, una por línea.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = APPLICATION_NDJSON, schema = @Schema(implementation = PurchaseView.class)))
+    @ApiResponse(
+            responseCode = "400",
+            description = "Campo de ordenación o selección desconocido.")
+    public void streamPurchases(
+            @ParameterObject PurchaseFilter filter,
+            HttpServletResponse response) throws IOException {
+
+        PurchaseQuery query;
+        try {
+            query = filter.query().build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Consulta de compras inválida: {}", e.getMessage());
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+
+        response.setContentType(APPLICATION_NDJSON);
+        OutputStream outputStream = response.getOutputStream();
+        service.streamPurchases(query, purchase -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(purchase));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Se escribe en el hilo de la petición, no con StreamingResponseBody: una exportación completa puede superar
+    // el tiempo máximo de las peticiones asíncronas
+    @GetMapping("/purchases/export")
+    @Operation(
+            operationId = "Exportación masiva de compras",
+            description = "Operación de lectura. Fichero CSV (con cabecera) o NDJSON comprimido con gzip, generado por la base de datos y escrito según se lee, con memoria constante.",
+            summary = "Se descargan todas las compras que cumplen los filtros.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/gzip"))
+    @ApiResponse(
+            responseCode = "400",
+            description = "Formato, campo de ordenación o selección desconocido.")
+    public void exportPurchases(
+            @Parameter(name = "format", description = "Formato del fichero: csv o ndjson", example = "csv", required = false)
+            @RequestParam(defaultValue = "csv") String format,
+            @ParameterObject PurchaseFilter filter,
+            HttpServletResponse response) throws IOException {
+
+        PurchaseExportFormat exportFormat;
+        PurchaseQuery query;
+        try {
+            exportFormat = PurchaseExportFormat.of(format);
+            query = filter.query().build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Exportación de compras inválida: {}", e.getMessage());
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(exportService.fileName(exportFormat)).build().toString());
+        long rows = exportService.export(query, exportFormat, response.getOutputStream());
+        log.debug("Exportadas {} compras en formato {}", rows, exportFormat);
     }
 
     @GetMapping("/purchases/{purchaseId}")
@@ -61,10 +207,14 @@ public class PurchasesController {
     @ApiResponse(
             responseCode = "404",
             description = "No se ha encontrado la compra con el identificador indicado.")
+    @ApiResponse(
+            responseCode = "304",
+            description = "La compra no ha cambiado desde la versión indicada en If-None-Match (o la fecha de If-Modified-Since).")
     public ResponseEntity<Purchase> getPurchase(@PathVariable String purchaseId) {
         log.info("Request received for purchase {}", purchaseId);
         Purchase purchase = service.getPurchase(purchaseId);
-        return purchase != null ? ResponseEntity.ok(purchase) : ResponseEntity.notFound().build();
+        // Con If-None-Match o If-Modified-Since vigentes Spring responde 304 sin serializar la compra
+        return purchase != null ? validated(purchase) : ResponseEntity.notFound().build();
     }
 
     @DeleteMapping("/purchases/{purchaseId}")
@@ -78,6 +228,9 @@ public class PurchasesController {
     @ApiResponse(
             responseCode = "404",
             description = "No se ha encontrado la compra con el identificador indicado.")
+    @ApiResponse(
+            responseCode = "409",
+            description = "La compra ha sido modificada por otra petición mientras se procesaba.")
     public ResponseEntity<Void> deletePurchase(@PathVariable String purchaseId) {
         boolean removed = service.removePurchase(purchaseId);
         return removed ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
@@ -94,16 +247,58 @@ public class PurchasesController {
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = CreatePurchaseRequest.class))))
     @ApiResponse(
             responseCode = "201",
-            description = "Compra registrada exitosamente.")
+            description = "Compra registrada exitosamente.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
     @ApiResponse(
             responseCode = "400",
             description = "Datos incorrectos introducidos.")
-    public ResponseEntity<Purchase> addPurchase(@RequestBody CreatePurchaseRequest request) {
+    @ApiResponse(
+            responseCode = "409",
+            description = "Otra petición con la misma Idempotency-Key aún se está procesando.")
+    @ApiResponse(
+            responseCode = "422",
+            description = "La Idempotency-Key ya se usó con una petición distinta.")
+    public ResponseEntity<?> addPurchase(
+            @Parameter(name = IDEMPOTENCY_KEY_HEADER, description = "Clave única por compra; los reintentos con la misma clave devuelven la respuesta original sin registrar otra compra", required = false)
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody CreatePurchaseRequest request) {
+        if (idempotencyKey == null) {
+            return createPurchase(request);
+        }
+        IdempotencyService.StoredResponse response = idempotencyService.execute(idempotencyKey, request, () -> createPurchase(request));
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status())
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(response.replayed()));
+        return response.body() != null
+                ? builder.contentType(MediaType.APPLICATION_JSON).body(response.body())
+                : builder.build();
+    }
+
+    private ResponseEntity<Purchase> createPurchase(CreatePurchaseRequest request) {
         Purchase createdPurchase = service.createPurchase(request);
         return createdPurchase != null ? ResponseEntity.status(HttpStatus.CREATED).body(createdPurchase)
                 : ResponseEntity.badRequest().build();
     }
 
+    @PostMapping(value = "/purchases/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON})
+    @Operation(
+            operationId = "Registrar compras en lote",
+            description = "Operación de escritura. Acepta un array JSON o NDJSON (una compra por línea).",
+            summary = "Se registran varias compras, devolviendo el resultado de cada una.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Compras a registrar.",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CreatePurchaseRequest.class))))
+    @ApiResponse(
+            responseCode = "200",
+            description = "Lote procesado; cada elemento indica si la compra se registró o se rechazó.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchPurchaseResult.class)))
+    public ResponseEntity<List<BatchPurchaseResult>> addPurchases(InputStream body) throws IOException {
+        // Tanto un array JSON como una secuencia NDJSON se leen elemento a elemento
+        try (MappingIterator<CreatePurchaseRequest> requests = objectMapper.readerFor(CreatePurchaseRequest.class).readValues(body)) {
+            return ResponseEntity.ok(service.createPurchases(requests));
+        }
+    }
+
     @PatchMapping("/purchases/{purchaseId}")
     @Operation(
             operationId = "Modificar parcialmente una compra",
@@ -119,6 +314,9 @@ public class PurchasesController {
     @ApiResponse(
             responseCode = "400",
             description = "Compra inválida o datos incorrectos introducidos.")
+    @ApiResponse(
+            responseCode = "409",
+            description = "La compra ha sido modificada por otra petición mientras se procesaba.")
     public ResponseEntity<Purchase> patchPurchase(@PathVariable String purchaseId, @RequestBody String patchBody) {
         Purchase patchedPurchase = service.updatePurchase(purchaseId, patchBody);
         return patchedPurchase != null ? ResponseEntity.ok(patchedPurchase) : ResponseEntity.badRequest().build();
@@ -139,8 +337,25 @@ public class PurchasesController {
     @ApiResponse(
             responseCode = "404",
             description = "Compra no encontrada.")
+    @ApiResponse(
+            responseCode = "409",
+            description = "La compra ha sido modificada por otra petición mientras se procesaba.")
     public ResponseEntity<Purchase> updatePurchase(@PathVariable String purchaseId, @RequestBody PurchaseDto body) {
         Purchase updatedPurchase = service.updatePurchase(purchaseId, body);
         return updatedPurchase != null ? ResponseEntity.ok(updatedPurchase) : ResponseEntity.notFound().build();
     }
+
+    // ETag débil: la versión identifica el contenido, no los bytes, que cambian si la respuesta se comprime
+    static String etag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    // Respuesta con la versión y la fecha de modificación de la compra; no-cache obliga a revalidarla en cada uso
+    static ResponseEntity<Purchase> validated(Purchase purchase) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag(purchase.getVersion()))
+                .lastModified(purchase.getLastModified().atZone(ZoneId.systemDefault()))
+                .body(purchase);
+    }
 }
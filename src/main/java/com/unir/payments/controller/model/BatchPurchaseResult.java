@@ -0,0 +1,28 @@
+package com.unir.payments.controller.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.unir.payments.data.model.Purchase;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchPurchaseResult {
+
+	public static final String CREATED = "CREATED";
+	public static final String REJECTED = "REJECTED";
+
+	// Posición de la compra dentro del lote recibido
+	private int index;
+
+	// CREATED si la compra se registró, REJECTED en caso contrario
+	private String result;
+
+	// Compra registrada (solo si result es CREATED)
+	private Purchase purchase;
+
+	// Motivo del rechazo (solo si result es REJECTED)
+	private String error;
+}
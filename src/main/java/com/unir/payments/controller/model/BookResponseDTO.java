@@ -19,4 +19,7 @@ public class BookResponseDTO {
     private String isbn;
     private Integer rating;
     private Boolean visible;
+
+    // Ejemplares a la venta; opcional, si el catálogo no lo envía el libro se vende una sola vez
+    private Integer stock;
 }
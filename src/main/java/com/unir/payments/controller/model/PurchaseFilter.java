@@ -0,0 +1,52 @@
+package com.unir.payments.controller.model;
+
+import com.unir.payments.data.utils.PurchaseQuery;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Filtros, ordenación y campos de GET /purchases (JSON y NDJSON) y de GET /purchases/export, enlazados desde los
+// parámetros de la petición
+@Data
+public class PurchaseFilter {
+
+    @Parameter(description = "ISBN del libro comprado: completo (igualdad), parcial (prefijo) o \"*parte\" (subcadena). Las búsquedas parciales no distinguen mayúsculas", example = "9780307389732")
+    private String bookIsbn;
+
+    @Parameter(description = "Información del comprador (por ejemplo, email)", example = "juan.perez@example.com")
+    private String buyer;
+
+    @Parameter(description = "Estado de la compra (e.g., COMPLETED, PENDING)", example = "COMPLETED")
+    private String status;
+
+    @Parameter(description = "Fecha inicial (incluida) de las compras", example = "2025-01-01")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @Parameter(description = "Fecha final (incluida) de las compras", example = "2025-01-31")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    @Parameter(description = "Número mínimo (incluido) de ejemplares", example = "2")
+    private Integer minQuantity;
+
+    @Parameter(description = "Número máximo (incluido) de ejemplares", example = "10")
+    private Integer maxQuantity;
+
+    @Parameter(description = "Campos de ordenación separados por comas; '-' delante para orden descendente", example = "-purchaseDate,quantity")
+    private String sort;
+
+    @Parameter(description = "Campos a devolver separados por comas (por defecto, todos)", example = "id,status")
+    private String fields;
+
+    // Consulta con estos filtros; el cursor y el límite los añade la búsqueda paginada
+    public PurchaseQuery.PurchaseQueryBuilder query() {
+        return PurchaseQuery.builder()
+                .bookId(bookIsbn).buyer(buyer).status(status)
+                .from(from).to(to)
+                .minQuantity(minQuantity).maxQuantity(maxQuantity)
+                .sort(sort).fields(fields);
+    }
+}
@@ -0,0 +1,18 @@
+package com.unir.payments.controller.model;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PurchaseStatDto {
+	// Valor agrupado (ISBN, comprador, estado o día en formato yyyy-MM-dd)
+	private String key;
+
+	// Número de compras
+	private long purchases;
+
+	// Suma de ejemplares adquiridos
+	private long quantity;
+}
@@ -0,0 +1,109 @@
+package com.unir.payments.data;
+
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+// Todas las operaciones se ejecutan en la transacción de la compra que reserva
+@Repository
+public class BookReservationRepository {
+
+    private static final String CREATE_POSTGRESQL = """
+            INSERT INTO book_reservations (book_id, stock, reserved) VALUES (?, ?, 0)
+            ON CONFLICT (book_id) DO NOTHING""";
+
+    private static final String CREATE_STANDARD = """
+            MERGE INTO book_reservations t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS INTEGER))) AS s (book_id, stock)
+            ON t.book_id = s.book_id
+            WHEN NOT MATCHED THEN INSERT (book_id, stock, reserved) VALUES (s.book_id, s.stock, 0)""";
+
+    // Solo actualiza si quedan suficientes ejemplares; el bloqueo de fila serializa a las instancias concurrentes.
+    // El stock es el de la fila: el del catálogo (quizá cacheado) no lo sustituye (ver V11)
+    private static final String RESERVE = """
+            UPDATE book_reservations SET reserved = reserved + ?
+            WHERE book_id = ? AND stock - reserved >= ?""";
+
+    // Un ejemplar único (sin stock en el catálogo) reservó una sola unidad aunque la compra pidiera más:
+    // las unidades se limitan al stock y reserved nunca baja de cero
+    private static final String RELEASE = """
+            UPDATE book_reservations SET reserved = GREATEST(reserved - LEAST(?, stock), 0)
+            WHERE book_id = ?""";
+
+    private static final String HOLD = """
+            UPDATE book_reservations SET reserved = reserved + LEAST(?, stock)
+            WHERE book_id = ?""";
+
+    private static final String UPDATE_STOCK = "UPDATE book_reservations SET stock = ? WHERE book_id = ?";
+
+    // Bloquea la fila hasta el final de la transacción, antes de modificarla
+    private static final String AVAILABLE_FOR_UPDATE = """
+            SELECT stock - reserved FROM book_reservations WHERE book_id = ? FOR UPDATE""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String create;
+
+    public BookReservationRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) throws MetaDataAccessException {
+        this.jdbcTemplate = jdbcTemplate;
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        this.create = DatabaseDriver.fromProductName(product) == DatabaseDriver.POSTGRESQL ? CREATE_POSTGRESQL : CREATE_STANDARD;
+    }
+
+    // Crea la fila del libro con el stock indicado si todavía no existe
+    public void createIfAbsent(String bookId, int stock) {
+        try {
+            jdbcTemplate.update(create, bookId, stock);
+        } catch (DuplicateKeyException e) {
+            // MERGE no es atómico frente a otra instancia que inserta a la vez: la fila ya existe
+        }
+    }
+
+    // Devuelve true si se han reservado los ejemplares
+    public boolean reserve(String bookId, int units) {
+        return jdbcTemplate.update(RESERVE, units, bookId, units) == 1;
+    }
+
+    // Devuelve los ejemplares de una compra confirmada que se cancela o se borra.
+    // Devuelve true si el libro estaba agotado y vuelve a tener ejemplares
+    public boolean release(String bookId, int units) {
+        Integer before = availableForUpdate(bookId);
+        if (before == null) {
+            return false;
+        }
+        jdbcTemplate.update(RELEASE, units, bookId);
+        return before <= 0 && available(bookId) > 0;
+    }
+
+    // Sincronización explícita con el stock del catálogo; crea la fila si no existe.
+    // Devuelve true si el libro estaba agotado y vuelve a tener ejemplares
+    public boolean updateStock(String bookId, int stock) {
+        createIfAbsent(bookId, stock);
+        int before = availableForUpdate(bookId);
+        jdbcTemplate.update(UPDATE_STOCK, stock, bookId);
+        return before <= 0 && available(bookId) > 0;
+    }
+
+    // Retiene los ejemplares de una compra que pasa a CONFIRMED fuera del alta, sin comprobar el stock
+    public void hold(String bookId, int units) {
+        jdbcTemplate.update(HOLD, units, bookId);
+    }
+
+    private Integer availableForUpdate(String bookId) {
+        List<Integer> available = jdbcTemplate.queryForList(AVAILABLE_FOR_UPDATE, Integer.class, bookId);
+        return available.isEmpty() ? null : available.getFirst();
+    }
+
+    public int available(String bookId) {
+        Integer available = jdbcTemplate.queryForObject(
+                "SELECT stock - reserved FROM book_reservations WHERE book_id = ?", Integer.class, bookId);
+        return available != null ? available : 0;
+    }
+}
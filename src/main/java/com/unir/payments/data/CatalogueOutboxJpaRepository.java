@@ -0,0 +1,22 @@
+package com.unir.payments.data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+public interface CatalogueOutboxJpaRepository extends JpaRepository<CatalogueOutboxEvent, Long> {
+
+	// SELECT ... FOR UPDATE SKIP LOCKED: varias instancias pueden vaciar la tabla sin enviar dos veces el mismo evento
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+	@Query("select e from CatalogueOutboxEvent e where e.nextAttemptAt <= :now order by e.id")
+	List<CatalogueOutboxEvent> findReadyForUpdate(LocalDateTime now, Limit limit);
+}
@@ -0,0 +1,42 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CatalogueOutboxRepository {
+
+    private final CatalogueOutboxJpaRepository repository;
+
+    public CatalogueOutboxEvent save(CatalogueOutboxEvent event) {
+        return repository.save(event);
+    }
+
+    public List<CatalogueOutboxEvent> saveAll(Collection<CatalogueOutboxEvent> events) {
+        return repository.saveAll(events);
+    }
+
+    // Debe invocarse dentro de una transacción, que conviene que sea corta: los eventos listos se reservan
+    // hasta leaseUntil y ninguna otra instancia los vuelve a tomar antes, aunque sus filas ya no estén bloqueadas
+    public List<CatalogueOutboxEvent> claimReady(LocalDateTime now, LocalDateTime leaseUntil, int limit) {
+        List<CatalogueOutboxEvent> events = repository.findReadyForUpdate(now, Limit.of(limit));
+        events.forEach(event -> event.setNextAttemptAt(leaseUntil));
+        return events;
+    }
+
+    // Eventos que siguen pendientes; los que otra instancia ya envió y eliminó no aparecen
+    public List<CatalogueOutboxEvent> findAllById(Collection<Long> ids) {
+        return repository.findAllById(ids);
+    }
+
+    public void deleteAll(Collection<CatalogueOutboxEvent> events) {
+        repository.deleteAllInBatch(events);
+    }
+}
@@ -0,0 +1,33 @@
+package com.unir.payments.data;
+
+import java.time.LocalDateTime;
+
+import com.unir.payments.data.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IdempotencyJpaRepository extends JpaRepository<IdempotencyRecord, String> {
+
+	@Transactional
+	@Modifying
+	@Query("update IdempotencyRecord r set r.status = com.unir.payments.data.model.IdempotencyRecord.Status.COMPLETED, "
+			+ "r.responseStatus = :responseStatus, r.responseBody = :responseBody where r.key = :key")
+	int complete(String key, int responseStatus, String responseBody);
+
+	// Recupera una clave cuyo dueño lleva demasiado tiempo sin terminar (por ejemplo, una instancia caída).
+	// Solo para la misma petición: la clave no cambia de datos al reclamarla
+	@Transactional
+	@Modifying
+	@Query("update IdempotencyRecord r set r.createdAt = :now "
+			+ "where r.key = :key and r.requestHash = :requestHash "
+			+ "and r.status = com.unir.payments.data.model.IdempotencyRecord.Status.IN_PROGRESS "
+			+ "and r.createdAt < :staleBefore")
+	int takeOver(String key, String requestHash, LocalDateTime now, LocalDateTime staleBefore);
+
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+	int deleteExpired(LocalDateTime now);
+}
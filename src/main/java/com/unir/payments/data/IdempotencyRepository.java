@@ -0,0 +1,88 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.IdempotencyRecord;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+@Repository
+public class IdempotencyRepository {
+
+    // Inserta la clave o, si la existente ha caducado (expires_at anterior a created_at), la sustituye: una clave
+    // caducada se reclama como nueva sin esperar a la purga. INSERT ... ON CONFLICT en PostgreSQL, MERGE en el resto
+    private static final String CLAIM_POSTGRESQL = """
+            INSERT INTO idempotency_keys (idempotency_key, request_hash, status, created_at, expires_at)
+            VALUES (?, ?, 'IN_PROGRESS', ?, ?)
+            ON CONFLICT (idempotency_key) DO UPDATE
+            SET request_hash = EXCLUDED.request_hash, status = EXCLUDED.status, created_at = EXCLUDED.created_at,
+                expires_at = EXCLUDED.expires_at, response_status = NULL, response_body = NULL
+            WHERE idempotency_keys.expires_at < EXCLUDED.created_at""";
+
+    private static final String CLAIM_STANDARD = """
+            MERGE INTO idempotency_keys t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(64)), CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP)))
+                AS s (idempotency_key, request_hash, created_at, expires_at)
+            ON t.idempotency_key = s.idempotency_key
+            WHEN MATCHED AND t.expires_at < s.created_at THEN UPDATE SET request_hash = s.request_hash,
+                status = 'IN_PROGRESS', created_at = s.created_at, expires_at = s.expires_at,
+                response_status = NULL, response_body = NULL
+            WHEN NOT MATCHED THEN INSERT (idempotency_key, request_hash, status, created_at, expires_at)
+                VALUES (s.idempotency_key, s.request_hash, 'IN_PROGRESS', s.created_at, s.expires_at)""";
+
+    private final IdempotencyJpaRepository repository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String claim;
+
+    public IdempotencyRepository(IdempotencyJpaRepository repository, JdbcTemplate jdbcTemplate,
+                                 DataSource dataSource) throws MetaDataAccessException {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        this.claim = DatabaseDriver.fromProductName(product) == DatabaseDriver.POSTGRESQL ? CLAIM_POSTGRESQL : CLAIM_STANDARD;
+    }
+
+    // Reclama la clave con una sentencia confirmada de inmediato; devuelve false si ya existía sin caducar
+    public boolean claim(String key, String requestHash, LocalDateTime now, LocalDateTime expiresAt) {
+        try {
+            return jdbcTemplate.update(claim, key, requestHash, Timestamp.valueOf(now), Timestamp.valueOf(expiresAt)) == 1;
+        } catch (DuplicateKeyException e) {
+            // MERGE no es atómico frente a otra petición que inserta la misma clave a la vez
+            return false;
+        }
+    }
+
+    public boolean takeOver(String key, String requestHash, LocalDateTime now, LocalDateTime staleBefore) {
+        return repository.takeOver(key, requestHash, now, staleBefore) == 1;
+    }
+
+    // En una transacción de escritura, que siempre va al primario: una réplica retrasada aún no tendría la clave
+    // que otra petición acaba de reclamar
+    @Transactional
+    public IdempotencyRecord find(String key) {
+        return repository.findById(key).orElse(null);
+    }
+
+    public void complete(String key, int responseStatus, String responseBody) {
+        repository.complete(key, responseStatus, responseBody);
+    }
+
+    // Libera la clave para que un reintento vuelva a ejecutar la petición
+    public void release(String key) {
+        repository.deleteById(key);
+    }
+
+    public int deleteExpired(LocalDateTime now) {
+        return repository.deleteExpired(now);
+    }
+}
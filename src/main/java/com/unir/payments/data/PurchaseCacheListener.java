@@ -0,0 +1,44 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.service.PurchaseCacheBroadcaster;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+// Avisa a los PurchaseCacheBroadcaster de cada compra modificada o eliminada, una vez confirmada la transacción,
+// para que las demás réplicas la descarten de su caché de segundo nivel. La caché local la actualiza Hibernate.
+@Component
+@RequiredArgsConstructor
+public class PurchaseCacheListener {
+
+    private final List<PurchaseCacheBroadcaster> broadcasters;
+
+    @PostUpdate
+    @PostRemove
+    void purchaseChanged(Purchase purchase) {
+        if (broadcasters.isEmpty()) {
+            return;
+        }
+        Long id = purchase.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(id);
+                }
+            });
+        } else {
+            broadcast(id);
+        }
+    }
+
+    private void broadcast(Long id) {
+        broadcasters.forEach(broadcaster -> broadcaster.purchaseChanged(id));
+    }
+}
@@ -0,0 +1,110 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.data.model.PurchaseView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class PurchaseChangeRepository {
+
+    // id lo asigna la secuencia purchase_changes_id_seq; seq, el orden de confirmación, se asigna después (sequence)
+    private static final String INSERT = """
+            INSERT INTO purchase_changes (purchase_id, operation, changed_at, book_id, purchase_date, quantity, buyer, status)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private static final String SELECT = """
+            SELECT seq, operation, changed_at, purchase_id, book_id, purchase_date, quantity, buyer, status
+            FROM purchase_changes""";
+
+    private static final RowMapper<PurchaseChange> CHANGE_MAPPER = (rs, rowNum) -> new PurchaseChange(
+            rs.getLong("seq"),
+            PurchaseChange.Operation.valueOf(rs.getString("operation")),
+            rs.getTimestamp("changed_at").toLocalDateTime(),
+            new PurchaseView(
+                    rs.getLong("purchase_id"),
+                    rs.getString("book_id"),
+                    rs.getTimestamp("purchase_date").toLocalDateTime(),
+                    rs.getInt("quantity"),
+                    rs.getString("buyer"),
+                    rs.getString("status")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Se ejecuta en la transacción de la escritura, sin bloquear nada más que las filas que inserta: el cambio
+    // queda sin número de secuencia hasta que, ya confirmado, lo numera sequence
+    public void append(PurchaseChange.Operation operation, List<Purchase> purchases) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(purchases.size());
+        for (Purchase purchase : purchases) {
+            rows.add(new Object[] {purchase.getId(), operation.name(), now, purchase.getBookId(),
+                    Timestamp.valueOf(purchase.getPurchaseDate()), purchase.getQuantity(), purchase.getBuyer(),
+                    purchase.getStatus()});
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    // Numera, en una transacción propia, los cambios ya confirmados que no tienen secuencia, a continuación de
+    // last_seq y en el orden de id. La fila de purchase_change_seq solo la bloquean las numeraciones, no las
+    // escrituras, y la consulta de pendientes se hace después de obtener el bloqueo: ve todo lo confirmado
+    // antes. Un cambio que se confirma más tarde recibe un número mayor, así que las secuencias siguen el orden
+    // de confirmación, sin huecos, y un consumidor que lee seq > N no se salta ninguno.
+    // Devuelve la última secuencia asignada, la última eliminada por la retención y cuántos cambios ha numerado
+    public long[] sequence(int limit) {
+        long[] positions = jdbcTemplate.queryForObject(
+                "SELECT last_seq, purged_seq FROM purchase_change_seq WHERE id = 1 FOR UPDATE",
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)});
+        List<Long> pending = jdbcTemplate.queryForList(
+                "SELECT id FROM purchase_changes WHERE seq IS NULL ORDER BY id FETCH FIRST ? ROWS ONLY", Long.class, limit);
+        if (pending.isEmpty()) {
+            return new long[] {positions[0], positions[1], 0};
+        }
+        long seq = positions[0];
+        List<Object[]> rows = new ArrayList<>(pending.size());
+        for (Long id : pending) {
+            rows.add(new Object[] {++seq, id});
+        }
+        jdbcTemplate.batchUpdate("UPDATE purchase_changes SET seq = ? WHERE id = ?", rows);
+        jdbcTemplate.update("UPDATE purchase_change_seq SET last_seq = ? WHERE id = 1", seq);
+        return new long[] {seq, positions[1], pending.size()};
+    }
+
+    // Cambios posteriores a la secuencia indicada, en orden; usa la clave primaria
+    public List<PurchaseChange> since(long seq, int limit) {
+        return jdbcTemplate.query(SELECT + " WHERE seq > ? ORDER BY seq FETCH FIRST ? ROWS ONLY", CHANGE_MAPPER, seq, limit);
+    }
+
+    // Última secuencia asignada: todos los cambios hasta ella están confirmados y numerados.
+    // En una transacción de solo lectura, la de la réplica que la atiende
+    public long lastSeq() {
+        return jdbcTemplate.queryForObject("SELECT last_seq FROM purchase_change_seq WHERE id = 1", Long.class);
+    }
+
+    // Última secuencia asignada y última eliminada por la retención
+    public long[] positions() {
+        return jdbcTemplate.queryForObject("SELECT last_seq, purged_seq FROM purchase_change_seq WHERE id = 1",
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)});
+    }
+
+    // Elimina los cambios anteriores a la fecha como un prefijo de la secuencia y devuelve el último eliminado
+    public long purgeBefore(LocalDateTime before, long purgedSeq) {
+        Long last = jdbcTemplate.queryForObject(
+                "SELECT MAX(seq) FROM purchase_changes WHERE changed_at < ?", Long.class, Timestamp.valueOf(before));
+        if (last == null || last <= purgedSeq) {
+            return purgedSeq;
+        }
+        // purged_seq se actualiza al final para bloquear purchase_change_seq el menor tiempo posible
+        jdbcTemplate.update("DELETE FROM purchase_changes WHERE seq <= ?", last);
+        jdbcTemplate.update("UPDATE purchase_change_seq SET purged_seq = ? WHERE id = 1 AND purged_seq < ?", last, last);
+        return last;
+    }
+}
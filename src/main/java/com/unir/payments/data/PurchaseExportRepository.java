@@ -0,0 +1,173 @@
+package com.unir.payments.data;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.data.utils.PurchaseExportFormat;
+import com.unir.payments.data.utils.PurchaseField;
+import com.unir.payments.data.utils.PurchaseQuery;
+import org.postgresql.PGConnection;
+import org.postgresql.core.BaseConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Exportación masiva de compras sin Hibernate ni Jackson databind. En PostgreSQL el propio servidor genera el
+// CSV o el NDJSON con COPY ... TO STDOUT; en el resto (H2) se recorre un cursor JDBC y cada fila se escribe
+// según se lee. En ambos casos la memoria no depende del número de compras.
+@Repository
+public class PurchaseExportRepository {
+
+    // Mismo formato que las fechas del CSV de COPY: 2025-01-31 10:15:00[.123456]
+    private static final DateTimeFormatter CSV_TIMESTAMP = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd HH:mm:ss")
+            .appendFraction(ChronoField.MICRO_OF_SECOND, 0, 6, true)
+            .toFormatter();
+
+    // Mismo formato que purchaseDate en las respuestas JSON de la API (PurchaseView): sin fracción de segundo
+    private static final DateTimeFormatter JSON_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final JsonFactory jsonFactory;
+
+    private final boolean postgresql;
+
+    public PurchaseExportRepository(DataSource dataSource, ObjectMapper objectMapper,
+                                    @Value("${purchases.export.fetch-size:1000}") int fetchSize) throws MetaDataAccessException {
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(cursor);
+        this.jsonFactory = objectMapper.getFactory();
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        this.postgresql = DatabaseDriver.fromProductName(product) == DatabaseDriver.POSTGRESQL;
+    }
+
+    // Escribe las compras de la consulta (sin límite ni cursor) en out y devuelve cuántas son.
+    // Solo salen los campos pedidos, aunque se ordene por otros.
+    // De solo lectura: con réplicas configuradas, la exportación no carga el primario
+    @Transactional(readOnly = true)
+    public long export(PurchaseQuery query, PurchaseExportFormat format, OutputStream out) {
+        PurchaseSql sql = PurchaseSql.export(query, postgresql && format == PurchaseExportFormat.NDJSON);
+        return postgresql ? copy(sql, format, out) : cursor(sql, query.getFields(), format, out);
+    }
+
+    private long copy(PurchaseSql sql, PurchaseExportFormat format, OutputStream out) {
+        Long rows = jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Long>) connection -> {
+            String select = sql.inlined(connection.unwrap(BaseConnection.class).getStandardConformingStrings());
+            String copy = switch (format) {
+                case CSV -> "COPY (" + select + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+                // Una fila JSON por línea. El formato csv con comillas y separador que JSON nunca contiene sin escapar
+                // evita que COPY modifique el texto (el formato text duplicaría las barras invertidas)
+                case NDJSON -> "COPY (SELECT row_to_json(p) FROM (" + select + ") p)"
+                        + " TO STDOUT WITH (FORMAT csv, QUOTE E'\\x01', DELIMITER E'\\x02')";
+            };
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(copy, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+
+    private long cursor(PurchaseSql sql, Collection<PurchaseField> columns, PurchaseExportFormat format, OutputStream out) {
+        List<PurchaseField> fields = new ArrayList<>(columns);
+        try (JsonGenerator json = format == PurchaseExportFormat.NDJSON ? ndjson(out) : null) {
+            if (format == PurchaseExportFormat.CSV) {
+                out.write(String.join(",", fields.stream().map(PurchaseField::getAttribute).toList()).getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+            long[] rows = {0};
+            jdbcTemplate.query(sql.getSql(), sql.getParams(), rs -> {
+                try {
+                    if (json != null) {
+                        writeJson(json, fields, rs);
+                    } else {
+                        writeCsv(out, fields, rs);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+            return rows[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Sin cerrar out al terminar y sin el espacio que Jackson escribe entre valores raíz: cada fila acaba en '\n'
+    private JsonGenerator ndjson(OutputStream out) throws IOException {
+        JsonGenerator json = jsonFactory.createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        return json;
+    }
+
+    private static void writeJson(JsonGenerator json, List<PurchaseField> fields, ResultSet rs) throws IOException, SQLException {
+        json.writeStartObject();
+        for (PurchaseField field : fields) {
+            json.writeFieldName(field.getAttribute());
+            switch (field) {
+                case ID -> json.writeNumber(rs.getLong(field.getAttribute()));
+                case QUANTITY -> json.writeNumber(rs.getInt(field.getAttribute()));
+                case PURCHASE_DATE -> json.writeString(JSON_TIMESTAMP.format(rs.getTimestamp(field.getAttribute()).toLocalDateTime()));
+                default -> json.writeString(rs.getString(field.getAttribute()));
+            }
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static void writeCsv(OutputStream out, List<PurchaseField> fields, ResultSet rs) throws IOException, SQLException {
+        StringBuilder line = new StringBuilder(128);
+        for (PurchaseField field : fields) {
+            if (!line.isEmpty()) {
+                line.append(',');
+            }
+            switch (field) {
+                case ID, QUANTITY -> line.append(rs.getString(field.getAttribute()));
+                case PURCHASE_DATE -> {
+                    Timestamp timestamp = rs.getTimestamp(field.getAttribute());
+                    line.append(CSV_TIMESTAMP.format(timestamp.toLocalDateTime()));
+                }
+                default -> appendCsv(line, rs.getString(field.getAttribute()));
+            }
+        }
+        line.append('\n');
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Entre comillas solo si hace falta, como COPY: con separador, comillas o saltos de línea
+    private static void appendCsv(StringBuilder line, String value) {
+        if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(value);
+        }
+    }
+}
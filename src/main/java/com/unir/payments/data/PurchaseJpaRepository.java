@@ -1,8 +1,15 @@
 package com.unir.payments.data;
 
+import java.util.Collection;
 import java.util.List;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import com.unir.payments.data.model.Purchase;
 
 public interface PurchaseJpaRepository extends JpaRepository<Purchase, Long>, JpaSpecificationExecutor<Purchase> {
@@ -14,4 +21,10 @@ public interface PurchaseJpaRepository extends JpaRepository<Purchase, Long>, Jp
 	List<Purchase> findByStatus(String status);
 
 	List<Purchase> findByBookIdAndBuyer(String bookId, String buyer);
+
+	// SELECT ... FOR UPDATE SKIP LOCKED: varias instancias pueden reconciliar a la vez sin tratar dos veces la misma compra
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+	@Query("select p from Purchase p where p.id in :ids and p.status = :status order by p.id")
+	List<Purchase> findByIdInAndStatusForUpdate(Collection<Long> ids, String status);
 }
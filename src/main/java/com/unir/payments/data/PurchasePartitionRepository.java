@@ -0,0 +1,123 @@
+package com.unir.payments.data;
+
+import org.postgresql.PGConnection;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.DatabaseMetaData;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Particiones mensuales de purchases en PostgreSQL (ver db/migration/postgresql/V2__partition_purchases.sql).
+// Las operaciones deben ejecutarse dentro de una transacción.
+@Repository
+public class PurchasePartitionRepository {
+
+    private static final String PARTITION_PREFIX = "purchases_p";
+
+    // Partición ya separada de purchases y pendiente de exportar y borrar
+    private static final String ARCHIVE_PREFIX = "purchases_archive_p";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Todas las columnas de purchases (V1 y V5)
+    private static final String PURCHASE_COLUMNS = "id, book_id, buyer, status, quantity, purchase_date, version, last_modified";
+
+    // Clave del advisory lock que serializa el mantenimiento entre instancias
+    private static final long MAINTENANCE_LOCK = 0x70757263686173L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean postgresql;
+
+    public PurchasePartitionRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) throws MetaDataAccessException {
+        this.jdbcTemplate = jdbcTemplate;
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        this.postgresql = DatabaseDriver.fromProductName(product) == DatabaseDriver.POSTGRESQL;
+    }
+
+    // True si purchases es una tabla particionada (solo en PostgreSQL)
+    public boolean isPartitioned() {
+        return postgresql && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_class WHERE relname = 'purchases' AND relkind = 'p' AND pg_table_is_visible(oid))",
+                Boolean.class));
+    }
+
+    // Se libera al terminar la transacción; false si otra instancia está haciendo el mantenimiento
+    public boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK));
+    }
+
+    // Las operaciones que bloquean purchases fallan en lugar de encolar las consultas de la aplicación tras ellas
+    public void setLockTimeout(Duration timeout) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + timeout.toMillis());
+    }
+
+    public List<YearMonth> partitions() {
+        return months("""
+                SELECT c.relname FROM pg_inherits i
+                  JOIN pg_class c ON c.oid = i.inhrelid
+                  JOIN pg_class p ON p.oid = i.inhparent
+                 WHERE p.relname = 'purchases' AND pg_table_is_visible(p.oid)""", PARTITION_PREFIX);
+    }
+
+    public List<YearMonth> archives() {
+        return months("SELECT relname FROM pg_class WHERE relkind = 'r' AND pg_table_is_visible(oid)", ARCHIVE_PREFIX);
+    }
+
+    // Crea la partición del mes llevándose las compras de ese mes que hubiera en purchases_default. Columnas
+    // explícitas en ambos lados: con SELECT * las que no se nombran (version, last_modified) tomarían el valor
+    // por defecto, y el orden de las columnas de purchases_default no tiene por qué coincidir con el de la partición
+    public void createPartition(YearMonth month) {
+        String partition = PARTITION_PREFIX + month.format(SUFFIX);
+        jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE purchases INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM purchases_default WHERE purchase_date >= ? AND purchase_date < ?"
+                        + " RETURNING " + PURCHASE_COLUMNS + ")"
+                        + " INSERT INTO " + partition + " (" + PURCHASE_COLUMNS + ") SELECT " + PURCHASE_COLUMNS + " FROM moved",
+                month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+        jdbcTemplate.execute("ALTER TABLE purchases ATTACH PARTITION " + partition
+                + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    // Separa la partición de purchases: sus compras dejan de ser visibles para la aplicación
+    public void detachForArchive(YearMonth month) {
+        String suffix = month.format(SUFFIX);
+        jdbcTemplate.execute("ALTER TABLE purchases DETACH PARTITION " + PARTITION_PREFIX + suffix);
+        jdbcTemplate.execute("ALTER TABLE " + PARTITION_PREFIX + suffix + " RENAME TO " + ARCHIVE_PREFIX + suffix);
+    }
+
+    // Escribe la partición separada en CSV con cabecera mediante COPY; devuelve el número de compras
+    public long exportArchive(YearMonth month, OutputStream out) {
+        String copy = "COPY " + ARCHIVE_PREFIX + month.format(SUFFIX) + " TO STDOUT WITH (FORMAT csv, HEADER)";
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(copy, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+
+    public void dropArchive(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE " + ARCHIVE_PREFIX + month.format(SUFFIX));
+    }
+
+    private List<YearMonth> months(String sql, String prefix) {
+        return jdbcTemplate.queryForList(sql, String.class).stream()
+                .filter(name -> name.startsWith(prefix) && name.length() == prefix.length() + 6)
+                .map(name -> YearMonth.parse(name.substring(prefix.length()), SUFFIX))
+                .sorted()
+                .toList();
+    }
+}
@@ -1,53 +1,244 @@
 package com.unir.payments.data;
 
+import com.unir.payments.config.ReplicaDataSourceProperties;
 import com.unir.payments.data.utils.Consts;
+import com.unir.payments.data.utils.PurchaseField;
+import com.unir.payments.data.utils.PurchaseQuery;
 import com.unir.payments.data.utils.SearchCriteria;
 import com.unir.payments.data.utils.SearchOperation;
 import com.unir.payments.data.utils.SearchStatement;
 import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchasePage;
+import com.unir.payments.data.model.PurchaseView;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
+// Cada método público registra el timer purchases.repository con las etiquetas class y method
 @Repository
 @RequiredArgsConstructor
+@Timed(value = "purchases.repository", description = "Latencia de las operaciones del repositorio de compras")
 public class PurchaseRepository {
 
+    // ISBN-10 o ISBN-13 completo y solo con dígitos: la igualdad no depende de mayúsculas y minúsculas.
+    // Un ISBN-10 con X de control se busca como prefijo, que no las distingue
+    static final Pattern FULL_ISBN = Pattern.compile("\\d{10}|\\d{13}");
+
+    // Prefijo de bookIsbn que pide una búsqueda por subcadena en lugar de por prefijo
+    static final String CONTAINS = "*";
+
     private final PurchaseJpaRepository repository;
 
-    public List<Purchase> getPurchases() {
-        return repository.findAll();
-    }
+    private final EntityManager entityManager;
+
+    private final ReadYourWrites readYourWrites;
+
+    private final ReplicaDataSourceProperties replicaProperties;
 
+    @Value("${purchases.stream.fetch-size:500}")
+    private int fetchSize;
+
+    // De solo lectura: con réplicas, la consulta no carga el primario. La caché de segundo nivel se consulta pero,
+    // si la compra viene de una réplica, no se guarda en ella: la caché no debe quedarse con la versión de una
+    // réplica retrasada. Dentro de una transacción de escritura se lee del primario y se cachea como siempre
+    @Transactional(readOnly = true)
     public Purchase getById(Long id) {
-        return repository.findById(id).orElse(null);
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || replicaProperties.getUrls().isEmpty() || readYourWrites.requiresPrimary()) {
+            return repository.findById(id).orElse(null);
+        }
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.GET);
+        try {
+            return repository.findById(id).orElse(null);
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
     }
 
     public Purchase save(Purchase purchase) {
-        return repository.save(purchase);
+        Purchase saved = repository.save(purchase);
+        readYourWrites.written();
+        return saved;
+    }
+
+    // Inserta el lote en una única transacción y vacía el contexto de persistencia al terminar,
+    // de forma que los lotes sucesivos no acumulen entidades en memoria.
+    @Transactional
+    public List<Purchase> saveAll(List<Purchase> purchases) {
+        List<Purchase> saved = repository.saveAll(purchases);
+        entityManager.flush();
+        entityManager.clear();
+        readYourWrites.written();
+        return saved;
+    }
+
+    // Debe invocarse dentro de una transacción: las compras de ids que siguen en ese estado quedan bloqueadas
+    // hasta que termine; las bloqueadas por otra transacción se omiten
+    public List<Purchase> lockByStatus(Collection<Long> ids, String status) {
+        return repository.findByIdInAndStatusForUpdate(ids, status);
     }
 
     public void delete(Purchase purchase) {
         repository.delete(purchase);
+        readYourWrites.written();
+    }
+
+    // Página de compras según la consulta; solo se leen las columnas pedidas y las de la ordenación
+    @Transactional(readOnly = true)
+    public PurchasePage search(PurchaseQuery query) {
+        List<Tuple> rows = entityManager.createQuery(tupleQuery(query))
+                .setMaxResults(query.getLimit())
+                .getResultList();
+        List<PurchaseView> purchases = rows.stream().map(row -> toView(query, row)).toList();
+        String nextCursor = rows.size() == query.getLimit()
+                ? query.cursorOf(field -> rows.getLast().get(field.getAttribute()))
+                : null;
+        return new PurchasePage(purchases, nextCursor);
+    }
+
+    // Recorre las compras con un cursor de Hibernate; las filas no quedan en el contexto
+    // de persistencia, así que la memoria no depende del tamaño de la tabla.
+    @Transactional(readOnly = true)
+    public void streamPurchases(PurchaseQuery query, Consumer<PurchaseView> consumer) {
+        Session session = entityManager.unwrap(Session.class);
+        try (ScrollableResults<Tuple> results = session.createQuery(tupleQuery(query))
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept(toView(query, results.get()));
+            }
+        }
+    }
+
+    // SELECT de las columnas necesarias con los filtros, la ordenación y la condición del cursor
+    private CriteriaQuery<Tuple> tupleQuery(PurchaseQuery query) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = builder.createTupleQuery();
+        Root<Purchase> root = criteriaQuery.from(Purchase.class);
+        Predicate predicate = criteria(query).toPredicate(root, criteriaQuery, builder);
+        if (query.getCursor() != null) {
+            predicate = builder.and(predicate, keyset(builder, root, query.getOrderBy(), query.getCursor()));
+        }
+        return criteriaQuery.multiselect(query.columns().stream()
+                        .<Selection<?>>map(field -> root.get(field.getAttribute()).alias(field.getAttribute()))
+                        .toList())
+                .where(predicate)
+                .orderBy(query.getOrderBy().stream()
+                        .map(order -> order.descending()
+                                ? builder.desc(root.get(order.field().getAttribute()))
+                                : builder.asc(root.get(order.field().getAttribute())))
+                        .toList());
+    }
+
+    // Filas posteriores al cursor en el orden indicado: (a > x) OR (a = x AND b > y) OR ...
+    // La primera columna se acota además con a >= x para que su índice delimite el recorrido.
+    private static Predicate keyset(CriteriaBuilder builder, Root<Purchase> root,
+                                    List<PurchaseQuery.Order> orderBy, List<Object> cursor) {
+        List<Predicate> alternatives = new ArrayList<>();
+        List<Predicate> equalities = new ArrayList<>();
+        for (int i = 0; i < orderBy.size(); i++) {
+            PurchaseQuery.Order order = orderBy.get(i);
+            Path<Object> path = root.get(order.field().getAttribute());
+            List<Predicate> alternative = new ArrayList<>(equalities);
+            alternative.add(SearchCriteria.compare(builder, path,
+                    order.descending() ? SearchOperation.LESS_THAN : SearchOperation.GREATER_THAN, cursor.get(i)));
+            alternatives.add(builder.and(alternative.toArray(new Predicate[0])));
+            equalities.add(builder.equal(path, cursor.get(i)));
+        }
+        PurchaseQuery.Order first = orderBy.getFirst();
+        Predicate bound = SearchCriteria.compare(builder, root.get(first.field().getAttribute()),
+                first.descending() ? SearchOperation.LESS_THAN_EQUAL : SearchOperation.GREATER_THAN_EQUAL, cursor.getFirst());
+        return builder.and(bound, builder.or(alternatives.toArray(new Predicate[0])));
+    }
+
+    private static PurchaseView toView(PurchaseQuery query, Tuple row) {
+        Set<PurchaseField> fields = query.getFields();
+        return new PurchaseView(
+                fields.contains(PurchaseField.ID) ? row.get(Consts.ID, Long.class) : null,
+                fields.contains(PurchaseField.BOOK_ID) ? row.get(Consts.BOOK_ID, String.class) : null,
+                fields.contains(PurchaseField.PURCHASE_DATE) ? row.get("purchaseDate", LocalDateTime.class) : null,
+                fields.contains(PurchaseField.QUANTITY) ? row.get(Consts.QUANTITY, Integer.class) : null,
+                fields.contains(PurchaseField.BUYER) ? row.get(Consts.BUYER, String.class) : null,
+                fields.contains(PurchaseField.STATUS) ? row.get(Consts.STATUS, String.class) : null);
     }
 
-    public List<Purchase> search(String bookId, String buyer, String status) {
+    // Filtro bookIsbn: un ISBN completo por igualdad (índice de book_id), "*parte" por subcadena y el resto por
+    // prefijo, estos dos sin distinguir mayúsculas (índices de lower(book_id) en PostgreSQL). Lo comparte PurchaseSql
+    static SearchStatement bookIdStatement(String bookId) {
+        if (StringUtils.isBlank(bookId)) {
+            return null;
+        }
+        String isbn = bookId.trim();
+        if (FULL_ISBN.matcher(isbn).matches()) {
+            return new SearchStatement(Consts.BOOK_ID, isbn, SearchOperation.EQUAL);
+        }
+        if (isbn.startsWith(CONTAINS)) {
+            String part = isbn.substring(CONTAINS.length()).trim();
+            return part.isEmpty() ? null : new SearchStatement(Consts.BOOK_ID, part, SearchOperation.MATCH);
+        }
+        return new SearchStatement(Consts.BOOK_ID, isbn, SearchOperation.STARTS_WITH);
+    }
+
+    private SearchCriteria<Purchase> criteria(PurchaseQuery query) {
         SearchCriteria<Purchase> spec = new SearchCriteria<>();
 
-        if (StringUtils.isNotBlank(bookId)) {
-            spec.add(new SearchStatement(Consts.BOOK_ID, bookId, SearchOperation.MATCH));
+        SearchStatement bookId = bookIdStatement(query.getBookId());
+        if (bookId != null) {
+            spec.add(bookId);
+        }
+
+        if (StringUtils.isNotBlank(query.getBuyer())) {
+            spec.add(new SearchStatement(Consts.BUYER, query.getBuyer(), SearchOperation.EQUAL));
+        }
+
+        if (StringUtils.isNotBlank(query.getStatus())) {
+            spec.add(new SearchStatement(Consts.STATUS, query.getStatus(), SearchOperation.EQUAL));
+        }
+
+        // Rango de fechas [from, to] en días completos. En PostgreSQL limita la consulta a las particiones
+        // mensuales de ese rango (partition pruning) en lugar de recorrer todo el histórico.
+        if (query.getFrom() != null) {
+            spec.add(new SearchStatement("purchaseDate", query.getFrom().atStartOfDay(), SearchOperation.GREATER_THAN_EQUAL));
+        }
+
+        if (query.getTo() != null) {
+            spec.add(new SearchStatement("purchaseDate", query.getTo().plusDays(1).atStartOfDay(), SearchOperation.LESS_THAN));
         }
 
-        if (StringUtils.isNotBlank(buyer)) {
-            spec.add(new SearchStatement(Consts.BUYER, buyer, SearchOperation.EQUAL));
+        if (query.getMinQuantity() != null) {
+            spec.add(new SearchStatement(Consts.QUANTITY, query.getMinQuantity(), SearchOperation.GREATER_THAN_EQUAL));
         }
 
-        if (StringUtils.isNotBlank(status)) {
-            spec.add(new SearchStatement(Consts.STATUS, status, SearchOperation.EQUAL));
+        if (query.getMaxQuantity() != null) {
+            spec.add(new SearchStatement(Consts.QUANTITY, query.getMaxQuantity(), SearchOperation.LESS_THAN_EQUAL));
         }
 
-        return repository.findAll(spec);
+        return spec;
     }
 }
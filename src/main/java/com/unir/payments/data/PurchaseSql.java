@@ -0,0 +1,164 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.utils.PurchaseField;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.unir.payments.data.utils.SearchCriteria;
+import com.unir.payments.data.utils.SearchStatement;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.postgresql.core.Utils;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// SELECT sobre purchases para una PurchaseQuery con los mismos filtros, orden y cursor que genera
+// PurchaseRepository con Criteria. Lo usan las consultas que no pasan por Hibernate: el repositorio reactivo
+// y la exportación. Los valores van como parámetros con nombre (:nombre).
+@Getter
+final class PurchaseSql {
+
+    private static final Pattern PARAMETER = Pattern.compile(":(\\w+)");
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private final String sql;
+
+    private final Map<String, Object> params;
+
+    private PurchaseSql(String sql, Map<String, Object> params) {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    // Las columnas se devuelven con su nombre o, con aliases, con el nombre del campo en la API. Incluye las de la
+    // ordenación aunque no se hayan pedido: el repositorio reactivo las necesita para el cursor
+    static PurchaseSql of(PurchaseQuery query, boolean aliases) {
+        return of(query, query.columns(), field -> aliases ? alias(field.getColumn(), field) : field.getColumn());
+    }
+
+    // Solo los campos pedidos (fields) con el nombre de la API; las columnas de la ordenación quedan en ORDER BY.
+    // Con jsonDates purchaseDate se trunca al segundo, como en las respuestas JSON (PurchaseView), para que
+    // row_to_json no escriba la fracción
+    static PurchaseSql export(PurchaseQuery query, boolean jsonDates) {
+        return of(query, query.getFields(), field -> alias(jsonDates && field == PurchaseField.PURCHASE_DATE
+                ? "date_trunc('second', " + field.getColumn() + ")"
+                : field.getColumn(), field));
+    }
+
+    private static String alias(String expression, PurchaseField field) {
+        return expression.equals(field.getAttribute()) ? expression : expression + " AS \"" + field.getAttribute() + "\"";
+    }
+
+    private static PurchaseSql of(PurchaseQuery query, Collection<PurchaseField> columns,
+                                  Function<PurchaseField, String> expression) {
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        Map<String, Object> params = new LinkedHashMap<>();
+
+        // Mismo filtro de bookIsbn que PurchaseRepository: igualdad, subcadena o prefijo
+        SearchStatement bookId = PurchaseRepository.bookIdStatement(query.getBookId());
+        if (bookId != null) {
+            String isbn = bookId.getValue().toString();
+            switch (bookId.getOperation()) {
+                case EQUAL -> {
+                    where.add("book_id = :bookId");
+                    params.put("bookId", isbn);
+                }
+                case MATCH -> {
+                    where.add("lower(book_id) LIKE :bookId ESCAPE '" + SearchCriteria.LIKE_ESCAPE + "'");
+                    params.put("bookId", "%" + SearchCriteria.escapeLike(isbn.toLowerCase()) + "%");
+                }
+                default -> {
+                    where.add("lower(book_id) LIKE :bookId ESCAPE '" + SearchCriteria.LIKE_ESCAPE + "'");
+                    params.put("bookId", SearchCriteria.escapeLike(isbn.toLowerCase()) + "%");
+                }
+            }
+        }
+        if (StringUtils.isNotBlank(query.getBuyer())) {
+            where.add("buyer = :buyer");
+            params.put("buyer", query.getBuyer());
+        }
+        if (StringUtils.isNotBlank(query.getStatus())) {
+            where.add("status = :status");
+            params.put("status", query.getStatus());
+        }
+        // Rango de fechas [from, to] en días completos; en PostgreSQL limita las particiones consultadas
+        if (query.getFrom() != null) {
+            where.add("purchase_date >= :from");
+            params.put("from", query.getFrom().atStartOfDay());
+        }
+        if (query.getTo() != null) {
+            where.add("purchase_date < :to");
+            params.put("to", query.getTo().plusDays(1).atStartOfDay());
+        }
+        if (query.getMinQuantity() != null) {
+            where.add("quantity >= :minQuantity");
+            params.put("minQuantity", query.getMinQuantity());
+        }
+        if (query.getMaxQuantity() != null) {
+            where.add("quantity <= :maxQuantity");
+            params.put("maxQuantity", query.getMaxQuantity());
+        }
+        if (query.getCursor() != null) {
+            where.add(keyset(query.getOrderBy(), query.getCursor(), params));
+        }
+
+        StringJoiner select = new StringJoiner(", ");
+        columns.forEach(field -> select.add(expression.apply(field)));
+        StringJoiner orderBy = new StringJoiner(", ");
+        query.getOrderBy().forEach(order -> orderBy.add(order.field().getColumn() + (order.descending() ? " DESC" : "")));
+        String sql = "SELECT " + select + " FROM purchases" + where + " ORDER BY " + orderBy;
+        if (query.getLimit() != null) {
+            sql += " LIMIT :limit";
+            params.put("limit", query.getLimit());
+        }
+        return new PurchaseSql(sql, params);
+    }
+
+    // (a > :k0 OR (a = :k0 AND b > :k1) ...), con la primera columna acotada también por a >= :k0
+    private static String keyset(List<PurchaseQuery.Order> orderBy, List<Object> cursor, Map<String, Object> params) {
+        StringJoiner alternatives = new StringJoiner(" OR ", "(", ")");
+        StringJoiner equalities = new StringJoiner(" AND ");
+        for (int i = 0; i < orderBy.size(); i++) {
+            PurchaseQuery.Order order = orderBy.get(i);
+            String column = order.field().getColumn();
+            String comparison = column + (order.descending() ? " < :k" : " > :k") + i;
+            alternatives.add(equalities.length() == 0 ? comparison : "(" + equalities + " AND " + comparison + ")");
+            equalities.add(column + " = :k" + i);
+            params.put("k" + i, cursor.get(i));
+        }
+        PurchaseQuery.Order first = orderBy.getFirst();
+        return first.field().getColumn() + (first.descending() ? " <= :k0" : " >= :k0") + " AND " + alternatives;
+    }
+
+    // La consulta con los valores escritos como literales, para COPY, que no admite parámetros. Las cadenas se
+    // escapan como el driver de PostgreSQL según standard_conforming_strings de la conexión (con off, también
+    // las barras invertidas)
+    String inlined(boolean standardConformingStrings) throws SQLException {
+        Matcher matcher = PARAMETER.matcher(sql);
+        StringBuilder inlined = new StringBuilder();
+        while (matcher.find()) {
+            String literal = literal(params.get(matcher.group(1)), standardConformingStrings);
+            matcher.appendReplacement(inlined, Matcher.quoteReplacement(literal));
+        }
+        return matcher.appendTail(inlined).toString();
+    }
+
+    private static String literal(Object value, boolean standardConformingStrings) throws SQLException {
+        return switch (value) {
+            case Integer number -> number.toString();
+            case Long number -> number.toString();
+            case LocalDateTime timestamp -> "TIMESTAMP '" + timestamp.format(TIMESTAMP) + "'";
+            case String text -> "'" + Utils.escapeLiteral(null, text, standardConformingStrings) + "'";
+            default -> throw new IllegalArgumentException("Valor no admitido en la consulta: " + value);
+        };
+    }
+}
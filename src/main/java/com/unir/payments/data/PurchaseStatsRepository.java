@@ -0,0 +1,116 @@
+package com.unir.payments.data;
+
+import com.unir.payments.controller.model.PurchaseStatDto;
+import com.unir.payments.data.model.PurchaseStat;
+import com.unir.payments.data.utils.PurchaseStatsDelta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Repository
+public class PurchaseStatsRepository {
+
+    // Incremento atómico de la fila del resumen: INSERT ... ON CONFLICT en PostgreSQL, MERGE estándar en el resto
+    private static final String UPSERT_POSTGRESQL = """
+            INSERT INTO purchase_stats (dimension, dim_key, stat_date, shard, purchases, quantity) VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (stat_date, dimension, dim_key, shard) DO UPDATE
+            SET purchases = purchase_stats.purchases + EXCLUDED.purchases,
+                quantity = purchase_stats.quantity + EXCLUDED.quantity""";
+
+    private static final String UPSERT_STANDARD = """
+            MERGE INTO purchase_stats t
+            USING (VALUES (CAST(? AS VARCHAR(20)), CAST(? AS VARCHAR(255)), CAST(? AS DATE), CAST(? AS INTEGER),
+                           CAST(? AS BIGINT), CAST(? AS BIGINT)))
+                AS s (dimension, dim_key, stat_date, shard, purchases, quantity)
+            ON t.dimension = s.dimension AND t.dim_key = s.dim_key AND t.stat_date = s.stat_date AND t.shard = s.shard
+            WHEN MATCHED THEN UPDATE SET purchases = t.purchases + s.purchases, quantity = t.quantity + s.quantity
+            WHEN NOT MATCHED THEN INSERT (dimension, dim_key, stat_date, shard, purchases, quantity)
+                VALUES (s.dimension, s.dim_key, s.stat_date, s.shard, s.purchases, s.quantity)""";
+
+    private static final RowMapper<PurchaseStatDto> STAT_MAPPER = (rs, rowNum) -> new PurchaseStatDto(
+            rs.getString(1), rs.getLong(2), rs.getLong(3));
+
+    static final Comparator<PurchaseStat.Key> KEY_ORDER = Comparator.comparing(PurchaseStat.Key::getDate)
+            .thenComparing(PurchaseStat.Key::getDimension)
+            .thenComparing(PurchaseStat.Key::getKey);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean postgresql;
+
+    private final int shards;
+
+    public PurchaseStatsRepository(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                   @Value("${purchases.stats.shards:16}") int shards) throws MetaDataAccessException {
+        this.jdbcTemplate = jdbcTemplate;
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        this.postgresql = DatabaseDriver.fromProductName(product) == DatabaseDriver.POSTGRESQL;
+        this.shards = Math.max(1, shards);
+    }
+
+    // Se ejecuta en la transacción de la escritura de compras que origina el cambio. Cada transacción suma en una
+    // de las shards filas de cada (dimensión, valor, día), elegida al azar: las compras simultáneas del mismo día y
+    // estado no esperan todas por la misma fila. Las consultas suman las filas de todas las shards
+    public void apply(PurchaseStatsDelta delta) {
+        Map<PurchaseStat.Key, long[]> changes = delta.getChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        // Siempre en el mismo orden, para que dos transacciones no se bloqueen en orden inverso
+        changes.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(KEY_ORDER))
+                .forEach(change -> rows.add(new Object[] {change.getKey().getDimension().name(), change.getKey().getKey(),
+                        Date.valueOf(change.getKey().getDate()), shard, change.getValue()[0], change.getValue()[1]}));
+        if (postgresql) {
+            jdbcTemplate.batchUpdate(UPSERT_POSTGRESQL, rows);
+            return;
+        }
+        // El MERGE de H2 no bloquea la clave que no encuentra: dos transacciones pueden insertar la misma fila a la
+        // vez y la segunda falla. H2 deshace solo esa sentencia; al repetirla, la fila ya existe y se actualiza
+        for (Object[] row : rows) {
+            try {
+                jdbcTemplate.update(UPSERT_STANDARD, row);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(UPSERT_STANDARD, row);
+            }
+        }
+    }
+
+    // Totales por valor de la dimensión, de mayor a menor cantidad
+    @Transactional(readOnly = true)
+    public List<PurchaseStatDto> aggregate(PurchaseStat.Dimension dimension, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("""
+                        SELECT dim_key, SUM(purchases), SUM(quantity) FROM purchase_stats
+                        WHERE dimension = ? AND stat_date BETWEEN ? AND ?
+                        GROUP BY dim_key HAVING SUM(purchases) <> 0 ORDER BY SUM(quantity) DESC, dim_key""",
+                STAT_MAPPER, dimension.name(), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    // Totales por día; cada compra cuenta exactamente una vez en la dimensión STATUS
+    @Transactional(readOnly = true)
+    public List<PurchaseStatDto> aggregateByDay(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("""
+                        SELECT CAST(stat_date AS VARCHAR(10)), SUM(purchases), SUM(quantity) FROM purchase_stats
+                        WHERE dimension = 'STATUS' AND stat_date BETWEEN ? AND ?
+                        GROUP BY stat_date HAVING SUM(purchases) <> 0 ORDER BY stat_date""",
+                STAT_MAPPER, Date.valueOf(from), Date.valueOf(to));
+    }
+}
@@ -0,0 +1,86 @@
+package com.unir.payments.data;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+// Con réplicas, un cliente que acaba de escribir podría no ver su cambio si la réplica aún no lo ha recibido.
+// Tras confirmar una escritura de compras, las lecturas del resto de la petición van al primario, y la cookie
+// purchases_last_write hace lo mismo con las siguientes peticiones del cliente durante
+// purchases.datasource.read-your-writes. Fuera de una petición (tareas programadas, respuestas en streaming)
+// las lecturas van siempre a las réplicas.
+@Component
+public class ReadYourWrites {
+
+    static final String COOKIE = "purchases_last_write";
+
+    private static final String ATTRIBUTE = ReadYourWrites.class.getName() + ".primary";
+
+    @Value("${purchases.datasource.read-your-writes:5s}")
+    private Duration window;
+
+    // Se invoca en cada escritura; si hay transacción, tiene efecto cuando se confirma
+    public void written() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pin();
+                }
+            });
+        } else {
+            pin();
+        }
+    }
+
+    public boolean requiresPrimary() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        if (attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return true;
+        }
+        Cookie[] cookies = attributes.getRequest().getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    return isRecent(cookie.getValue());
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isRecent(String lastWrite) {
+        try {
+            // El valor lo pone el cliente: uno en el futuro tampoco fija el primario más allá de la ventana
+            return Math.abs(System.currentTimeMillis() - Long.parseLong(lastWrite)) < window.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void pin() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return;
+        }
+        attributes.setAttribute(ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(System.currentTimeMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            response.addCookie(cookie);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.unir.payments.data.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+// Actualización pendiente de enviar al catálogo de libros (patrón transactional outbox).
+// Se inserta en la misma transacción que la compra y la envía CatalogueOutboxDispatcher.
+@Entity
+@Table(name = "catalogue_outbox", indexes = {
+		@Index(name = "idx_catalogue_outbox_book_id", columnList = "book_id"),
+		@Index(name = "idx_catalogue_outbox_next_attempt", columnList = "next_attempt_at")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class CatalogueOutboxEvent {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "catalogue_outbox_seq")
+	@SequenceGenerator(name = "catalogue_outbox_seq", sequenceName = "catalogue_outbox_seq", allocationSize = 50)
+	private Long id;
+
+	// Libro cuya visibilidad debe cambiar en el catálogo
+	@Column(name = "book_id", nullable = false)
+	private String bookId;
+
+	// false: el libro se ha agotado; true: vuelve a tener ejemplares
+	@Column(name = "visible", nullable = false)
+	private boolean visible;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	// Intentos de envío fallidos hasta ahora
+	@Column(name = "attempts", nullable = false)
+	private int attempts;
+
+	// No se reintenta antes de esta fecha (backoff exponencial)
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt;
+
+	@Column(name = "last_error", length = 500)
+	private String lastError;
+
+	public static CatalogueOutboxEvent hideBook(String bookId) {
+		return of(bookId, false);
+	}
+
+	public static CatalogueOutboxEvent showBook(String bookId) {
+		return of(bookId, true);
+	}
+
+	private static CatalogueOutboxEvent of(String bookId, boolean visible) {
+		LocalDateTime now = LocalDateTime.now();
+		return CatalogueOutboxEvent.builder()
+				.bookId(bookId)
+				.visible(visible)
+				.createdAt(now)
+				.nextAttemptAt(now)
+				.build();
+	}
+}
@@ -0,0 +1,65 @@
+package com.unir.payments.data.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+// Respuesta registrada para una cabecera Idempotency-Key de POST /purchases. La clave primaria
+// garantiza que solo una petición (de cualquier instancia) la reclama y ejecuta la compra.
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+		@Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString(exclude = "responseBody")
+public class IdempotencyRecord {
+
+	public static final int MAX_KEY_LENGTH = 255;
+
+	@Id
+	@Column(name = "idempotency_key", length = MAX_KEY_LENGTH)
+	private String key;
+
+	// SHA-256 del cuerpo de la petición, para detectar una clave reutilizada con otros datos
+	@Column(name = "request_hash", nullable = false, length = 64)
+	private String requestHash;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false, length = 20)
+	private Status status;
+
+	@Column(name = "response_status")
+	private Integer responseStatus;
+
+	@JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+	@Column(name = "response_body")
+	private String responseBody;
+
+	// Momento en que se reclamó la clave; un IN_PROGRESS antiguo se considera abandonado
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	@Column(name = "expires_at", nullable = false)
+	private LocalDateTime expiresAt;
+
+	public enum Status {
+		IN_PROGRESS,
+		COMPLETED
+	}
+}
@@ -2,24 +2,47 @@ package com.unir.payments.data.model;
 
 import com.unir.payments.controller.model.PurchaseDto;
 import com.unir.payments.data.utils.Consts;
+import com.unir.payments.data.PurchaseCacheListener;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "purchases")
+// Los índices de los filtros terminan en id para servir también la paginación por cursor
+@Table(name = "purchases", indexes = {
+		@Index(name = "idx_purchases_book_id", columnList = "book_id, id"),
+		@Index(name = "idx_purchases_buyer", columnList = "buyer, id"),
+		@Index(name = "idx_purchases_status", columnList = "status, id"),
+		@Index(name = "idx_purchases_purchase_date", columnList = "purchase_date, id")
+})
+// Caché de segundo nivel de Hibernate (región "purchases", configurada en application.conf): findById no va a la base
+// de datos si la compra está en caché; save y delete la actualizan o invalidan al confirmar la transacción
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Purchase.CACHE_REGION)
+@EntityListeners(PurchaseCacheListener.class)
+@DynamicUpdate
 @Getter
 @Setter
 @AllArgsConstructor
@@ -28,8 +51,12 @@ import java.time.LocalDateTime;
 @ToString
 public class Purchase {
 
+	public static final String CACHE_REGION = "purchases";
+
+	// Secuencia con optimizador pooled: permite a Hibernate agrupar los INSERT en lotes JDBC
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchases_seq")
+	@SequenceGenerator(name = "purchases_seq", sequenceName = "purchases_seq", allocationSize = 50)
 	private Long id;
 
 	// ISBN del libro adquirido
@@ -53,6 +80,19 @@ public class Purchase {
 	@Column(name = Consts.STATUS, nullable = false)
 	private String status;
 
+	// Hibernate la incrementa en cada modificación y rechaza la escritura si otra transacción ha cambiado antes
+	// la compra (bloqueo optimista). Se publica como ETag, no en el cuerpo
+	@Version
+	@JsonIgnore
+	@Column(nullable = false)
+	private Long version;
+
+	// Fecha de la última modificación (alta incluida), publicada como Last-Modified
+	@UpdateTimestamp
+	@JsonIgnore
+	@Column(name = "last_modified", nullable = false)
+	private LocalDateTime lastModified;
+
 	// Método para actualizar la entidad a partir de un PurchaseDto
 	public void update(PurchaseDto purchaseDto) {
 		this.bookId = purchaseDto.getBookId();
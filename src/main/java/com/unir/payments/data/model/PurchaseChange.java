@@ -0,0 +1,21 @@
+package com.unir.payments.data.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+// Entrada del registro de cambios (tabla purchase_changes): número de secuencia, operación
+// y estado de la compra tras el cambio (el último que tuvo, si se eliminó)
+public record PurchaseChange(
+		long seq,
+		Operation operation,
+		@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+		LocalDateTime changedAt,
+		PurchaseView purchase) {
+
+	public enum Operation {
+		CREATED,
+		UPDATED,
+		DELETED
+	}
+}
@@ -0,0 +1,16 @@
+package com.unir.payments.data.model;
+
+import java.util.List;
+
+// Página de GET /purchases; nextCursor es null si la página no está completa (no quedan más compras).
+// version es la secuencia del registro de cambios leída antes que las compras (ETag de la página), o null si no se leyó
+public record PurchasePage(List<PurchaseView> purchases, String nextCursor, Long version) {
+
+    public PurchasePage(List<PurchaseView> purchases, String nextCursor) {
+        this(purchases, nextCursor, null);
+    }
+
+    public PurchasePage withVersion(long version) {
+        return new PurchasePage(purchases, nextCursor, version);
+    }
+}
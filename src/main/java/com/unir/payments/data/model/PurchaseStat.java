@@ -0,0 +1,75 @@
+package com.unir.payments.data.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Resumen diario de compras por libro, comprador y estado. Lo mantienen las operaciones de
+// escritura de PurchasesServiceImpl para que las estadísticas no recorran la tabla purchases.
+@Entity
+@Table(name = "purchase_stats")
+@IdClass(PurchaseStat.Key.class)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class PurchaseStat {
+
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "dimension", length = 20)
+	private Dimension dimension;
+
+	// Valor agrupado: ISBN, comprador o estado
+	@Id
+	@Column(name = "dim_key")
+	private String key;
+
+	@Id
+	@Column(name = "stat_date")
+	private LocalDate date;
+
+	// Fila del día en la que suma cada transacción (purchases.stats.shards); el total es la suma de todas.
+	// En la tabla forma parte de la clave primaria; las filas solo se escriben y se suman por JDBC
+	@Column(name = "shard", nullable = false)
+	private int shard;
+
+	// Número de compras
+	@Column(name = "purchases", nullable = false)
+	private long purchases;
+
+	// Suma de ejemplares adquiridos
+	@Column(name = "quantity", nullable = false)
+	private long quantity;
+
+	public enum Dimension {
+		BOOK,
+		BUYER,
+		STATUS
+	}
+
+	@Getter
+	@Setter
+	@AllArgsConstructor
+	@NoArgsConstructor
+	@EqualsAndHashCode
+	public static class Key implements Serializable {
+		private Dimension dimension;
+		private String key;
+		private LocalDate date;
+	}
+}
@@ -0,0 +1,20 @@
+package com.unir.payments.data.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+// Proyección de solo lectura de una compra para los listados: se construye directamente
+// desde la consulta, sin entidad gestionada ni copia para la comprobación de cambios.
+// Los campos no pedidos en 'fields' quedan a null y no se serializan.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PurchaseView(
+		Long id,
+		String bookId,
+		@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+		LocalDateTime purchaseDate,
+		Integer quantity,
+		String buyer,
+		String status) {
+}
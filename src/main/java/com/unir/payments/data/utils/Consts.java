@@ -3,6 +3,7 @@ package com.unir.payments.data.utils;
 public class Consts {
 
     // Constants for db entity fields for the Purchase entity
+    public static final String ID = "id";
     public static final String BOOK_ID = "bookId";
     public static final String PURCHASE_DATE = "purchase_date";
     public static final String QUANTITY = "quantity";
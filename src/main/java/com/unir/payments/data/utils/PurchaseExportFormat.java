@@ -0,0 +1,26 @@
+package com.unir.payments.data.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+// Formatos de la exportación de compras: tipo de contenido (antes de comprimir) y extensión del fichero
+@Getter
+@RequiredArgsConstructor
+public enum PurchaseExportFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+
+    private final String extension;
+
+    public static PurchaseExportFormat of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Formato de exportación desconocido: " + name);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.unir.payments.data.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// Campos de una compra que admiten ordenación (sort) y selección (fields): nombre en la API, columna y tipo
+@Getter
+@RequiredArgsConstructor
+public enum PurchaseField {
+    ID(Consts.ID, "id", Long.class),
+    BOOK_ID(Consts.BOOK_ID, "book_id", String.class),
+    PURCHASE_DATE("purchaseDate", "purchase_date", LocalDateTime.class),
+    QUANTITY(Consts.QUANTITY, "quantity", Integer.class),
+    BUYER(Consts.BUYER, "buyer", String.class),
+    STATUS(Consts.STATUS, "status", String.class);
+
+    private final String attribute;
+
+    private final String column;
+
+    private final Class<?> type;
+
+    public static PurchaseField of(String name) {
+        for (PurchaseField field : values()) {
+            if (field.attribute.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Campo desconocido: " + name);
+    }
+
+    // Convierte el texto de un cursor al tipo del campo, para compararlo como tal en la consulta
+    public Object parse(String value) {
+        try {
+            return switch (this) {
+                case ID -> Long.valueOf(value);
+                case QUANTITY -> Integer.valueOf(value);
+                case PURCHASE_DATE -> LocalDateTime.parse(value);
+                default -> value;
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Valor inválido para " + attribute + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.unir.payments.data.utils;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+// Consulta de compras de GET /purchases: filtros, ordenación, campos a devolver y cursor de la página.
+// Se valida al construirla; los parámetros incorrectos producen IllegalArgumentException.
+@Getter
+public class PurchaseQuery {
+
+    public record Order(PurchaseField field, boolean descending) {
+    }
+
+    private final String bookId;
+
+    private final String buyer;
+
+    private final String status;
+
+    // Rango de fechas [from, to] en días completos
+    private final LocalDate from;
+
+    private final LocalDate to;
+
+    // Rango de unidades [minQuantity, maxQuantity]
+    private final Integer minQuantity;
+
+    private final Integer maxQuantity;
+
+    // Ordenación solicitada terminada siempre en id, que hace única la posición de cada fila
+    private final List<Order> orderBy;
+
+    // Campos que se devuelven; el resto no se lee de la base de datos
+    private final Set<PurchaseField> fields;
+
+    // Valores de orderBy de la última fila de la página anterior, o null en la primera
+    private final List<Object> cursor;
+
+    // Sin límite se devuelven todas las compras que cumplen los filtros
+    private final Integer limit;
+
+    // sort: campos separados por comas, con '-' delante para orden descendente (por ejemplo "-purchaseDate,quantity").
+    // fields: campos separados por comas. after: cursor devuelto en X-Next-Cursor para la misma ordenación.
+    @Builder
+    private PurchaseQuery(String bookId, String buyer, String status, LocalDate from, LocalDate to,
+                          Integer minQuantity, Integer maxQuantity, String sort, String fields, String after,
+                          Integer limit) {
+        this.bookId = bookId;
+        this.buyer = buyer;
+        this.status = status;
+        this.from = from;
+        this.to = to;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+        this.orderBy = parseSort(sort);
+        this.fields = parseFields(fields);
+        this.cursor = StringUtils.isNotBlank(after) ? decode(after) : null;
+        this.limit = limit;
+    }
+
+    // Columnas que hay que leer: las pedidas más las de la ordenación, necesarias para el cursor
+    public Set<PurchaseField> columns() {
+        Set<PurchaseField> columns = EnumSet.copyOf(fields);
+        orderBy.forEach(order -> columns.add(order.field()));
+        return columns;
+    }
+
+    // Cursor de la fila indicada. Con la ordenación por defecto es el id, como en la paginación original;
+    // con otra ordenación, los valores de cada campo en Base64 URL separados por puntos.
+    public String cursorOf(Function<PurchaseField, Object> row) {
+        if (orderBy.size() == 1) {
+            return String.valueOf(row.apply(PurchaseField.ID));
+        }
+        StringJoiner cursor = new StringJoiner(".");
+        for (Order order : orderBy) {
+            cursor.add(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(String.valueOf(row.apply(order.field())).getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    private List<Object> decode(String after) {
+        if (orderBy.size() == 1) {
+            return List.of(PurchaseField.ID.parse(after.trim()));
+        }
+        String[] parts = after.split("\\.", -1);
+        if (parts.length != orderBy.size()) {
+            throw new IllegalArgumentException("El cursor no corresponde a la ordenación indicada");
+        }
+        List<Object> values = new ArrayList<>(parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            values.add(orderBy.get(i).field().parse(
+                    new String(Base64.getUrlDecoder().decode(parts[i]), StandardCharsets.UTF_8)));
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static List<Order> parseSort(String sort) {
+        List<Order> orders = new ArrayList<>();
+        Set<PurchaseField> seen = EnumSet.noneOf(PurchaseField.class);
+        if (StringUtils.isNotBlank(sort)) {
+            for (String name : sort.split(",")) {
+                String trimmed = name.trim();
+                boolean descending = trimmed.startsWith("-");
+                PurchaseField field = PurchaseField.of(descending ? trimmed.substring(1) : trimmed);
+                if (!seen.add(field)) {
+                    throw new IllegalArgumentException("Campo repetido en la ordenación: " + field.getAttribute());
+                }
+                orders.add(new Order(field, descending));
+                // El id es único: lo que venga detrás no cambia el orden
+                if (field == PurchaseField.ID) {
+                    break;
+                }
+            }
+        }
+        // Desempate por id en el mismo sentido que el último campo, para que un índice (campo, id) recorrido
+        // hacia delante o hacia atrás devuelva ya las filas ordenadas
+        if (!seen.contains(PurchaseField.ID)) {
+            orders.add(new Order(PurchaseField.ID, !orders.isEmpty() && orders.getLast().descending()));
+        }
+        return Collections.unmodifiableList(orders);
+    }
+
+    private static Set<PurchaseField> parseFields(String fields) {
+        if (StringUtils.isBlank(fields)) {
+            return Collections.unmodifiableSet(EnumSet.allOf(PurchaseField.class));
+        }
+        Set<PurchaseField> selected = EnumSet.noneOf(PurchaseField.class);
+        for (String name : fields.split(",")) {
+            selected.add(PurchaseField.of(name.trim()));
+        }
+        return Collections.unmodifiableSet(selected);
+    }
+}
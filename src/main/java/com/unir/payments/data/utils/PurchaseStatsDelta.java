@@ -0,0 +1,42 @@
+package com.unir.payments.data.utils;
+
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseStat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Variaciones acumuladas sobre purchase_stats. Sumar y restar la misma compra se anula,
+// así que una modificación que no cambia ninguna dimensión no genera escrituras.
+public class PurchaseStatsDelta {
+
+    private final Map<PurchaseStat.Key, long[]> changes = new LinkedHashMap<>();
+
+    public PurchaseStatsDelta add(Purchase purchase) {
+        return record(purchase, 1);
+    }
+
+    public PurchaseStatsDelta subtract(Purchase purchase) {
+        return record(purchase, -1);
+    }
+
+    public Map<PurchaseStat.Key, long[]> getChanges() {
+        changes.values().removeIf(change -> change[0] == 0 && change[1] == 0);
+        return changes;
+    }
+
+    private PurchaseStatsDelta record(Purchase purchase, int sign) {
+        var date = purchase.getPurchaseDate().toLocalDate();
+        long quantity = (long) sign * purchase.getQuantity();
+        increment(new PurchaseStat.Key(PurchaseStat.Dimension.BOOK, purchase.getBookId(), date), sign, quantity);
+        increment(new PurchaseStat.Key(PurchaseStat.Dimension.BUYER, purchase.getBuyer(), date), sign, quantity);
+        increment(new PurchaseStat.Key(PurchaseStat.Dimension.STATUS, purchase.getStatus(), date), sign, quantity);
+        return this;
+    }
+
+    private void increment(PurchaseStat.Key key, long purchases, long quantity) {
+        long[] change = changes.computeIfAbsent(key, k -> new long[2]);
+        change[0] += purchases;
+        change[1] += quantity;
+    }
+}
@@ -0,0 +1,88 @@
+package com.unir.payments.data.utils;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+// Conexiones de las transacciones de solo lectura: se reparten por turnos entre las réplicas.
+// Una réplica que no entrega conexión se salta durante retryAfter; si no queda ninguna, o si el cliente acaba de
+// escribir (requiresPrimary), la conexión es del primario.
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final DataSource primary;
+
+    private final List<HikariDataSource> replicas;
+
+    private final BooleanSupplier requiresPrimary;
+
+    private final long retryAfterMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Instante hasta el que cada réplica se salta tras fallar
+    private final AtomicLongArray unavailableUntil;
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicas, BooleanSupplier requiresPrimary,
+                             Duration retryAfter) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.requiresPrimary = requiresPrimary;
+        this.retryAfterMillis = retryAfter.toMillis();
+        this.unavailableUntil = new AtomicLongArray(replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicas.isEmpty() || requiresPrimary.getAsBoolean()) {
+            return primary.getConnection();
+        }
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (first + i) % replicas.size();
+            long now = System.currentTimeMillis();
+            if (unavailableUntil.get(index) > now) {
+                continue;
+            }
+            HikariDataSource replica = replicas.get(index);
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                if (isPoolExhausted(e)) {
+                    // La réplica responde pero su pool está lleno: se prueba la siguiente sin apartarla
+                    log.debug("Pool de la réplica {} sin conexiones libres: {}", replica.getPoolName(), e.getMessage());
+                    continue;
+                }
+                unavailableUntil.set(index, now + retryAfterMillis);
+                log.warn("Réplica {} no disponible, se reintenta en {} ms: {}", replica.getPoolName(), retryAfterMillis, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    // Hikari agota connection-timeout con SQLTransientConnectionException. Si no puede abrir conexiones, la causa
+    // es el último fallo del driver; sin causa, todas las conexiones estaban en uso
+    static boolean isPoolExhausted(SQLException e) {
+        return e instanceof SQLTransientConnectionException && e.getCause() == null;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Las credenciales de las réplicas se configuran en purchases.datasource.replica");
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
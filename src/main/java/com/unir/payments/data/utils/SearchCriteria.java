@@ -2,6 +2,7 @@ package com.unir.payments.data.utils;
 
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import org.springframework.data.jpa.domain.Specification;
@@ -11,6 +12,10 @@ import java.util.List;
 
 public class SearchCriteria<T> implements Specification<T> {
 
+    // Carácter de escape de LIKE. No la barra invertida: en un literal SQL ('\\') su significado depende de
+    // standard_conforming_strings en PostgreSQL
+    public static final char LIKE_ESCAPE = '!';
+
     private final List<SearchStatement> list = new LinkedList<>();
 
     public void add(SearchStatement criteria) {
@@ -22,18 +27,11 @@ public class SearchCriteria<T> implements Specification<T> {
 
         List<Predicate> predicates = new LinkedList<>();
         for (SearchStatement criteria : list) {
-            if (criteria.getOperation().equals(SearchOperation.GREATER_THAN)) {
-                predicates.add(builder.greaterThan(
-                        root.get(criteria.getKey()), criteria.getValue().toString()));
-            } else if (criteria.getOperation().equals(SearchOperation.LESS_THAN)) {
-                predicates.add(builder.lessThan(
-                        root.get(criteria.getKey()), criteria.getValue().toString()));
-            } else if (criteria.getOperation().equals(SearchOperation.GREATER_THAN_EQUAL)) {
-                predicates.add(builder.greaterThanOrEqualTo(
-                        root.get(criteria.getKey()), criteria.getValue().toString()));
-            } else if (criteria.getOperation().equals(SearchOperation.LESS_THAN_EQUAL)) {
-                predicates.add(builder.lessThanOrEqualTo(
-                        root.get(criteria.getKey()), criteria.getValue().toString()));
+            if (criteria.getOperation().equals(SearchOperation.GREATER_THAN)
+                    || criteria.getOperation().equals(SearchOperation.LESS_THAN)
+                    || criteria.getOperation().equals(SearchOperation.GREATER_THAN_EQUAL)
+                    || criteria.getOperation().equals(SearchOperation.LESS_THAN_EQUAL)) {
+                predicates.add(compare(builder, root.get(criteria.getKey()), criteria.getOperation(), criteria.getValue()));
             } else if (criteria.getOperation().equals(SearchOperation.NOT_EQUAL)) {
                 predicates.add(builder.notEqual(
                         root.get(criteria.getKey()), criteria.getValue()));
@@ -41,15 +39,41 @@ public class SearchCriteria<T> implements Specification<T> {
                 predicates.add(builder.equal(
                         root.get(criteria.getKey()), criteria.getValue()));
             } else if (criteria.getOperation().equals(SearchOperation.MATCH)) {
+                // Subcadena sin distinguir mayúsculas; en PostgreSQL la sirve el índice trigram de lower(columna)
                 predicates.add(builder.like(
                         builder.lower(root.get(criteria.getKey())),
-                        "%" + criteria.getValue().toString().toLowerCase() + "%"));
+                        "%" + escapeLike(criteria.getValue().toString().toLowerCase()) + "%", LIKE_ESCAPE));
             } else if (criteria.getOperation().equals(SearchOperation.MATCH_END)) {
                 predicates.add(builder.like(
                         builder.lower(root.get(criteria.getKey())),
                         criteria.getValue().toString().toLowerCase() + "%"));
+            } else if (criteria.getOperation().equals(SearchOperation.STARTS_WITH)) {
+                // Prefijo sin distinguir mayúsculas. LIKE 'prefijo%' no depende de la intercalación; en PostgreSQL
+                // lo sirve el índice de lower(columna) con text_pattern_ops (comparación byte a byte, como COLLATE "C")
+                predicates.add(builder.like(
+                        builder.lower(root.get(criteria.getKey())),
+                        escapeLike(criteria.getValue().toString().toLowerCase()) + "%", LIKE_ESCAPE));
             }
         }
         return builder.and(predicates.toArray(new Predicate[0]));
     }
+
+    // Comparación con el tipo del valor (fecha, número o texto), no con su representación como texto
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Predicate compare(CriteriaBuilder builder, Expression<?> path, SearchOperation operation, Object value) {
+        Expression<Comparable> expression = (Expression<Comparable>) path;
+        Comparable comparable = (Comparable) value;
+        return switch (operation) {
+            case GREATER_THAN -> builder.greaterThan(expression, comparable);
+            case LESS_THAN -> builder.lessThan(expression, comparable);
+            case GREATER_THAN_EQUAL -> builder.greaterThanOrEqualTo(expression, comparable);
+            case LESS_THAN_EQUAL -> builder.lessThanOrEqualTo(expression, comparable);
+            default -> throw new IllegalArgumentException("Operación no comparable: " + operation);
+        };
+    }
+
+    // El valor buscado se compara literalmente: %, _ y el propio carácter de escape no actúan como comodines
+    public static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
 }
@@ -0,0 +1,27 @@
+package com.unir.payments.data.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Traza de diagnóstico de las sentencias SQL, sustituye a spring.jpa.show-sql.
+// Solo escribe cuando el logger com.unir.payments.sql está en DEBUG (se puede cambiar en caliente
+// con /actuator/loggers) y, en ese caso, únicamente una muestra de las sentencias.
+@Slf4j(topic = "com.unir.payments.sql")
+public class SqlTraceInspector implements StatementInspector {
+
+    private final double sampleRate;
+
+    public SqlTraceInspector(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (log.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.debug(sql);
+        }
+        return sql;
+    }
+}
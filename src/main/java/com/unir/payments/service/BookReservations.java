@@ -0,0 +1,112 @@
+package com.unir.payments.service;
+
+import com.unir.payments.controller.model.BookResponseDTO;
+import com.unir.payments.data.BookReservationRepository;
+import com.unir.payments.data.model.Purchase;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Reserva de ejemplares contra la tabla book_reservations. El stock de cada libro se toma del catálogo en su
+// primera reserva y después solo cambia con restock (sincronización explícita, ver V11).
+// Dentro de una instancia las compras del mismo libro se encadenan con un lock por franja (striped lock),
+// sin bloquear las de otros libros; entre instancias, la guarda es el UPDATE condicional sobre la fila.
+@Component
+@RequiredArgsConstructor
+public class BookReservations {
+
+    private final BookReservationRepository repository;
+
+    // Número de locks entre los que se reparten los libros
+    @Value("${purchases.reservations.lock-stripes:64}")
+    private int lockStripes;
+
+    private ReentrantLock[] locks;
+
+    @PostConstruct
+    void init() {
+        locks = new ReentrantLock[lockStripes];
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Ejecuta la acción con el lock del libro; debe englobar la transacción completa de la compra
+    public <T> T withLock(String bookId, Supplier<T> action) {
+        ReentrantLock lock = locks[Math.floorMod(bookId.hashCode(), locks.length)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Debe invocarse dentro de la transacción de la compra: si esta se deshace, la reserva también
+    public Reservation reserve(String bookId, BookResponseDTO book, Integer quantity) {
+        repository.createIfAbsent(bookId, stockOf(book));
+        if (!repository.reserve(bookId, unitsOf(book, quantity))) {
+            return Reservation.REJECTED;
+        }
+        return repository.available(bookId) > 0 ? Reservation.RESERVED : Reservation.SOLD_OUT;
+    }
+
+    // Ajusta la reserva a la modificación o el borrado (after null) de una compra, en su misma transacción:
+    // devuelve los ejemplares que tenía confirmados y retiene los que confirma ahora.
+    // Devuelve el libro si estaba agotado y vuelve a tener ejemplares (hay que mostrarlo en el catálogo), o null
+    public String adjust(Held before, Held after) {
+        if (Objects.equals(before, after)) {
+            return null;
+        }
+        boolean restored = before != null && repository.release(before.bookId(), before.units());
+        if (after != null) {
+            repository.hold(after.bookId(), after.units());
+        }
+        return restored && (after == null || !after.bookId().equals(before.bookId()) || repository.available(before.bookId()) > 0)
+                ? before.bookId()
+                : null;
+    }
+
+    // Sustituye el stock del libro por el que publica ahora el catálogo; como reserve, dentro de withLock y de
+    // una transacción. Devuelve true si el libro estaba agotado y vuelve a tener ejemplares
+    public boolean restock(String bookId, int stock) {
+        return repository.updateStock(bookId, Math.max(0, stock));
+    }
+
+    // Ejemplares que retiene la compra: solo las CONFIRMED tienen reserva
+    public static Held held(Purchase purchase) {
+        return "CONFIRMED".equals(purchase.getStatus())
+                ? new Held(purchase.getBookId(), Math.max(1, purchase.getQuantity()))
+                : null;
+    }
+
+    // Sin campo stock en el catálogo, el libro es un ejemplar único que se vende una sola vez
+    static int stockOf(BookResponseDTO book) {
+        return book.getStock() != null ? Math.max(0, book.getStock()) : 1;
+    }
+
+    static int unitsOf(BookResponseDTO book, Integer quantity) {
+        return book.getStock() != null ? Math.max(1, quantity) : 1;
+    }
+
+    public record Held(String bookId, int units) {
+    }
+
+    public enum Reservation {
+        // No quedan ejemplares suficientes
+        REJECTED,
+        // Reservado y quedan ejemplares
+        RESERVED,
+        // Reservado y el libro se ha agotado: hay que ocultarlo en el catálogo
+        SOLD_OUT;
+
+        public boolean isConfirmed() {
+            return this != REJECTED;
+        }
+    }
+}
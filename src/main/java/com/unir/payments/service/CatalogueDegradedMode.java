@@ -0,0 +1,9 @@
+package com.unir.payments.service;
+
+// Qué hacer con una compra cuando no se puede consultar el catálogo de libros
+public enum CatalogueDegradedMode {
+    // Se responde 503 y el cliente puede reintentar más tarde
+    REJECT,
+    // Se registra con status PENDING y PendingPurchaseReconciler decide después
+    PENDING
+}
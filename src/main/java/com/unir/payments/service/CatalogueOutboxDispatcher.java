@@ -0,0 +1,98 @@
+package com.unir.payments.service;
+
+import com.unir.payments.client.BooksCatalogueClient;
+import com.unir.payments.data.CatalogueOutboxRepository;
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Envía al catálogo las actualizaciones de visibilidad pendientes en la tabla catalogue_outbox. Ninguna llamada
+// al catálogo se hace dentro de una transacción: los eventos se reservan (lease) en una transacción corta y
+// el resultado de cada envío se registra en otra. Si la instancia cae, la reserva caduca y otra los reenvía.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogueOutboxDispatcher {
+
+    private final CatalogueOutboxRepository outboxRepository;
+
+    private final BooksCatalogueClient catalogueClient;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${catalogue.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${catalogue.outbox.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${catalogue.outbox.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    // Tiempo durante el que los eventos tomados quedan reservados para esta instancia; debe cubrir el envío
+    // de un lote completo, o se enviarán dos veces (cambiar la visibilidad es idempotente)
+    @Value("${catalogue.outbox.lease:2m}")
+    private Duration lease;
+
+    @Scheduled(fixedDelayString = "${catalogue.outbox.poll-interval:1s}")
+    public void dispatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<CatalogueOutboxEvent> events = transactionTemplate.execute(
+                status -> outboxRepository.claimReady(now, now.plus(lease), batchSize));
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+
+        // Varias compras del mismo libro se resuelven con una única llamada al catálogo, con la visibilidad del
+        // evento más reciente (se toman por orden de id)
+        Map<String, List<CatalogueOutboxEvent>> byBook = events.stream()
+                .collect(Collectors.groupingBy(CatalogueOutboxEvent::getBookId, LinkedHashMap::new, Collectors.toList()));
+
+        Map<Long, String> failed = new HashMap<>();
+        byBook.forEach((bookId, bookEvents) -> {
+            try {
+                if (bookEvents.getLast().isVisible()) {
+                    catalogueClient.showBook(bookId);
+                } else {
+                    catalogueClient.hideBook(bookId);
+                }
+                outboxRepository.deleteAll(bookEvents);
+            } catch (Exception e) {
+                bookEvents.forEach(event -> failed.put(event.getId(), e.getMessage()));
+                log.warn("Error al actualizar visibilidad del libro {} (intento {}): {}",
+                        bookId, bookEvents.get(0).getAttempts() + 1, e.getMessage());
+            }
+        });
+        if (!failed.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> retryLater(failed));
+        }
+    }
+
+    // Sustituye la reserva por el siguiente intento con backoff exponencial
+    private void retryLater(Map<Long, String> failed) {
+        LocalDateTime now = LocalDateTime.now();
+        for (CatalogueOutboxEvent event : outboxRepository.findAllById(failed.keySet())) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plus(backoff(event.getAttempts())));
+            event.setLastError(StringUtils.abbreviate(failed.get(event.getId()), 500));
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
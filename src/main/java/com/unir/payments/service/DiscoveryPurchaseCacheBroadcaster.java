@@ -0,0 +1,89 @@
+package com.unir.payments.service;
+
+import com.unir.payments.controller.InternalCacheController;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Invalida la compra en las demás instancias de este microservicio registradas en Eureka,
+// llamando a su endpoint interno DELETE /internal/cache/purchases/{id} desde hilos virtuales
+@Component
+@ConditionalOnProperty(name = "purchases.cache.invalidation.mode", havingValue = "discovery")
+@Slf4j
+public class DiscoveryPurchaseCacheBroadcaster implements PurchaseCacheBroadcaster {
+
+    private final DiscoveryClient discoveryClient;
+
+    // Ausente si esta instancia no se registra en Eureka; entonces se notifica a todas las instancias
+    private final Registration registration;
+
+    private final RestClient restClient;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${spring.application.name}")
+    private String serviceId;
+
+    private final String token;
+
+    // Sin token el endpoint interno de las demás réplicas rechaza la invalidación (o, sin él en ninguna, quedaría
+    // abierto a cualquiera): la aplicación no arranca en modo discovery sin PURCHASES_CACHE_TOKEN
+    public DiscoveryPurchaseCacheBroadcaster(DiscoveryClient discoveryClient, ObjectProvider<Registration> registration,
+                                             @Value("${purchases.cache.invalidation.token:}") String token,
+                                             @Value("${purchases.cache.invalidation.timeout:500ms}") Duration timeout) {
+        if (!StringUtils.hasText(token)) {
+            throw new IllegalStateException("purchases.cache.invalidation.token es obligatorio con purchases.cache.invalidation.mode=discovery");
+        }
+        this.discoveryClient = discoveryClient;
+        this.token = token;
+        this.registration = registration.getIfAvailable();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public void purchaseChanged(Long purchaseId) {
+        for (ServiceInstance instance : discoveryClient.getInstances(serviceId)) {
+            if (isSelf(instance)) {
+                continue;
+            }
+            executor.execute(() -> evict(instance, purchaseId));
+        }
+    }
+
+    private void evict(ServiceInstance instance, Long purchaseId) {
+        try {
+            restClient.delete()
+                    .uri(instance.getUri() + InternalCacheController.PURCHASE_CACHE_PATH, purchaseId)
+                    .header(InternalCacheController.TOKEN_HEADER, token)
+                    .retrieve()
+                    .toBodilessEntity();
+        } catch (Exception e) {
+            // La expiración de la región acota el tiempo que la otra réplica puede servir la compra obsoleta
+            log.warn("No se pudo invalidar la compra {} en {}: {}", purchaseId, instance.getUri(), e.getMessage());
+        }
+    }
+
+    private boolean isSelf(ServiceInstance instance) {
+        if (registration == null) {
+            return false;
+        }
+        return Objects.equals(instance.getInstanceId(), registration.getInstanceId())
+                || (Objects.equals(instance.getHost(), registration.getHost()) && instance.getPort() == registration.getPort());
+    }
+}
@@ -0,0 +1,265 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unir.payments.data.IdempotencyRepository;
+import com.unir.payments.data.model.IdempotencyRecord;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Ejecuta como máximo una vez cada petición con cabecera Idempotency-Key y devuelve la misma respuesta a los reintentos.
+// - Las respuestas terminadas se guardan en la tabla idempotency_keys, con una caché local delante.
+// - Los duplicados concurrentes en esta instancia esperan el resultado de la primera ejecución.
+// - Si otra instancia tiene la clave en curso se responde 409; si la clave llega con otros datos, 422.
+// - Pasado ttl la clave se reclama como nueva aunque la purga aún no la haya borrado.
+// - La transacción que registra la compra completa también la clave (complete): la compra y su respuesta
+//   guardada se confirman o se deshacen juntas, sin ventana en la que un reintento la registre dos veces.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private final IdempotencyRepository repository;
+
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    // Petición con Idempotency-Key que se está ejecutando en este hilo
+    private final ThreadLocal<Execution> current = new ThreadLocal<>();
+
+    private Cache<String, CachedResponse> responses;
+
+    // Tiempo durante el que se conserva la respuesta de una clave
+    @Value("${purchases.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    // Una clave IN_PROGRESS más antigua que esto se da por abandonada y puede reclamarse de nuevo
+    @Value("${purchases.idempotency.lock-timeout:30s}")
+    private Duration lockTimeout;
+
+    // Espera máxima de un duplicado concurrente al resultado de la primera petición
+    @Value("${purchases.idempotency.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    @Value("${purchases.idempotency.cache-size:10000}")
+    private long cacheSize;
+
+    @PostConstruct
+    void init() {
+        responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public StoredResponse execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key.isBlank() || key.length() > IdempotencyRecord.MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key inválida");
+        }
+        String requestHash = hash(request);
+
+        // Una respuesta caducada en la tabla tampoco se repite desde la caché, aunque siga en ella
+        CachedResponse cached = responses.getIfPresent(key);
+        if (cached != null && cached.expiresAt().isAfter(LocalDateTime.now())) {
+            return replay(cached.response(), requestHash);
+        }
+
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, execution);
+        if (running != null) {
+            return replay(await(running), requestHash);
+        }
+        try {
+            StoredResponse response = executeOnce(key, requestHash, action);
+            execution.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+
+    private StoredResponse executeOnce(String key, String requestHash, Supplier<ResponseEntity<?>> action) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(ttl);
+        if (!repository.claim(key, requestHash, now, expiresAt)) {
+            IdempotencyRecord record = repository.find(key);
+            if (record != null && record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                StoredResponse stored = new StoredResponse(record.getRequestHash(), record.getResponseStatus(),
+                        record.getResponseBody(), true);
+                responses.put(key, new CachedResponse(stored, record.getExpiresAt()));
+                return replay(stored, requestHash);
+            }
+            if (record != null) {
+                checkSameRequest(record.getRequestHash(), requestHash);
+            }
+            if (record == null || !repository.takeOver(key, requestHash, now, now.minus(lockTimeout))) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "La petición con esta Idempotency-Key aún se está procesando");
+            }
+            log.warn("Idempotency-Key {} abandonada por su instancia, se vuelve a ejecutar", key);
+            expiresAt = record.getExpiresAt();
+        }
+
+        Execution execution = new Execution(key, requestHash);
+        ResponseEntity<?> result;
+        current.set(execution);
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            // Si la compra ya se confirmó con la clave completada, esta se conserva: un reintento no la repite
+            if (execution.response == null) {
+                repository.release(key);
+            }
+            throw e;
+        } finally {
+            current.remove();
+        }
+        if (execution.response != null) {
+            // Completada en la transacción de la compra (complete), ya confirmada
+            responses.put(key, new CachedResponse(execution.response.asReplay(), expiresAt));
+            return execution.response;
+        }
+
+        int status = result.getStatusCode().value();
+        String body = serialize(result.getBody());
+        if (result.getStatusCode().is5xxServerError()) {
+            // Los errores del servidor no se memorizan: el reintento vuelve a ejecutar la petición
+            repository.release(key);
+            return new StoredResponse(requestHash, status, body, false);
+        }
+        repository.complete(key, status, body);
+        StoredResponse stored = new StoredResponse(requestHash, status, body, false);
+        responses.put(key, new CachedResponse(stored.asReplay(), expiresAt));
+        return stored;
+    }
+
+    // Guarda la respuesta de la petición en curso en este hilo, si tiene Idempotency-Key, dentro de la transacción
+    // activa: la clave queda completada solo si esa transacción se confirma
+    public void complete(HttpStatus status, Object body) {
+        Execution execution = current.get();
+        if (execution != null) {
+            String json = serialize(body);
+            repository.complete(execution.key, status.value(), json);
+            execution.completed(status.value(), json);
+        }
+    }
+
+    // Petición con Idempotency-Key en curso en este hilo, o null; ReactiveIdempotencyService la lleva al contexto de Reactor
+    Execution current() {
+        return current.get();
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS).asReplay();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "La petición con esta Idempotency-Key aún se está procesando");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Petición interrumpida");
+        }
+    }
+
+    private StoredResponse replay(StoredResponse stored, String requestHash) {
+        checkSameRequest(stored.requestHash(), requestHash);
+        return stored;
+    }
+
+    private static void checkSameRequest(String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "La Idempotency-Key ya se usó con una petición distinta");
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular el hash de la petición", e);
+        }
+    }
+
+    String serialize(Object body) {
+        try {
+            return body != null ? objectMapper.writeValueAsString(body) : null;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${purchases.idempotency.cleanup-interval:1h}")
+    public void purgeExpired() {
+        int deleted = repository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Eliminadas {} Idempotency-Key caducadas", deleted);
+        }
+    }
+
+    static final class Execution {
+
+        private final String key;
+
+        private final String requestHash;
+
+        // Respuesta guardada por complete; la escribe el hilo de la transacción y la lee el de execute al terminar
+        private volatile StoredResponse response;
+
+        private Execution(String key, String requestHash) {
+            this.key = key;
+            this.requestHash = requestHash;
+        }
+
+        String key() {
+            return key;
+        }
+
+        // La respuesta ya está guardada con la clave, en la transacción de la compra
+        void completed(int status, String body) {
+            response = new StoredResponse(requestHash, status, body, false);
+        }
+    }
+
+    // Respuesta en la caché local hasta el expires_at de su clave
+    private record CachedResponse(StoredResponse response, LocalDateTime expiresAt) {
+    }
+
+    // Respuesta de una petición idempotente; replayed indica que no se ha vuelto a ejecutar
+    public record StoredResponse(String requestHash, int status, String body, boolean replayed) {
+
+        StoredResponse asReplay() {
+            return replayed ? this : new StoredResponse(requestHash, status, body, true);
+        }
+    }
+}
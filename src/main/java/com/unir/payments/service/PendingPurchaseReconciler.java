@@ -0,0 +1,114 @@
+package com.unir.payments.service;
+
+import com.unir.payments.client.BooksCatalogueClient;
+import com.unir.payments.controller.model.BookResponseDTO;
+import com.unir.payments.data.CatalogueOutboxRepository;
+import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.PurchaseStatsRepository;
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.unir.payments.data.utils.PurchaseStatsDelta;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Confirma o cancela las compras registradas como PENDING mientras el catálogo no respondía
+// (catalogue.degraded-mode: PENDING), con la misma reserva de ejemplares que el alta normal.
+// El catálogo se consulta fuera de cualquier transacción; el resultado se registra después en una transacción
+// corta que solo toma las compras que siguen pendientes, por si otra instancia las ha resuelto entretanto.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingPurchaseReconciler {
+
+    private final PurchaseRepository repository;
+
+    private final CatalogueOutboxRepository outboxRepository;
+
+    private final PurchaseStatsRepository statsRepository;
+
+    private final PurchaseChangeFeed changeFeed;
+
+    private final BookReservations reservations;
+
+    private final BooksCatalogueClient catalogueClient;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${catalogue.reconciliation.batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${catalogue.reconciliation.poll-interval:30s}")
+    public void reconcile() {
+        // Proyección sin entidades: la lectura puede ir a una réplica sin que la caché de segundo nivel la guarde
+        List<PurchaseView> pending = repository.search(PurchaseQuery.builder()
+                .status("PENDING").fields("id,bookId").limit(batchSize)
+                .build()).purchases();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Una consulta por libro; null si el catálogo no lo conoce
+        Map<String, BookResponseDTO> books = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (PurchaseView purchase : pending) {
+            if (!books.containsKey(purchase.bookId())) {
+                try {
+                    books.put(purchase.bookId(), catalogueClient.getBook(purchase.bookId()));
+                } catch (Exception e) {
+                    // El catálogo sigue sin responder: el resto se intenta en la siguiente pasada
+                    log.warn("No se pudieron reconciliar las compras pendientes: {}", e.getMessage());
+                    break;
+                }
+            }
+            ids.add(purchase.id());
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Set<String> soldOutBooks = new LinkedHashSet<>();
+        List<Purchase> reconciled = transactionTemplate.execute(status -> record(ids, books, soldOutBooks));
+        soldOutBooks.forEach(catalogueClient::invalidate);
+        if (reconciled != null && !reconciled.isEmpty()) {
+            log.info("Reconciliadas {} compras pendientes", reconciled.size());
+        }
+    }
+
+    // Confirma o cancela las compras según el libro consultado, en la transacción en curso
+    private List<Purchase> record(List<Long> ids, Map<String, BookResponseDTO> books, Set<String> soldOutBooks) {
+        PurchaseStatsDelta delta = new PurchaseStatsDelta();
+        List<Purchase> reconciled = repository.lockByStatus(ids, "PENDING");
+        for (Purchase purchase : reconciled) {
+            BookResponseDTO book = books.get(purchase.getBookId());
+            BookReservations.Reservation reservation = book != null && Boolean.TRUE.equals(book.getVisible())
+                    ? reservations.reserve(purchase.getBookId(), book, purchase.getQuantity())
+                    : BookReservations.Reservation.REJECTED;
+
+            delta.subtract(purchase);
+            purchase.setStatus(reservation.isConfirmed() ? "CONFIRMED" : "CANCELLED");
+            delta.add(purchase);
+            if (reservation == BookReservations.Reservation.SOLD_OUT) {
+                soldOutBooks.add(purchase.getBookId());
+            }
+        }
+
+        outboxRepository.saveAll(soldOutBooks.stream().map(CatalogueOutboxEvent::hideBook).toList());
+        statsRepository.apply(delta);
+        changeFeed.record(PurchaseChange.Operation.UPDATED, reconciled);
+        return reconciled;
+    }
+}
@@ -0,0 +1,8 @@
+package com.unir.payments.service;
+
+// Punto de extensión para propagar a otras réplicas las compras que han cambiado.
+// Se invoca tras confirmar la transacción; las implementaciones no deben bloquear al llamante.
+public interface PurchaseCacheBroadcaster {
+
+    void purchaseChanged(Long purchaseId);
+}
@@ -0,0 +1,228 @@
+package com.unir.payments.service;
+
+import com.unir.payments.data.PurchaseChangeRepository;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Registro de cambios de compras (GET /purchases/changes). Las escrituras lo alimentan en su propia transacción;
+// los consumidores leen a partir de su última secuencia y, si no hay nada nuevo, esperan a que avance.
+// El número de secuencia se asigna después de confirmar (PurchaseChangeRepository.sequence), en orden de
+// confirmación: las escrituras no se esperan unas a otras. Al confirmar, cada escritura de esta instancia
+// numera sus cambios antes de responder; los de las demás instancias se conocen con una única numeración
+// periódica, sin que cada consumidor sondee la tabla.
+@Service
+@Slf4j
+public class PurchaseChangeFeed {
+
+    private final PurchaseChangeRepository repository;
+
+    // Numeración con su propia conexión (DataSourceConfig.changeSequenceDataSource): se hace tras confirmar,
+    // cuando la escritura aún retiene la suya del primario (con open-in-view, hasta terminar la petición), y
+    // con tantas escrituras como conexiones esperaría indefinidamente a que el pool liberase otra
+    private final PurchaseChangeRepository sequencer;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean initialized;
+
+    private volatile long lastSeq;
+
+    private volatile long purgedSeq;
+
+    // Se completa, y se sustituye por otro, cada vez que avanza lastSeq
+    private volatile CompletableFuture<Long> next = new CompletableFuture<>();
+
+    // Sin synchronized: con hilos virtuales un monitor retenido fija el hilo a su portador
+    private final ReentrantLock advanceLock = new ReentrantLock();
+
+    // Escrituras de esta instancia confirmadas y, de ellas, cuántas se han numerado ya (con sequenceLock)
+    private final AtomicLong commits = new AtomicLong();
+
+    private long sequencedCommits;
+
+    private long sequencedSeq;
+
+    private final ReentrantLock sequenceLock = new ReentrantLock();
+
+    @Value("${purchases.changes.retention:7d}")
+    private Duration retention;
+
+    @Value("${purchases.changes.sequence-batch-size:10000}")
+    private int sequenceBatchSize;
+
+    // La posición inicial se lee en el primer uso, no al crear el bean: el arranque no depende de la base de datos
+    public PurchaseChangeFeed(PurchaseChangeRepository repository,
+                              @Qualifier("changeSequenceDataSource") DataSource sequenceDataSource) {
+        this.repository = repository;
+        this.sequencer = new PurchaseChangeRepository(new JdbcTemplate(sequenceDataSource));
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(sequenceDataSource));
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void record(PurchaseChange.Operation operation, Purchase purchase) {
+        record(operation, List.of(purchase));
+    }
+
+    // Debe invocarse dentro de la transacción de la escritura, tras el último cambio de las compras
+    public void record(PurchaseChange.Operation operation, List<Purchase> purchases) {
+        if (purchases.isEmpty()) {
+            return;
+        }
+        repository.append(operation, purchases);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed();
+            }
+        });
+    }
+
+    // Tras confirmar una escritura de esta instancia: numera sus cambios antes de que responda, para que su
+    // propio ETag y los consumidores que esperan ya los vean. Las escrituras simultáneas comparten numeración:
+    // la que empieza después de confirmar una escritura también incluye sus cambios
+    public void committed() {
+        long commit = commits.incrementAndGet();
+        long sequenced;
+        sequenceLock.lock();
+        try {
+            if (sequencedCommits < commit) {
+                long upTo = commits.get();
+                sequencedSeq = sequence();
+                sequencedCommits = upTo;
+            }
+            sequenced = sequencedSeq;
+        } catch (RuntimeException e) {
+            // La compra ya está confirmada; la numeración periódica (poll) numerará el cambio
+            log.warn("No se pudo numerar el registro de cambios de compras: {}", e.getMessage());
+            return;
+        } finally {
+            sequenceLock.unlock();
+        }
+        advance(sequenced);
+    }
+
+    // Secuencia conocida por esta instancia, sin consultar la base de datos salvo en el primer uso; va por
+    // detrás de las escrituras de las demás instancias como mucho purchases.changes.poll-interval
+    public long lastSeq() {
+        initialize();
+        return lastSeq;
+    }
+
+    // Secuencia leída de la base de datos en la transacción en curso
+    public long committedSeq() {
+        return repository.lastSeq();
+    }
+
+    // Cambios posteriores a since. Si alguno ya lo eliminó la retención, el consumidor no puede continuar
+    // sin perder cambios y debe volver a cargar las compras (410 Gone).
+    public List<PurchaseChange> read(long since, int limit) {
+        List<PurchaseChange> changes = repository.since(since, limit);
+        checkContinuity(since, changes);
+        return changes;
+    }
+
+    // Las secuencias no tienen huecos: un primer cambio posterior a since + 1 indica que se han eliminado
+    public void checkContinuity(long since, List<PurchaseChange> changes) {
+        initialize();
+        if (since < purgedSeq || (!changes.isEmpty() && changes.getFirst().seq() > since + 1)) {
+            throw new ResponseStatusException(HttpStatus.GONE,
+                    "Los cambios posteriores a " + since + " ya no están disponibles");
+        }
+    }
+
+    // Se completa cuando hay cambios posteriores a since; cada llamada devuelve una copia que se puede
+    // cancelar o limitar en el tiempo sin afectar a los demás consumidores
+    public CompletableFuture<Long> awaitAfter(long since) {
+        initialize();
+        CompletableFuture<Long> future = next;
+        long last = lastSeq;
+        return last > since ? CompletableFuture.completedFuture(last) : future.copy();
+    }
+
+    // Secuencia asignada por una numeración de esta instancia o leída de purchase_change_seq
+    public void advance(long seq) {
+        CompletableFuture<Long> reached;
+        advanceLock.lock();
+        try {
+            if (seq <= lastSeq) {
+                return;
+            }
+            lastSeq = seq;
+            reached = next;
+            next = new CompletableFuture<>();
+        } finally {
+            advanceLock.unlock();
+        }
+        // Fuera del cerrojo: complete() ejecuta en este hilo las continuaciones de los consumidores que esperan
+        // (respuestas de long polling, eventos SSE) y no deben retener a las demás escrituras
+        reached.complete(seq);
+    }
+
+    // Numera también los cambios de las demás instancias que aún no lo estén (p. ej. si una cayó tras confirmar)
+    @Scheduled(fixedDelayString = "${purchases.changes.poll-interval:1s}")
+    public void poll() {
+        long sequenced;
+        sequenceLock.lock();
+        try {
+            sequenced = sequence();
+        } catch (RuntimeException e) {
+            log.warn("No se pudo consultar la secuencia de cambios de compras: {}", e.getMessage());
+            return;
+        } finally {
+            sequenceLock.unlock();
+        }
+        advance(sequenced);
+    }
+
+    // Con sequenceLock: una sola numeración a la vez en esta instancia. Devuelve la última secuencia asignada;
+    // advance se llama después de soltar el cerrojo, que no debe retener a las demás escrituras
+    private long sequence() {
+        long[] positions;
+        do {
+            positions = transactionTemplate.execute(status -> sequencer.sequence(sequenceBatchSize));
+            purgedSeq = positions[1];
+        } while (positions[2] == sequenceBatchSize);
+        return positions[0];
+    }
+
+    private void initialize() {
+        if (!initialized) {
+            long[] positions = repository.positions();
+            purgedSeq = positions[1];
+            advance(positions[0]);
+            initialized = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${purchases.changes.cleanup-interval:1h}")
+    @Transactional
+    public void purgeExpired() {
+        long purged = repository.purgeBefore(LocalDateTime.now().minus(retention), purgedSeq);
+        if (purged > purgedSeq) {
+            log.info("Eliminados los cambios de compras hasta la secuencia {}", purged);
+            purgedSeq = purged;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.unir.payments.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Otra petición ha modificado o eliminado la compra desde que se leyó (versión distinta); el cliente debe releerla
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "La compra ha sido modificada por otra petición")
+public class PurchaseConflictException extends RuntimeException {
+
+    public PurchaseConflictException(String purchaseId, Throwable cause) {
+        super("La compra " + purchaseId + " ha sido modificada por otra petición", cause);
+    }
+}
@@ -0,0 +1,106 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.data.model.Purchase;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Aplica un JSON Merge Patch (RFC 7386) directamente sobre una compra, leyendo el documento
+// una sola vez en modo streaming. Todos los campos de Purchase son escalares y obligatorios,
+// así que un null (borrar el campo) o un objeto anidado en ellos hacen inválido el parche.
+// Los campos que Purchase no tiene se ignoran, como en el resto de la API (FAIL_ON_UNKNOWN_PROPERTIES desactivado).
+@Component
+@RequiredArgsConstructor
+public class PurchaseMergePatcher {
+
+    private static final DateTimeFormatter PURCHASE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final Set<String> FIELDS = Set.of("id", "bookId", "purchaseDate", "quantity", "buyer", "status");
+
+    private final ObjectMapper objectMapper;
+
+    // Devuelve true si el parche modifica algún campo de la compra
+    public boolean apply(Purchase purchase, String patch) throws IOException {
+        boolean changed = false;
+        try (JsonParser parser = objectMapper.getFactory().createParser(patch)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("El parche debe ser un objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!FIELDS.contains(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value == JsonToken.VALUE_NULL) {
+                    throw new IllegalArgumentException("El campo " + field + " es obligatorio");
+                }
+                switch (field) {
+                    case "id" -> {
+                        if (!Objects.equals(purchase.getId(), parser.getValueAsLong())) {
+                            throw new IllegalArgumentException("No se puede modificar el identificador de la compra");
+                        }
+                    }
+                    case "bookId" -> changed |= set(purchase.getBookId(), text(parser), purchase::setBookId);
+                    case "purchaseDate" -> changed |= set(purchase.getPurchaseDate(), date(parser), purchase::setPurchaseDate);
+                    case "quantity" -> changed |= set(purchase.getQuantity(), integer(parser), purchase::setQuantity);
+                    case "buyer" -> changed |= set(purchase.getBuyer(), text(parser), purchase::setBuyer);
+                    case "status" -> changed |= set(purchase.getStatus(), text(parser), purchase::setStatus);
+                    default -> throw new IllegalStateException("Campo sin tratar: " + field);
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Contenido inesperado tras el parche");
+            }
+        }
+        return changed;
+    }
+
+    private static <T> boolean set(T current, T value, Consumer<T> setter) {
+        if (Objects.equals(current, value)) {
+            return false;
+        }
+        setter.accept(value);
+        return true;
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("Se esperaba un texto en " + parser.currentName());
+        }
+        return parser.getText();
+    }
+
+    private static Integer integer(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT -> parser.getIntValue();
+            case VALUE_STRING -> {
+                try {
+                    yield Integer.valueOf(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Se esperaba un entero en " + parser.currentName());
+                }
+            }
+            default -> throw new IllegalArgumentException("Se esperaba un entero en " + parser.currentName());
+        };
+    }
+
+    private static LocalDateTime date(JsonParser parser) throws IOException {
+        try {
+            return LocalDateTime.parse(text(parser), PURCHASE_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha inválida en " + parser.currentName());
+        }
+    }
+}
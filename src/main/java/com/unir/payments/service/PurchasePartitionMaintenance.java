@@ -0,0 +1,140 @@
+package com.unir.payments.service;
+
+import com.unir.payments.data.PurchasePartitionRepository;
+import com.unir.payments.data.model.Purchase;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Mantenimiento de las particiones mensuales de purchases (solo PostgreSQL):
+// crea las de los próximos meses y archiva las que superan la retención en CSV comprimido y las borra.
+// Las estadísticas de purchase_stats se conservan: siguen contando las compras archivadas.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchasePartitionMaintenance {
+
+    private final PurchasePartitionRepository repository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // Meses futuros con partición ya creada, para que las altas no caigan en purchases_default
+    @Value("${purchases.partitions.premake-months:3}")
+    private int premakeMonths;
+
+    // Meses completos que se conservan en la base de datos además del actual; 0 desactiva el archivado
+    @Value("${purchases.partitions.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${purchases.partitions.archive-directory:archive}")
+    private Path archiveDirectory;
+
+    @Value("${purchases.partitions.lock-timeout:5s}")
+    private Duration lockTimeout;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${purchases.partitions.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        if (!repository.isPartitioned()) {
+            return;
+        }
+        try {
+            Boolean locked = transactionTemplate.execute(status -> {
+                if (!repository.tryLock()) {
+                    return false;
+                }
+                repository.setLockTimeout(lockTimeout);
+                createPartitions();
+                detachExpired();
+                return true;
+            });
+            if (Boolean.TRUE.equals(locked)) {
+                archive();
+            }
+        } catch (RuntimeException e) {
+            // Normalmente lock_timeout por consultas largas sobre purchases: se reintenta en la siguiente ejecución
+            log.warn("Error en el mantenimiento de particiones de compras: {}", e.getMessage());
+        }
+    }
+
+    private void createPartitions() {
+        List<YearMonth> existing = repository.partitions();
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!existing.contains(month)) {
+                repository.createPartition(month);
+                log.info("Creada la partición de compras de {}", month);
+            }
+        }
+    }
+
+    private void detachExpired() {
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        for (YearMonth month : repository.partitions()) {
+            if (month.isBefore(oldestKept)) {
+                repository.detachForArchive(month);
+                log.info("Separada para archivar la partición de compras de {}", month);
+            }
+        }
+    }
+
+    // Cada partición separada se exporta y se borra en su propia transacción; si falla, queda separada
+    // y se reintenta en la siguiente ejecución
+    private void archive() {
+        boolean archived = false;
+        for (YearMonth month : transactionTemplate.execute(status -> repository.archives())) {
+            archived |= Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (!repository.tryLock()) {
+                    return false;
+                }
+                Path file = archiveDirectory.resolve("purchases_" + month + ".csv.gz");
+                long rows = export(month, file);
+                repository.dropArchive(month);
+                log.info("Archivadas {} compras de {} en {}", rows, month, file);
+                return true;
+            }));
+        }
+        if (archived) {
+            // Las compras archivadas no deben seguir sirviéndose desde la caché de segundo nivel
+            entityManagerFactory.getCache().evict(Purchase.class);
+        }
+    }
+
+    // Se escribe en un fichero temporal que solo se renombra completo
+    private long export(YearMonth month, Path file) {
+        try {
+            Files.createDirectories(archiveDirectory);
+            Path partial = file.resolveSibling(file.getFileName() + ".part");
+            long rows;
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                rows = repository.exportArchive(month, out);
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo escribir " + file, e);
+        }
+    }
+}
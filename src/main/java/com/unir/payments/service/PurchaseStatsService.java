@@ -0,0 +1,33 @@
+package com.unir.payments.service;
+
+import com.unir.payments.controller.model.PurchaseStatDto;
+import com.unir.payments.data.PurchaseStatsRepository;
+import com.unir.payments.data.model.PurchaseStat;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class PurchaseStatsService {
+
+    private static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    private final PurchaseStatsRepository repository;
+
+    // groupBy admite bookId, buyer, status o day; devuelve null si no es válido
+    public List<PurchaseStatDto> getStats(String groupBy, LocalDate from, LocalDate to) {
+        LocalDate start = from != null ? from : MIN_DATE;
+        LocalDate end = to != null ? to : MAX_DATE;
+        return switch (groupBy) {
+            case "bookId" -> repository.aggregate(PurchaseStat.Dimension.BOOK, start, end);
+            case "buyer" -> repository.aggregate(PurchaseStat.Dimension.BUYER, start, end);
+            case "status" -> repository.aggregate(PurchaseStat.Dimension.STATUS, start, end);
+            case "day" -> repository.aggregateByDay(start, end);
+            default -> null;
+        };
+    }
+}
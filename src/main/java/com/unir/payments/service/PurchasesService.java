@@ -1,14 +1,25 @@
 package com.unir.payments.service;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.unir.payments.controller.model.BatchPurchaseResult;
 import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchasePage;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseQuery;
 import com.unir.payments.controller.model.PurchaseDto;
 import com.unir.payments.controller.model.CreatePurchaseRequest;
 
 public interface PurchasesService {
 
-	List<Purchase> getPurchases(String bookIsbn, String buyer, String status);
+	PurchasePage getPurchases(PurchaseQuery query);
+
+	// Versión actual de las compras, sin consultar la base de datos: cambia con cada alta, modificación o baja
+	long getPurchasesVersion();
+
+	void streamPurchases(PurchaseQuery query, Consumer<PurchaseView> consumer);
 
 	Purchase getPurchase(String purchaseId);
 
@@ -16,7 +27,12 @@ public interface PurchasesService {
 
 	Purchase createPurchase(CreatePurchaseRequest request);
 
+	List<BatchPurchaseResult> createPurchases(Iterator<CreatePurchaseRequest> requests);
+
 	Purchase updatePurchase(String purchaseId, String updateRequest);
 
 	Purchase updatePurchase(String purchaseId, PurchaseDto updateRequest);
+
+	// Sincroniza el stock de un libro con el del catálogo (book_reservations solo lo toma en la primera reserva)
+	void restockBook(String bookId, int stock);
 }
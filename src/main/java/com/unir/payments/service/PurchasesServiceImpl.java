@@ -1,26 +1,59 @@
 package com.unir.payments.service;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatchException;
-import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
+import com.unir.payments.client.BooksCatalogueClient;
+import com.unir.payments.client.CatalogueUnavailableException;
+import com.unir.payments.data.CatalogueOutboxRepository;
 import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.PurchaseStatsRepository;
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import com.unir.payments.controller.model.BatchPurchaseResult;
 import com.unir.payments.controller.model.PurchaseDto;
 import com.unir.payments.controller.model.CreatePurchaseRequest;
 import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.data.model.PurchasePage;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.unir.payments.data.utils.PurchaseStatsDelta;
 import com.unir.payments.controller.model.BookResponseDTO; // Modelo para mapear la respuesta del microservicio de libros
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 @Slf4j
@@ -30,24 +63,145 @@ public class PurchasesServiceImpl implements PurchasesService {
 	private PurchaseRepository repository;
 
 	@Autowired
-	private ObjectMapper objectMapper;
+	private CatalogueOutboxRepository outboxRepository;
+
+	@Autowired
+	private PurchaseStatsRepository statsRepository;
+
+	@Autowired
+	private PurchaseChangeFeed changeFeed;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private PurchaseMergePatcher mergePatcher;
+
+	@Autowired
+	private BookReservations reservations;
+
+	// Completa la Idempotency-Key de la petición, si la tiene, en la transacción que registra la compra
+	@Autowired
+	private IdempotencyService idempotencyService;
 
 	// Para llamar al microservicio de libros vía Gateway
 	@Autowired
-	private RestTemplate restTemplate;
+	private BooksCatalogueClient catalogueClient;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	// Comportamiento cuando el catálogo no responde: REJECT (503) o PENDING (se reconcilia después)
+	@Value("${catalogue.degraded-mode:REJECT}")
+	private CatalogueDegradedMode degradedMode;
+
+	// Lectura por adelantado de streamPurchases: filas en memoria, espera máxima a que el cliente retire alguna y
+	// duración máxima de la consulta
+	@Value("${purchases.stream.buffer-size:1000}")
+	private int streamBufferSize;
+
+	@Value("${purchases.stream.stall-timeout:30s}")
+	private Duration streamStallTimeout;
 
-	// Inyectamos la URL del Gateway (definida en las propiedades o variables de entorno)
-	@Value("${gateway.url:http://localhost:8762}")
-	private String gatewayUrl;
+	@Value("${purchases.stream.timeout:30m}")
+	private Duration streamTimeout;
 
+	// Marca el final de las compras en el búfer de streamPurchases
+	private static final PurchaseView END_OF_STREAM = new PurchaseView(null, null, null, null, null, null);
+
+	private final ExecutorService streamReaders = Executors.newVirtualThreadPerTaskExecutor();
+
+	// Número de compras que se validan y persisten juntas en la carga masiva
+	@Value("${purchases.batch.chunk-size:500}")
+	private int batchChunkSize;
+
+	// La versión (ETag de la página) se lee antes que las compras y en la misma transacción, de la misma réplica:
+	// la página nunca es más antigua que su versión
+	@Override
+	@Transactional(readOnly = true)
+	public PurchasePage getPurchases(PurchaseQuery query) {
+		long version = changeFeed.committedSeq();
+		return repository.search(query).withVersion(version);
+	}
+
+	// La secuencia del registro de cambios y no MAX(version): también avanza con las bajas. Leída de la base de
+	// datos como la de getPurchases y no la conocida por esta instancia, que va por detrás de las escrituras de
+	// las demás: un 304 con ella podría ocultar una compra ya confirmada
+	@Override
+	@Transactional(readOnly = true)
+	public long getPurchasesVersion() {
+		return changeFeed.committedSeq();
+	}
+
+	// La consulta se lee en un hilo virtual hacia un búfer acotado y consumer escribe desde él en el hilo que
+	// llama. La transacción y su conexión no dependen del cliente: si no retira filas durante stall-timeout, o la
+	// lectura supera timeout, se abandona la consulta y se libera la conexión (la respuesta queda incompleta)
 	@Override
-	public List<Purchase> getPurchases(String bookId, String buyer, String status) {
-		// Si se proporciona algún criterio de búsqueda, se utiliza el método search
-		if (StringUtils.hasLength(bookId) || StringUtils.hasLength(buyer) || StringUtils.hasLength(status)) {
-			return repository.search(bookId, buyer, status);
+	public void streamPurchases(PurchaseQuery query, Consumer<PurchaseView> consumer) {
+		BlockingQueue<PurchaseView> buffer = new ArrayBlockingQueue<>(streamBufferSize);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		long deadline = System.nanoTime() + streamTimeout.toNanos();
+		Future<?> reader = streamReaders.submit(() -> {
+			repository.streamPurchases(query, purchase -> readAhead(buffer, purchase, cancelled, deadline));
+			readAhead(buffer, END_OF_STREAM, cancelled, deadline);
+			return null;
+		});
+		try {
+			PurchaseView purchase;
+			while ((purchase = nextRead(buffer, reader)) != END_OF_STREAM) {
+				consumer.accept(purchase);
+			}
+		} finally {
+			// Si el cliente se ha ido, el lector termina en la siguiente fila sin esperar sitio en el búfer
+			cancelled.set(true);
+			buffer.clear();
 		}
-		List<Purchase> purchases = repository.getPurchases();
-		return purchases.isEmpty() ? null : purchases;
+	}
+
+	private void readAhead(BlockingQueue<PurchaseView> buffer, PurchaseView purchase, AtomicBoolean cancelled, long deadline) {
+		try {
+			if (!buffer.offer(purchase, streamStallTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				throw new IllegalStateException("El cliente no ha leído compras en " + streamStallTimeout);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Lectura de compras interrumpida", e);
+		}
+		if (cancelled.get()) {
+			throw new IllegalStateException("Respuesta de compras cancelada");
+		}
+		if (System.nanoTime() - deadline > 0) {
+			throw new IllegalStateException("La lectura de compras ha superado " + streamTimeout);
+		}
+	}
+
+	// Siguiente compra leída; si el lector ha fallado, su error
+	private static PurchaseView nextRead(BlockingQueue<PurchaseView> buffer, Future<?> reader) {
+		try {
+			while (true) {
+				PurchaseView purchase = buffer.poll(100, TimeUnit.MILLISECONDS);
+				if (purchase != null) {
+					return purchase;
+				}
+				if (reader.isDone() && buffer.isEmpty()) {
+					reader.get();
+					return END_OF_STREAM;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reader.cancel(true);
+			throw new IllegalStateException("Lectura de compras interrumpida", e);
+		} catch (ExecutionException e) {
+			log.warn("Lectura de compras abandonada: {}", e.getCause().getMessage());
+			throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+		}
+	}
+
+	// Al parar la aplicación, los lectores que esperan a un cliente terminan y liberan su conexión
+	@EventListener(ContextClosedEvent.class)
+	public void shutdown() {
+		streamReaders.shutdownNow();
 	}
 
 	@Override
@@ -57,39 +211,41 @@ public class PurchasesServiceImpl implements PurchasesService {
 
 	@Override
 	public Boolean removePurchase(String purchaseId) {
-		Purchase purchase = repository.getById(Long.valueOf(purchaseId));
-		if (purchase != null) {
-			repository.delete(purchase);
-			return Boolean.TRUE;
-		} else {
-			return Boolean.FALSE;
-		}
+		return withVersionCheck(purchaseId, () -> transactionTemplate.execute(status -> {
+			Purchase purchase = repository.getById(Long.valueOf(purchaseId));
+			if (purchase != null) {
+				repository.delete(purchase);
+				statsRepository.apply(new PurchaseStatsDelta().subtract(purchase));
+				showIfRestored(reservations.adjust(BookReservations.held(purchase), null));
+				changeFeed.record(PurchaseChange.Operation.DELETED, purchase);
+				return Boolean.TRUE;
+			} else {
+				return Boolean.FALSE;
+			}
+		}));
 	}
 
+	// Registra la latencia del alta según su resultado: CONFIRMED, CANCELLED, PENDING, REJECTED (datos incorrectos) o ERROR
 	@Override
 	public Purchase createPurchase(CreatePurchaseRequest request) {
-		if (request != null
-				&& StringUtils.hasLength(request.getBookId().trim())
-				&& request.getQuantity() != null
-				&& StringUtils.hasLength(request.getBuyer().trim())
-				&& StringUtils.hasLength(request.getStatus().trim())) {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String outcome = "ERROR";
+		try {
+			Purchase purchase = create(request);
+			outcome = purchase != null ? purchase.getStatus() : "REJECTED";
+			return purchase;
+		} finally {
+			sample.stop(Timer.builder("purchases.create")
+					.description("Latencia del alta de una compra")
+					.tag("outcome", outcome)
+					.register(meterRegistry));
+		}
+	}
+
+	private Purchase create(CreatePurchaseRequest request) {
+		if (isValid(request)) {
 
 			String bookId = request.getBookId();
-			// Construir la URL del Gateway para consultar el libro (se usa el ID o ISBN, según cómo esté configurado)
-			String bookUrl = gatewayUrl + "/ms-books-catalogue/books/" + bookId;
-			String getPayload = "{\"targetMethod\": \"GET\"}";
-
-			log.info("Consultando disponibilidad del libro en: {}", bookUrl);
-			ResponseEntity<BookResponseDTO> bookResponse = restTemplate.postForEntity(bookUrl, getPayload, BookResponseDTO.class);
-
-			boolean available = false;
-			if (bookResponse.getStatusCode() == HttpStatus.OK && bookResponse.getBody() != null) {
-				BookResponseDTO book = bookResponse.getBody();
-				available = Boolean.TRUE.equals(book.getVisible());
-				log.info("Libro consultado: ID={}, visible={}", book.getBookId(), available);
-			} else {
-				log.warn("No se encontró el libro con ID: {}", bookId);
-			}
 
 			// Construir el objeto Purchase
 			Purchase purchase = Purchase.builder()
@@ -99,60 +255,289 @@ public class PurchasesServiceImpl implements PurchasesService {
 					.buyer(request.getBuyer())
 					.build();
 
-			if (available) {
-				purchase.setStatus("CONFIRMED");
-				Purchase savedPurchase = repository.save(purchase);
+			BookResponseDTO book;
+			try {
+				book = catalogueClient.getBook(bookId);
+			} catch (RuntimeException e) {
+				// Catálogo caído, lento (circuito abierto) o saturado (bulkhead lleno)
+				return createDegraded(purchase, e);
+			}
 
-				// Actualizar el libro: enviar solicitud para cambiar 'visible' a false.
-				String updatePayload = "{\"targetMethod\": \"PATCH\", \"queryParams\": {}, \"body\": {\"visible\": false}}";
-				log.info("Actualizando visibilidad del libro a false en: {}", bookUrl);
-				try {
-					restTemplate.postForEntity(bookUrl, updatePayload, Void.class);
-				} catch (Exception e) {
-					log.error("Error al actualizar visibilidad del libro: {}", e.getMessage(), e);
-					// Aquí puedes decidir si revertir la compra o notificar el error.
-				}
-				return savedPurchase;
+			boolean visible = false;
+			if (book != null) {
+				visible = Boolean.TRUE.equals(book.getVisible());
+				log.info("Libro consultado: ID={}, visible={}", book.getBookId(), visible);
 			} else {
+				log.warn("No se encontró el libro con ID: {}", bookId);
+			}
+
+			if (!visible) {
 				// Libro no disponible: registra la compra con status CANCELLED
 				purchase.setStatus("CANCELLED");
-				Purchase savedPurchase = repository.save(purchase);
+				Purchase savedPurchase = transactionTemplate.execute(status -> {
+					Purchase saved = repository.save(purchase);
+					statsRepository.apply(new PurchaseStatsDelta().add(saved));
+					changeFeed.record(PurchaseChange.Operation.CREATED, saved);
+					idempotencyService.complete(HttpStatus.CREATED, saved);
+					return saved;
+				});
 				log.info("Compra registrada con status CANCELLED, libro no disponible.");
+				countRegistered(savedPurchase.getStatus(), 1);
 				return savedPurchase;
 			}
+
+			// La reserva de ejemplares decide el estado. Si agota el libro, la actualización ('visible' a false)
+			// se guarda en la misma transacción y CatalogueOutboxDispatcher la envía al catálogo con reintentos.
+			BookReservations.Reservation reservation = reservations.withLock(bookId, () -> transactionTemplate.execute(status -> {
+				BookReservations.Reservation result = reservations.reserve(bookId, book, request.getQuantity());
+				purchase.setStatus(result.isConfirmed() ? "CONFIRMED" : "CANCELLED");
+				repository.save(purchase);
+				if (result == BookReservations.Reservation.SOLD_OUT) {
+					outboxRepository.save(CatalogueOutboxEvent.hideBook(bookId));
+				}
+				statsRepository.apply(new PurchaseStatsDelta().add(purchase));
+				changeFeed.record(PurchaseChange.Operation.CREATED, purchase);
+				idempotencyService.complete(HttpStatus.CREATED, purchase);
+				return result;
+			}));
+			if (reservation == BookReservations.Reservation.SOLD_OUT) {
+				catalogueClient.invalidate(bookId);
+			} else if (reservation == BookReservations.Reservation.REJECTED) {
+				log.info("Compra registrada con status CANCELLED, sin ejemplares disponibles.");
+			}
+			countRegistered(purchase.getStatus(), 1);
+			return purchase;
 		} else {
 			return null;
 		}
 	}
 
+	// Sin catálogo, según catalogue.degraded-mode: se rechaza la compra (503) o se registra como PENDING
+	// para que PendingPurchaseReconciler la confirme o cancele cuando el catálogo vuelva a responder
+	private Purchase createDegraded(Purchase purchase, RuntimeException cause) {
+		log.warn("Catálogo no disponible al registrar la compra del libro {}: {}", purchase.getBookId(), cause.getMessage());
+		if (degradedMode == CatalogueDegradedMode.REJECT) {
+			throw new CatalogueUnavailableException(cause);
+		}
+		purchase.setStatus("PENDING");
+		transactionTemplate.executeWithoutResult(status -> {
+			repository.save(purchase);
+			statsRepository.apply(new PurchaseStatsDelta().add(purchase));
+			changeFeed.record(PurchaseChange.Operation.CREATED, purchase);
+			idempotencyService.complete(HttpStatus.CREATED, purchase);
+		});
+		countRegistered(purchase.getStatus(), 1);
+		return purchase;
+	}
+
+	@Override
+	public List<BatchPurchaseResult> createPurchases(Iterator<CreatePurchaseRequest> requests) {
+		List<BatchPurchaseResult> results = new ArrayList<>();
+		// Libros consultados al catálogo, una sola vez para todo el lote (null si no existe)
+		Map<String, BookResponseDTO> books = new HashMap<>();
+		Set<String> failedBooks = new HashSet<>();
+		List<CreatePurchaseRequest> chunk = new ArrayList<>(batchChunkSize);
+		int index = 0;
+		try {
+			while (requests.hasNext()) {
+				chunk.add(requests.next());
+				if (chunk.size() == batchChunkSize) {
+					results.addAll(createChunk(index, chunk, books, failedBooks));
+					index += chunk.size();
+					chunk.clear();
+				}
+			}
+		} catch (RuntimeException e) {
+			// Entrada mal formada: se registra lo leído hasta ese punto y se detiene la carga
+			log.warn("Error leyendo la compra {} del lote: {}", index + chunk.size(), e.getMessage());
+			results.addAll(createChunk(index, chunk, books, failedBooks));
+			results.add(rejected(index + chunk.size(), "Compra mal formada: " + e.getMessage()));
+			return results;
+		}
+		results.addAll(createChunk(index, chunk, books, failedBooks));
+		return results;
+	}
+
+	private List<BatchPurchaseResult> createChunk(int offset, List<CreatePurchaseRequest> chunk,
+												  Map<String, BookResponseDTO> books, Set<String> failedBooks) {
+		BatchPurchaseResult[] results = new BatchPurchaseResult[chunk.size()];
+		List<Purchase> purchases = new ArrayList<>(chunk.size());
+		List<Integer> positions = new ArrayList<>(chunk.size());
+		// Compras de libros visibles, pendientes de reservar ejemplares
+		List<Purchase> candidates = new ArrayList<>();
+
+		for (int i = 0; i < chunk.size(); i++) {
+			CreatePurchaseRequest request = chunk.get(i);
+			if (!isValid(request)) {
+				results[i] = rejected(offset + i, "Datos incorrectos introducidos.");
+				continue;
+			}
+			String bookId = request.getBookId();
+			if (!books.containsKey(bookId) && !failedBooks.contains(bookId)) {
+				try {
+					books.put(bookId, catalogueClient.getBook(bookId));
+				} catch (Exception e) {
+					log.error("Error consultando el libro {}: {}", bookId, e.getMessage());
+					failedBooks.add(bookId);
+				}
+			}
+			boolean failed = failedBooks.contains(bookId);
+			if (failed && degradedMode == CatalogueDegradedMode.REJECT) {
+				results[i] = rejected(offset + i, "No se pudo consultar el libro " + bookId);
+				continue;
+			}
+
+			BookResponseDTO book = books.get(bookId);
+			Purchase purchase = Purchase.builder()
+					.bookId(bookId)
+					.purchaseDate(request.getPurchaseDate() != null ? request.getPurchaseDate() : LocalDateTime.now())
+					.quantity(request.getQuantity())
+					.buyer(request.getBuyer())
+					.status(failed ? "PENDING" : "CANCELLED")
+					.build();
+			if (book != null && Boolean.TRUE.equals(book.getVisible())) {
+				candidates.add(purchase);
+			}
+			purchases.add(purchase);
+			positions.add(i);
+		}
+
+		Set<String> soldOutBooks = new LinkedHashSet<>();
+		if (!purchases.isEmpty()) {
+			// Las reservas se hacen por orden de libro para que dos lotes concurrentes bloqueen las filas
+			// de book_reservations en el mismo orden; dentro de cada libro se respeta el orden del lote.
+			candidates.sort(Comparator.comparing(Purchase::getBookId));
+			List<Purchase> saved = transactionTemplate.execute(status -> {
+				for (Purchase purchase : candidates) {
+					BookReservations.Reservation reservation = reservations.reserve(
+							purchase.getBookId(), books.get(purchase.getBookId()), purchase.getQuantity());
+					if (reservation.isConfirmed()) {
+						purchase.setStatus("CONFIRMED");
+					}
+					if (reservation == BookReservations.Reservation.SOLD_OUT) {
+						soldOutBooks.add(purchase.getBookId());
+					}
+				}
+				List<Purchase> inserted = repository.saveAll(purchases);
+				outboxRepository.saveAll(soldOutBooks.stream().map(CatalogueOutboxEvent::hideBook).toList());
+				PurchaseStatsDelta delta = new PurchaseStatsDelta();
+				inserted.forEach(delta::add);
+				statsRepository.apply(delta);
+				changeFeed.record(PurchaseChange.Operation.CREATED, inserted);
+				return inserted;
+			});
+			saved.stream()
+					.collect(Collectors.groupingBy(Purchase::getStatus, Collectors.counting()))
+					.forEach(this::countRegistered);
+			for (int i = 0; i < saved.size(); i++) {
+				int position = positions.get(i);
+				results[position] = BatchPurchaseResult.builder()
+						.index(offset + position)
+						.result(BatchPurchaseResult.CREATED)
+						.purchase(saved.get(i))
+						.build();
+			}
+		}
+
+		soldOutBooks.forEach(catalogueClient::invalidate);
+		return List.of(results);
+	}
+
+	private void countRegistered(String status, long count) {
+		Counter.builder("purchases.registered")
+				.description("Compras registradas por estado")
+				.tag("status", status)
+				.register(meterRegistry)
+				.increment(count);
+	}
+
+	private BatchPurchaseResult rejected(int index, String error) {
+		return BatchPurchaseResult.builder()
+				.index(index)
+				.result(BatchPurchaseResult.REJECTED)
+				.error(error)
+				.build();
+	}
+
+	private boolean isValid(CreatePurchaseRequest request) {
+		return request != null
+				&& StringUtils.hasText(request.getBookId())
+				&& request.getQuantity() != null
+				&& StringUtils.hasText(request.getBuyer())
+				&& StringUtils.hasText(request.getStatus());
+	}
+
 	@Override
 	public Purchase updatePurchase(String purchaseId, String request) {
-		Purchase purchase = repository.getById(Long.valueOf(purchaseId));
-		if (purchase != null) {
+		// El parche se aplica sobre la entidad gestionada; al confirmar la transacción
+		// Hibernate actualiza solo las columnas modificadas (@DynamicUpdate)
+		return withVersionCheck(purchaseId, () -> transactionTemplate.execute(status -> {
+			Purchase purchase = repository.getById(Long.valueOf(purchaseId));
+			if (purchase == null) {
+				return null;
+			}
 			try {
-				JsonMergePatch jsonMergePatch = JsonMergePatch.fromJson(objectMapper.readTree(request));
-				JsonNode target = jsonMergePatch.apply(objectMapper.readTree(objectMapper.writeValueAsString(purchase)));
-				Purchase patched = objectMapper.treeToValue(target, Purchase.class);
-				repository.save(patched);
-				return patched;
-			} catch (JsonProcessingException | JsonPatchException e) {
-				log.error("Error updating purchase {}", purchaseId, e);
+				PurchaseStatsDelta delta = new PurchaseStatsDelta().subtract(purchase);
+				BookReservations.Held held = BookReservations.held(purchase);
+				if (mergePatcher.apply(purchase, request)) {
+					repository.save(purchase);
+					statsRepository.apply(delta.add(purchase));
+					showIfRestored(reservations.adjust(held, BookReservations.held(purchase)));
+					changeFeed.record(PurchaseChange.Operation.UPDATED, purchase);
+				}
+				return purchase;
+			} catch (IOException | IllegalArgumentException e) {
+				log.error("Error updating purchase {}: {}", purchaseId, e.getMessage());
+				status.setRollbackOnly();
 				return null;
 			}
-		} else {
-			return null;
-		}
+		}));
 	}
 
 	@Override
 	public Purchase updatePurchase(String purchaseId, PurchaseDto updateRequest) {
-		Purchase purchase = repository.getById(Long.valueOf(purchaseId));
-		if (purchase != null) {
-			purchase.update(updateRequest);
-			repository.save(purchase);
-			return purchase;
-		} else {
-			return null;
+		return withVersionCheck(purchaseId, () -> transactionTemplate.execute(status -> {
+			Purchase purchase = repository.getById(Long.valueOf(purchaseId));
+			if (purchase != null) {
+				PurchaseStatsDelta delta = new PurchaseStatsDelta().subtract(purchase);
+				BookReservations.Held held = BookReservations.held(purchase);
+				purchase.update(updateRequest);
+				repository.save(purchase);
+				statsRepository.apply(delta.add(purchase));
+				showIfRestored(reservations.adjust(held, BookReservations.held(purchase)));
+				changeFeed.record(PurchaseChange.Operation.UPDATED, purchase);
+				return purchase;
+			} else {
+				return null;
+			}
+		}));
+	}
+
+	// Un libro agotado que vuelve a tener ejemplares se muestra de nuevo en el catálogo, por el mismo outbox que lo ocultó
+	private void showIfRestored(String bookId) {
+		if (bookId != null) {
+			outboxRepository.save(CatalogueOutboxEvent.showBook(bookId));
+		}
+	}
+
+	@Override
+	public void restockBook(String bookId, int stock) {
+		boolean restored = reservations.withLock(bookId, () -> transactionTemplate.execute(status -> {
+			boolean result = reservations.restock(bookId, stock);
+			showIfRestored(result ? bookId : null);
+			return result;
+		}));
+		log.info("Stock del libro {} sincronizado: {} ejemplares{}", bookId, stock, restored ? ", vuelve a estar disponible" : "");
+	}
+
+	// La compra leída (quizá de la caché de segundo nivel) ya no tiene la versión de la base de datos:
+	// Hibernate no la sobrescribe y el cliente recibe 409 para que la relea
+	private <T> T withVersionCheck(String purchaseId, Supplier<T> write) {
+		try {
+			return write.get();
+		} catch (OptimisticLockingFailureException e) {
+			log.info("Conflicto de versión al modificar la compra {}: {}", purchaseId, e.getMessage());
+			throw new PurchaseConflictException(purchaseId, e);
 		}
 	}
 }
@@ -0,0 +1,3 @@
+-- Ver la misma versión en PostgreSQL: la columna version de book_reservations ya no se usa.
+
+ALTER TABLE book_reservations DROP COLUMN IF EXISTS version;
@@ -0,0 +1,6 @@
+-- Ver la misma versión en PostgreSQL: book_reservations.stock solo cambia con una sincronización explícita y
+-- catalogue_outbox.visible indica si el evento muestra u oculta el libro.
+
+COMMENT ON COLUMN book_reservations.stock IS 'Stock del catálogo al crear la fila; solo cambia con una sincronización explícita';
+COMMENT ON COLUMN book_reservations.reserved IS 'Ejemplares de las compras CONFIRMED';
+ALTER TABLE catalogue_outbox ADD COLUMN visible boolean DEFAULT FALSE NOT NULL;
@@ -0,0 +1,67 @@
+-- Esquema para H2 (desarrollo local y benchmarks). Sin particionado: la tabla purchases es única.
+
+CREATE SEQUENCE IF NOT EXISTS catalogue_outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS purchases_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS book_reservations (
+    reserved integer NOT NULL,
+    stock integer NOT NULL,
+    version bigint NOT NULL,
+    book_id varchar(255) NOT NULL,
+    PRIMARY KEY (book_id)
+);
+
+CREATE TABLE IF NOT EXISTS catalogue_outbox (
+    attempts integer NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    id bigint NOT NULL,
+    next_attempt_at timestamp(6) NOT NULL,
+    last_error varchar(500),
+    book_id varchar(255) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    response_status integer,
+    created_at timestamp(6) NOT NULL,
+    expires_at timestamp(6) NOT NULL,
+    request_hash varchar(64) NOT NULL,
+    idempotency_key varchar(255) NOT NULL,
+    response_body clob,
+    status enum ('COMPLETED', 'IN_PROGRESS') NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+CREATE TABLE IF NOT EXISTS purchase_stats (
+    stat_date date NOT NULL,
+    purchases bigint NOT NULL,
+    quantity bigint NOT NULL,
+    dim_key varchar(255) NOT NULL,
+    dimension enum ('BOOK', 'BUYER', 'STATUS') NOT NULL,
+    PRIMARY KEY (stat_date, dim_key, dimension)
+);
+
+CREATE TABLE IF NOT EXISTS purchases (
+    quantity integer NOT NULL,
+    id bigint NOT NULL,
+    purchase_date timestamp(6) NOT NULL,
+    book_id varchar(255) NOT NULL,
+    buyer varchar(255) NOT NULL,
+    status varchar(255) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_catalogue_outbox_book_id ON catalogue_outbox (book_id);
+
+CREATE INDEX IF NOT EXISTS idx_catalogue_outbox_next_attempt ON catalogue_outbox (next_attempt_at);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
+
+CREATE INDEX IF NOT EXISTS idx_purchases_book_id ON purchases (book_id, id);
+
+CREATE INDEX IF NOT EXISTS idx_purchases_buyer ON purchases (buyer, id);
+
+CREATE INDEX IF NOT EXISTS idx_purchases_status ON purchases (status, id);
+
+CREATE INDEX IF NOT EXISTS idx_purchases_purchase_date ON purchases (purchase_date);
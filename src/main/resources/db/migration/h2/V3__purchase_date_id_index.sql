@@ -0,0 +1,6 @@
+-- El índice de purchase_date termina en id, como los de los demás filtros, para servir la ordenación
+-- por fecha con desempate por id (sort=purchaseDate) y su paginación por cursor sin ordenar en memoria.
+-- Misma versión que en PostgreSQL; la V2 (particionado) no aplica en H2.
+
+DROP INDEX idx_purchases_purchase_date;
+CREATE INDEX idx_purchases_purchase_date ON purchases (purchase_date, id);
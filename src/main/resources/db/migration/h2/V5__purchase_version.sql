@@ -0,0 +1,6 @@
+-- Versión y fecha de la última modificación de cada compra: bloqueo optimista de Hibernate (@Version) y
+-- peticiones condicionales de GET /purchases/{purchaseId} (ETag / If-None-Match, Last-Modified / If-Modified-Since).
+-- Las compras existentes toman la versión 0 y la fecha de la migración.
+
+ALTER TABLE purchases ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE purchases ADD COLUMN last_modified timestamp(6) NOT NULL DEFAULT LOCALTIMESTAMP;
@@ -0,0 +1,7 @@
+-- Misma corrección que en PostgreSQL: purchases_seq continúa tras el mayor id existente, sin retroceder.
+-- RESTART WITH fija el siguiente valor, no el último devuelto, así que se suma además el incremento (50)
+-- para obtener el mismo bloque.
+
+ALTER SEQUENCE purchases_seq RESTART WITH (SELECT GREATEST(
+        (SELECT COALESCE(max(id), 0) + 1 + 50 FROM purchases),
+        (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PURCHASES_SEQ')));
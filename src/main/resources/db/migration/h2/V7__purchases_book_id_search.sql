@@ -0,0 +1,3 @@
+-- Misma versión que en PostgreSQL. H2 no admite índices sobre expresiones ni de trigramas: las búsquedas
+-- de bookIsbn por prefijo y por subcadena (lower(book_id) LIKE) recorren la tabla; la igualdad de un ISBN
+-- completo usa idx_purchases_book_id.
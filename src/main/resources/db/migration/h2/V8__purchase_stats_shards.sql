@@ -0,0 +1,20 @@
+-- Cada (día, dimensión, valor) de purchase_stats se reparte en varias filas (shard): las transacciones suman en
+-- una al azar (purchases.stats.shards) y las consultas suman todas. Además se recalcula el resumen de los días
+-- que siguen en purchases, por si la base de datos ya tenía compras antes de que existiera purchase_stats.
+-- Mismo contenido que en PostgreSQL salvo el bloqueo de purchases.
+
+ALTER TABLE purchase_stats ADD COLUMN shard integer DEFAULT 0 NOT NULL;
+ALTER TABLE purchase_stats DROP PRIMARY KEY;
+ALTER TABLE purchase_stats ADD PRIMARY KEY (stat_date, dimension, dim_key, shard);
+
+DELETE FROM purchase_stats WHERE stat_date IN (SELECT DISTINCT CAST(purchase_date AS date) FROM purchases);
+
+INSERT INTO purchase_stats (dimension, dim_key, stat_date, shard, purchases, quantity)
+SELECT 'BOOK', book_id, CAST(purchase_date AS date), 0, count(*), sum(quantity)
+  FROM purchases GROUP BY book_id, CAST(purchase_date AS date)
+UNION ALL
+SELECT 'BUYER', buyer, CAST(purchase_date AS date), 0, count(*), sum(quantity)
+  FROM purchases GROUP BY buyer, CAST(purchase_date AS date)
+UNION ALL
+SELECT 'STATUS', status, CAST(purchase_date AS date), 0, count(*), sum(quantity)
+  FROM purchases GROUP BY status, CAST(purchase_date AS date);
@@ -0,0 +1,17 @@
+-- Las escrituras dejan de reservar su número de secuencia en purchase_change_seq: cada cambio toma al insertarse
+-- un id de purchase_changes_id_seq y queda con seq nulo hasta que, confirmado, PurchaseChangeFeed lo numera
+-- (ver la misma versión en PostgreSQL). H2 no tiene índices parciales: los pendientes (seq IS NULL) usan el de seq.
+
+CREATE SEQUENCE purchase_changes_id_seq;
+
+ALTER TABLE purchase_changes ADD COLUMN id bigint;
+UPDATE purchase_changes SET id = seq;
+ALTER SEQUENCE purchase_changes_id_seq RESTART WITH (SELECT COALESCE(max(id), 0) + 1 FROM purchase_changes);
+
+ALTER TABLE purchase_changes ALTER COLUMN id SET DEFAULT NEXT VALUE FOR purchase_changes_id_seq;
+ALTER TABLE purchase_changes ALTER COLUMN id SET NOT NULL;
+
+ALTER TABLE purchase_changes DROP PRIMARY KEY;
+ALTER TABLE purchase_changes ADD PRIMARY KEY (id);
+ALTER TABLE purchase_changes ALTER COLUMN seq SET NULL;
+CREATE UNIQUE INDEX idx_purchase_changes_seq ON purchase_changes (seq);
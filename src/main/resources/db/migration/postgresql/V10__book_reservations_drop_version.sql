@@ -0,0 +1,4 @@
+-- La guarda de book_reservations es el UPDATE condicional sobre la fila (BookReservationRepository); la columna
+-- version no la lee nadie desde que se retiró la entidad JPA BookReservation.
+
+ALTER TABLE book_reservations DROP COLUMN IF EXISTS version;
@@ -0,0 +1,11 @@
+-- book_reservations.stock es el stock del catálogo cuando se reservó el libro por primera vez y solo cambia con una
+-- sincronización explícita (PUT /internal/reservations/{bookId}/stock). Las compras lo comparan con reserved pero
+-- ya no lo sobrescriben: el libro se lee del catálogo a través de una caché y un valor obsoleto no debe
+-- sustituir al stock mientras reserved se acumula.
+-- catalogue_outbox.visible es el valor de 'visible' que se envía al catálogo: false al agotarse el libro y true
+-- cuando vuelve a tener ejemplares (cancelación o borrado de una compra, reposición). Los eventos existentes
+-- ocultaban el libro.
+
+COMMENT ON COLUMN book_reservations.stock IS 'Stock del catálogo al crear la fila; solo cambia con una sincronización explícita';
+COMMENT ON COLUMN book_reservations.reserved IS 'Ejemplares de las compras CONFIRMED';
+ALTER TABLE catalogue_outbox ADD COLUMN visible boolean DEFAULT FALSE NOT NULL;
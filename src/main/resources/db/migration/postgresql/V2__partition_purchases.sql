@@ -0,0 +1,50 @@
+-- purchases pasa a estar particionada por rango mensual de purchase_date (purchases_pYYYYMM).
+-- La clave primaria debe incluir la clave de partición; la unicidad de id la garantiza purchases_seq.
+-- Las particiones futuras las crea y las antiguas las archiva PurchasePartitionMaintenance.
+
+ALTER TABLE purchases RENAME TO purchases_unpartitioned;
+ALTER TABLE purchases_unpartitioned RENAME CONSTRAINT purchases_pkey TO purchases_unpartitioned_pkey;
+DROP INDEX idx_purchases_book_id;
+DROP INDEX idx_purchases_buyer;
+DROP INDEX idx_purchases_status;
+DROP INDEX idx_purchases_purchase_date;
+
+CREATE TABLE purchases (
+    quantity integer NOT NULL,
+    id bigint NOT NULL,
+    purchase_date timestamp(6) NOT NULL,
+    book_id varchar(255) NOT NULL,
+    buyer varchar(255) NOT NULL,
+    status varchar(255) NOT NULL,
+    PRIMARY KEY (id, purchase_date)
+) PARTITION BY RANGE (purchase_date);
+
+CREATE INDEX idx_purchases_book_id ON purchases (book_id, id);
+
+CREATE INDEX idx_purchases_buyer ON purchases (buyer, id);
+
+CREATE INDEX idx_purchases_status ON purchases (status, id);
+
+CREATE INDEX idx_purchases_purchase_date ON purchases (purchase_date);
+
+-- Compras con fechas fuera de las particiones mensuales existentes
+CREATE TABLE purchases_default PARTITION OF purchases DEFAULT;
+
+-- Una partición por mes desde la compra más antigua hasta el mes actual
+DO $$
+DECLARE
+    month date := date_trunc('month', coalesce((SELECT min(purchase_date) FROM purchases_unpartitioned), now()));
+BEGIN
+    WHILE month <= date_trunc('month', now()) LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF purchases FOR VALUES FROM (%L) TO (%L)',
+                       'purchases_p' || to_char(month, 'YYYYMM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO purchases (quantity, id, purchase_date, book_id, buyer, status)
+SELECT quantity, id, purchase_date, book_id, buyer, status FROM purchases_unpartitioned;
+
+DROP TABLE purchases_unpartitioned;
+
+ANALYZE purchases;
@@ -0,0 +1,31 @@
+-- Registro de cambios de compras para GET /purchases/changes (PurchaseChangeFeed).
+-- El número de secuencia sale de la única fila de purchase_change_seq, que cada transacción actualiza y mantiene
+-- bloqueada hasta confirmar: las secuencias se confirman en orden y sin huecos, así que un consumidor que lee
+-- seq > N no puede saltarse un cambio que se confirme más tarde con un número menor.
+-- purged_seq es el último número eliminado por la retención; los cursores anteriores ya no se pueden reanudar.
+
+CREATE TABLE purchase_change_seq (
+    id integer NOT NULL,
+    last_seq bigint NOT NULL,
+    purged_seq bigint NOT NULL,
+    PRIMARY KEY (id),
+    CHECK (id = 1)
+);
+
+INSERT INTO purchase_change_seq (id, last_seq, purged_seq) VALUES (1, 0, 0);
+
+-- Estado de la compra tras el cambio (antes de eliminarla, en DELETED)
+CREATE TABLE purchase_changes (
+    seq bigint NOT NULL,
+    purchase_id bigint NOT NULL,
+    operation varchar(10) NOT NULL CHECK (operation IN ('CREATED', 'UPDATED', 'DELETED')),
+    changed_at timestamp(6) NOT NULL,
+    book_id varchar(255) NOT NULL,
+    purchase_date timestamp(6) NOT NULL,
+    quantity integer NOT NULL,
+    buyer varchar(255) NOT NULL,
+    status varchar(255) NOT NULL,
+    PRIMARY KEY (seq)
+);
+
+CREATE INDEX idx_purchase_changes_changed_at ON purchase_changes (changed_at);
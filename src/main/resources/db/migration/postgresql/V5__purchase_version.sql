@@ -0,0 +1,7 @@
+-- Versión y fecha de la última modificación de cada compra: bloqueo optimista de Hibernate (@Version) y
+-- peticiones condicionales de GET /purchases/{purchaseId} (ETag / If-None-Match, Last-Modified / If-Modified-Since).
+-- Con valores por defecto no volátiles PostgreSQL no reescribe las particiones: las compras existentes
+-- toman la versión 0 y la fecha de la migración. Las particiones se crean con LIKE purchases y ya las incluyen.
+
+ALTER TABLE purchases ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE purchases ADD COLUMN last_modified timestamp(6) NOT NULL DEFAULT LOCALTIMESTAMP;
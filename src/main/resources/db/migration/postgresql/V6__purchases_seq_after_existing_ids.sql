@@ -0,0 +1,9 @@
+-- purchases_seq se creó en V1 con START WITH 1, pero una base de datos anterior (ids IDENTITY de Hibernate)
+-- ya tiene compras con esos valores: los inserts chocarían con ellas. La secuencia continúa tras el mayor id.
+-- setval deja la secuencia como si hubiera devuelto ese valor; Hibernate (pooled, allocationSize 50) y
+-- ReactivePurchaseRepository usan el bloque que termina en el siguiente nextval, todo él por encima.
+-- Nunca retrocede: los bloques ya reservados por instancias en marcha siguen siendo suyos.
+
+SELECT setval('purchases_seq', GREATEST(
+        (SELECT COALESCE(max(id), 0) + 1 FROM purchases),
+        (SELECT last_value FROM purchases_seq)));
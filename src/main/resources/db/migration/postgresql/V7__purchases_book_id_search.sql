@@ -0,0 +1,12 @@
+-- Búsqueda de bookIsbn sin distinguir mayúsculas (PurchaseRepository.bookIdStatement):
+--  - prefijo, lower(book_id) LIKE 'x%': índice B-tree con text_pattern_ops, que compara byte a byte como
+--    COLLATE "C" y sirve LIKE con cualquier intercalación de la base de datos;
+--  - subcadena ("*x"), lower(book_id) LIKE '%x%': índice GIN de trigramas (pg_trgm, desde 3 caracteres).
+-- La igualdad de un ISBN completo sigue usando idx_purchases_book_id (book_id, id).
+-- En la tabla particionada los índices se crean en cada partición.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_purchases_book_id_prefix ON purchases (lower(book_id) text_pattern_ops);
+
+CREATE INDEX idx_purchases_book_id_trgm ON purchases USING gin (lower(book_id) gin_trgm_ops);
@@ -0,0 +1,26 @@
+-- Cada (día, dimensión, valor) de purchase_stats se reparte en varias filas (shard): las transacciones suman en
+-- una al azar (purchases.stats.shards) y las consultas suman todas. Así las compras simultáneas del mismo día y
+-- estado no se esperan unas a otras en una única fila.
+--
+-- Además se recalcula el resumen de los días que siguen en purchases, por si la base de datos ya tenía compras
+-- antes de que existiera purchase_stats. Los días archivados (sin compras en la tabla) conservan sus filas.
+-- El bloqueo SHARE espera a las escrituras de compras en curso e impide nuevas hasta el final de la migración,
+-- de modo que ningún incremento se cuenta dos veces ni se pierde.
+
+LOCK TABLE purchases IN SHARE MODE;
+
+ALTER TABLE purchase_stats ADD COLUMN shard integer NOT NULL DEFAULT 0;
+ALTER TABLE purchase_stats DROP CONSTRAINT purchase_stats_pkey;
+ALTER TABLE purchase_stats ADD PRIMARY KEY (stat_date, dimension, dim_key, shard);
+
+DELETE FROM purchase_stats WHERE stat_date IN (SELECT DISTINCT CAST(purchase_date AS date) FROM purchases);
+
+INSERT INTO purchase_stats (dimension, dim_key, stat_date, shard, purchases, quantity)
+SELECT 'BOOK', book_id, CAST(purchase_date AS date), 0, count(*), sum(quantity)
+  FROM purchases GROUP BY book_id, CAST(purchase_date AS date)
+UNION ALL
+SELECT 'BUYER', buyer, CAST(purchase_date AS date), 0, count(*), sum(quantity)
+  FROM purchases GROUP BY buyer, CAST(purchase_date AS date)
+UNION ALL
+SELECT 'STATUS', status, CAST(purchase_date AS date), 0, count(*), sum(quantity)
+  FROM purchases GROUP BY status, CAST(purchase_date AS date);
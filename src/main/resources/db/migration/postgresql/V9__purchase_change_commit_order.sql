@@ -0,0 +1,24 @@
+-- Las escrituras dejan de reservar su número de secuencia en purchase_change_seq, cuya fila mantenían bloqueada
+-- hasta confirmar y que ponía en fila a todas las escrituras de compras. Cada cambio toma al insertarse un id de
+-- la secuencia purchase_changes_id_seq, sin bloqueos, y queda con seq nulo. Una vez confirmado, PurchaseChangeFeed
+-- le asigna seq a continuación de last_seq (PurchaseChangeRepository.sequence): solo esa numeración bloquea
+-- purchase_change_seq. Los consumidores siguen leyendo seq > N, en orden de confirmación y sin huecos, y last_seq
+-- es la marca hasta la que todos los cambios están confirmados.
+
+CREATE SEQUENCE purchase_changes_id_seq;
+
+ALTER TABLE purchase_changes ADD COLUMN id bigint;
+UPDATE purchase_changes SET id = seq;
+SELECT setval('purchase_changes_id_seq', (SELECT COALESCE(max(id), 0) + 1 FROM purchase_changes), false);
+
+ALTER TABLE purchase_changes ALTER COLUMN id SET DEFAULT nextval('purchase_changes_id_seq');
+ALTER TABLE purchase_changes ALTER COLUMN id SET NOT NULL;
+ALTER SEQUENCE purchase_changes_id_seq OWNED BY purchase_changes.id;
+
+ALTER TABLE purchase_changes DROP CONSTRAINT purchase_changes_pkey;
+ALTER TABLE purchase_changes ADD PRIMARY KEY (id);
+ALTER TABLE purchase_changes ALTER COLUMN seq DROP NOT NULL;
+CREATE UNIQUE INDEX idx_purchase_changes_seq ON purchase_changes (seq);
+
+-- Cambios confirmados pendientes de numerar
+CREATE INDEX idx_purchase_changes_unsequenced ON purchase_changes (id) WHERE seq IS NULL;
@@ -0,0 +1,114 @@
+package com.unir.payments.client;
+
+import com.unir.payments.config.CacheConfig;
+import com.unir.payments.controller.model.BookResponseDTO;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+// Cliente no bloqueante del catálogo (perfil reactive). Comparte con BooksCatalogueClient la caché de libros,
+// el circuit breaker y el bulkhead, y traduce los errores a las mismas excepciones, así que la configuración
+// de resilience4j.*.instances.booksCatalogue y las métricas catalogue.requests valen para ambos.
+@Component
+@Profile("reactive")
+@Slf4j
+public class ReactiveBooksCatalogueClient {
+
+    private static final String BOOK_PATH = "/ms-books-catalogue/books/{bookId}";
+    private static final String GET_PAYLOAD = "{\"targetMethod\": \"GET\"}";
+
+    private final WebClient webClient;
+
+    private final Cache books;
+
+    private final CircuitBreakerOperator<BookResponseDTO> circuitBreaker;
+
+    private final BulkheadOperator<BookResponseDTO> bulkhead;
+
+    private final MeterRegistry meterRegistry;
+
+    public ReactiveBooksCatalogueClient(@Qualifier("catalogueWebClient") WebClient webClient, CacheManager cacheManager,
+                                        CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                                        MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.books = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+        this.circuitBreaker = CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(BooksCatalogueClient.CATALOGUE));
+        this.bulkhead = BulkheadOperator.of(bulkheadRegistry.bulkhead(BooksCatalogueClient.CATALOGUE));
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Emite el libro consultado, o termina vacío si el catálogo no lo conoce. Ambos resultados se cachean;
+    // los aciertos de caché no pasan por el circuit breaker ni por el bulkhead.
+    public Mono<BookResponseDTO> getBook(String bookId) {
+        Cache.ValueWrapper cached = books.get(bookId);
+        if (cached != null) {
+            return Mono.justOrEmpty((BookResponseDTO) cached.get());
+        }
+        return Mono.defer(() -> {
+                    log.info("Consultando disponibilidad del libro {}", bookId);
+                    return timed("getBook", webClient.post()
+                            .uri(BOOK_PATH, bookId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(GET_PAYLOAD)
+                            .retrieve()
+                            .onStatus(HttpStatusCode::isError, ReactiveBooksCatalogueClient::toException)
+                            .bodyToMono(BookResponseDTO.class)
+                            .onErrorMap(WebClientRequestException.class, e -> new ResourceAccessException(e.getMessage())));
+                })
+                .onErrorResume(HttpClientErrorException.NotFound.class, e -> Mono.empty())
+                .transformDeferred(bulkhead)
+                .transformDeferred(circuitBreaker)
+                .doOnSuccess(book -> books.put(bookId, book));
+    }
+
+    // Descarta la entrada cacheada del libro
+    public void invalidate(String bookId) {
+        books.evict(bookId);
+    }
+
+    private static Mono<? extends Throwable> toException(ClientResponse response) {
+        return response.bodyToMono(byte[].class)
+                .defaultIfEmpty(new byte[0])
+                .map(body -> response.statusCode().is4xxClientError()
+                        ? HttpClientErrorException.create(response.statusCode(), "", response.headers().asHttpHeaders(), body, null)
+                        : HttpServerErrorException.create(response.statusCode(), "", response.headers().asHttpHeaders(), body, null));
+    }
+
+    private <T> Mono<T> timed(String operation, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnSuccess(result -> stop(sample, operation, "SUCCESS"))
+                    .doOnError(e -> stop(sample, operation, e instanceof HttpStatusCodeException statusError
+                            ? (statusError.getStatusCode().is4xxClientError() ? "CLIENT_ERROR" : "SERVER_ERROR")
+                            : "ERROR"));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(Timer.builder("catalogue.requests")
+                .description("Latencia de las llamadas al catálogo de libros")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,73 @@
+package com.unir.payments.config;
+
+import io.netty.channel.ChannelOption;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+// Pila no bloqueante (perfil reactive): WebFlux sobre Netty, R2DBC y WebClient.
+// JPA sigue activo para las tareas programadas (outbox, reconciliación, idempotencia).
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    // Spring Boot no registra spring.datasource.* si existe un ConnectionFactory de R2DBC; se declaran aquí
+    // para que DataSourceConfig mantenga el DataSource de JPA y JdbcTemplate
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    // Con Tomcat en el classpath (pila MVC) Spring Boot lo elegiría también como servidor reactivo
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // El gestor de transacciones R2DBC no se registra como bean: junto al de JPA, @Transactional
+    // dejaría de encontrar un único TransactionManager por defecto
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    // Pool de conexiones de Reactor Netty con los mismos límites y tiempos que el del RestTemplate (catalogue.http.*)
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider catalogueConnectionProvider(CatalogueHttpProperties properties) {
+        return ConnectionProvider.builder("catalogue")
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireTimeout(properties.getConnectionRequestTimeout())
+                .maxIdleTime(properties.getIdleTimeout())
+                .maxLifeTime(properties.getTimeToLive())
+                .metrics(true)
+                .build();
+    }
+
+    // Se construye con el WebClient.Builder de Spring Boot para conservar la métrica http.client.requests
+    @Bean
+    public WebClient catalogueWebClient(WebClient.Builder builder, ConnectionProvider catalogueConnectionProvider,
+                                        CatalogueHttpProperties properties,
+                                        @Value("${gateway.url:http://localhost:8762}") String gatewayUrl) {
+        HttpClient httpClient = HttpClient.create(catalogueConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .responseTimeout(properties.getReadTimeout());
+        return builder
+                .baseUrl(gatewayUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
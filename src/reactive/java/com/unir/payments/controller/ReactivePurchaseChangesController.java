@@ -0,0 +1,90 @@
+package com.unir.payments.controller;
+
+import com.unir.payments.data.ReactivePurchaseChangeRepository;
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.service.PurchaseChangeFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Mismo registro de cambios que PurchaseChangesController sobre WebFlux (perfil reactive).
+// La documentación OpenAPI está en PurchaseChangesController.
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePurchaseChangesController {
+
+    private final PurchaseChangeFeed changeFeed;
+
+    private final ReactivePurchaseChangeRepository changeRepository;
+
+    @Value("${purchases.changes.batch-size:500}")
+    private int batchSize;
+
+    @Value("${purchases.changes.max-wait:30s}")
+    private Duration maxWait;
+
+    @Value("${purchases.changes.heartbeat:15s}")
+    private Duration heartbeat;
+
+    @GetMapping(value = "/purchases/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<PurchaseChange>>> getChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer wait) {
+
+        long from = since != null ? since : changeFeed.lastSeq();
+        int size = limit != null ? Math.max(1, Math.min(limit, batchSize)) : batchSize;
+        Duration timeout = wait != null ? Duration.ofSeconds(Math.max(0, Math.min(wait, maxWait.toSeconds()))) : maxWait;
+
+        return Mono.fromFuture(changeFeed.awaitAfter(from))
+                .timeout(timeout, Mono.just(from))
+                .then(read(from, size))
+                .map(changes -> ResponseEntity.ok()
+                        .header(PurchasesController.NEXT_CURSOR_HEADER,
+                                String.valueOf(changes.isEmpty() ? from : changes.getLast().seq()))
+                        .body(changes));
+    }
+
+    // Cada lote se lee cuando el cliente ha consumido el anterior (la demanda de repeat), nunca por adelantado
+    @GetMapping(value = "/purchases/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<PurchaseChange>> streamChanges(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(name = PurchaseChangesController.LAST_EVENT_ID_HEADER, required = false) Long lastEventId) {
+
+        AtomicLong cursor = new AtomicLong(lastEventId != null ? lastEventId : since != null ? since : changeFeed.lastSeq());
+        return Mono.defer(() -> read(cursor.get(), batchSize))
+                .flatMapMany(batch -> batch.isEmpty()
+                        ? Mono.fromFuture(changeFeed.awaitAfter(cursor.get()))
+                                .timeout(heartbeat, Mono.just(-1L))
+                                .flatMapMany(seq -> seq < 0
+                                        ? Flux.just(ServerSentEvent.<PurchaseChange>builder().comment("heartbeat").build())
+                                        : Flux.empty())
+                        : Flux.fromIterable(batch)
+                                .doOnNext(change -> cursor.set(change.seq()))
+                                .map(change -> ServerSentEvent.builder(change)
+                                        .id(String.valueOf(change.seq()))
+                                        .event(change.operation().name())
+                                        .build()))
+                .repeat();
+    }
+
+    private Mono<List<PurchaseChange>> read(long from, int size) {
+        return changeRepository.since(from, size)
+                .collectList()
+                .doOnNext(changes -> changeFeed.checkContinuity(from, changes));
+    }
+}
@@ -0,0 +1,194 @@
+package com.unir.payments.controller;
+
+import com.unir.payments.controller.model.CreatePurchaseRequest;
+import com.unir.payments.controller.model.PurchaseDto;
+import com.unir.payments.controller.model.PurchaseFilter;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseExportFormat;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.unir.payments.service.IdempotencyService;
+import com.unir.payments.service.ReactiveIdempotencyService;
+import com.unir.payments.service.PurchaseExportService;
+import com.unir.payments.service.ReactivePurchasesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Misma API que PurchasesController sobre WebFlux (perfil reactive). La documentación OpenAPI está en PurchasesController.
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactivePurchasesController {
+
+    private final ReactivePurchasesService service;
+
+    private final IdempotencyService idempotencyService;
+
+    private final ReactiveIdempotencyService reactiveIdempotencyService;
+
+    private final PurchaseExportService exportService;
+
+    @Value("${purchases.pagination.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${purchases.pagination.max-limit:1000}")
+    private int maxLimit;
+
+    @GetMapping(value = "/purchases", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<PurchaseView>>> getPurchases(
+            PurchaseFilter filter,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            ServerWebExchange exchange) {
+
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, maxLimit)) : defaultLimit;
+        PurchaseQuery query;
+        try {
+            query = filter.query()
+                    .after(after).limit(pageSize)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Consulta de compras inválida: {}", e.getMessage());
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return service.getPurchasesVersion()
+                .flatMap(version -> exchange.checkNotModified(PurchasesController.etag(version))
+                        ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).<List<PurchaseView>>build())
+                        : service.getPurchases(query).map(page -> {
+                            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                                    .cacheControl(CacheControl.noCache())
+                                    .eTag(PurchasesController.etag(page.version()));
+                            if (page.nextCursor() != null) {
+                                response.header(PurchasesController.NEXT_CURSOR_HEADER, page.nextCursor());
+                            }
+                            return response.body(page.purchases());
+                        }));
+    }
+
+    // Las filas se escriben según llegan de la base de datos, al ritmo que consume el cliente
+    @GetMapping(value = "/purchases", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<PurchaseView>> streamPurchases(
+            PurchaseFilter filter) {
+
+        PurchaseQuery query;
+        try {
+            query = filter.query().build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Consulta de compras inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.streamPurchases(query));
+    }
+
+    // La exportación es JDBC (COPY en PostgreSQL): se escribe en un OutputStream desde boundedElastic y
+    // outputStreamPublisher entrega los búferes a Netty a medida que el cliente los consume
+    @GetMapping("/purchases/export")
+    public ResponseEntity<Flux<DataBuffer>> exportPurchases(
+            @RequestParam(defaultValue = "csv") String format,
+            PurchaseFilter filter) {
+
+        PurchaseExportFormat exportFormat;
+        PurchaseQuery query;
+        try {
+            exportFormat = PurchaseExportFormat.of(format);
+            query = filter.query().build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Exportación de compras inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        Flux<DataBuffer> body = Flux.from(DataBufferUtils.outputStreamPublisher(
+                out -> {
+                    try {
+                        exportService.export(query, exportFormat, out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                DefaultDataBufferFactory.sharedInstance,
+                task -> Schedulers.boundedElastic().schedule(task)));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(exportService.fileName(exportFormat)).build().toString())
+                .body(body);
+    }
+
+    @GetMapping("/purchases/{purchaseId}")
+    public Mono<ResponseEntity<Purchase>> getPurchase(@PathVariable String purchaseId) {
+        log.info("Request received for purchase {}", purchaseId);
+        return service.getPurchase(purchaseId)
+                .map(PurchasesController::validated)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/purchases/{purchaseId}")
+    public Mono<ResponseEntity<Void>> deletePurchase(@PathVariable String purchaseId) {
+        return service.removePurchase(purchaseId)
+                .map(removed -> removed ? ResponseEntity.ok().<Void>build() : ResponseEntity.notFound().<Void>build());
+    }
+
+    // Con Idempotency-Key se usa el IdempotencyService compartido, que es bloqueante (JDBC):
+    // esas peticiones se atienden en el scheduler boundedElastic para no retener los hilos de Netty
+    @PostMapping("/purchases")
+    public Mono<ResponseEntity<?>> addPurchase(
+            @RequestHeader(name = PurchasesController.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody CreatePurchaseRequest request) {
+        if (idempotencyKey == null) {
+            return createPurchase(request).map(response -> response);
+        }
+        return Mono.fromCallable(() -> {
+                    IdempotencyService.StoredResponse response = idempotencyService.execute(
+                            idempotencyKey, request,
+                            () -> createPurchase(request).contextWrite(reactiveIdempotencyService.context()).block());
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status())
+                            .header(PurchasesController.IDEMPOTENT_REPLAYED_HEADER, String.valueOf(response.replayed()));
+                    return response.body() != null
+                            ? builder.contentType(MediaType.APPLICATION_JSON).body(response.body())
+                            : builder.build();
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ResponseEntity<Purchase>> createPurchase(CreatePurchaseRequest request) {
+        return service.createPurchase(request)
+                .map(purchase -> ResponseEntity.status(HttpStatus.CREATED).body(purchase))
+                .defaultIfEmpty(ResponseEntity.badRequest().build());
+    }
+
+    @PatchMapping("/purchases/{purchaseId}")
+    public Mono<ResponseEntity<Purchase>> patchPurchase(@PathVariable String purchaseId, @RequestBody String patchBody) {
+        return service.updatePurchase(purchaseId, patchBody)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.badRequest().build());
+    }
+
+    @PutMapping("/purchases/{purchaseId}")
+    public Mono<ResponseEntity<Purchase>> updatePurchase(@PathVariable String purchaseId, @RequestBody PurchaseDto body) {
+        return service.updatePurchase(purchaseId, body)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
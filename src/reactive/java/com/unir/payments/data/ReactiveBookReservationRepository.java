@@ -0,0 +1,99 @@
+package com.unir.payments.data;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+// Versión no bloqueante de BookReservationRepository; se ejecuta en la transacción reactiva de la compra
+@Repository
+@Profile("reactive")
+public class ReactiveBookReservationRepository {
+
+    private static final String CREATE_POSTGRESQL = """
+            INSERT INTO book_reservations (book_id, stock, reserved) VALUES (:bookId, :stock, 0)
+            ON CONFLICT (book_id) DO NOTHING""";
+
+    private static final String CREATE_STANDARD = """
+            MERGE INTO book_reservations t
+            USING (VALUES (CAST(:bookId AS VARCHAR(255)), CAST(:stock AS INTEGER))) AS s (book_id, stock)
+            ON t.book_id = s.book_id
+            WHEN NOT MATCHED THEN INSERT (book_id, stock, reserved) VALUES (s.book_id, s.stock, 0)""";
+
+    private static final String RESERVE = """
+            UPDATE book_reservations SET reserved = reserved + :units
+            WHERE book_id = :bookId AND stock - reserved >= :units""";
+
+    private static final String RELEASE = """
+            UPDATE book_reservations SET reserved = GREATEST(reserved - LEAST(:units, stock), 0)
+            WHERE book_id = :bookId""";
+
+    private static final String HOLD = """
+            UPDATE book_reservations SET reserved = reserved + LEAST(:units, stock)
+            WHERE book_id = :bookId""";
+
+    private static final String AVAILABLE_FOR_UPDATE = """
+            SELECT stock - reserved FROM book_reservations WHERE book_id = :bookId FOR UPDATE""";
+
+    private final DatabaseClient databaseClient;
+
+    private final String create;
+
+    public ReactiveBookReservationRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.create = DatabaseDriver.fromProductName(connectionFactory.getMetadata().getName()) == DatabaseDriver.POSTGRESQL
+                ? CREATE_POSTGRESQL : CREATE_STANDARD;
+    }
+
+    public Mono<Void> createIfAbsent(String bookId, int stock) {
+        return databaseClient.sql(create)
+                .bind("bookId", bookId)
+                .bind("stock", stock)
+                .then()
+                // MERGE no es atómico frente a otra instancia que inserta a la vez: la fila ya existe
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    // Emite true si se han reservado los ejemplares
+    public Mono<Boolean> reserve(String bookId, int units) {
+        return databaseClient.sql(RESERVE)
+                .bind("units", units)
+                .bind("bookId", bookId)
+                .fetch()
+                .rowsUpdated()
+                .map(updated -> updated == 1);
+    }
+
+    // Emite true si el libro estaba agotado y vuelve a tener ejemplares
+    public Mono<Boolean> release(String bookId, int units) {
+        return databaseClient.sql(AVAILABLE_FOR_UPDATE)
+                .bind("bookId", bookId)
+                .map(row -> row.get(0, Integer.class))
+                .one()
+                .flatMap(before -> databaseClient.sql(RELEASE)
+                        .bind("units", units)
+                        .bind("bookId", bookId)
+                        .then()
+                        .then(available(bookId))
+                        .map(after -> before <= 0 && after > 0))
+                .defaultIfEmpty(false);
+    }
+
+    public Mono<Void> hold(String bookId, int units) {
+        return databaseClient.sql(HOLD)
+                .bind("units", units)
+                .bind("bookId", bookId)
+                .then();
+    }
+
+    public Mono<Integer> available(String bookId) {
+        return databaseClient.sql("SELECT stock - reserved FROM book_reservations WHERE book_id = :bookId")
+                .bind("bookId", bookId)
+                .map(row -> row.get(0, Integer.class))
+                .one()
+                .defaultIfEmpty(0);
+    }
+}
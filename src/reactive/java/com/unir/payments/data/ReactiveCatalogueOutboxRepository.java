@@ -0,0 +1,37 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+// Inserta eventos en catalogue_outbox desde la transacción reactiva de la compra; los envía CatalogueOutboxDispatcher
+@Repository
+@Profile("reactive")
+public class ReactiveCatalogueOutboxRepository {
+
+    private final DatabaseClient databaseClient;
+
+    private final String insert;
+
+    public ReactiveCatalogueOutboxRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        String nextId = DatabaseDriver.fromProductName(connectionFactory.getMetadata().getName()) == DatabaseDriver.POSTGRESQL
+                ? "nextval('catalogue_outbox_seq')"
+                : "NEXT VALUE FOR catalogue_outbox_seq";
+        this.insert = "INSERT INTO catalogue_outbox (id, book_id, visible, created_at, attempts, next_attempt_at) VALUES ("
+                + nextId + ", :bookId, :visible, :createdAt, 0, :nextAttemptAt)";
+    }
+
+    public Mono<Void> save(CatalogueOutboxEvent event) {
+        return databaseClient.sql(insert)
+                .bind("bookId", event.getBookId())
+                .bind("visible", event.isVisible())
+                .bind("createdAt", event.getCreatedAt())
+                .bind("nextAttemptAt", event.getNextAttemptAt())
+                .then();
+    }
+}
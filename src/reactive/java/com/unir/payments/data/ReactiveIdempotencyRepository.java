@@ -0,0 +1,29 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.IdempotencyRecord;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+// Completa una Idempotency-Key desde la transacción reactiva de la compra (IdempotencyRepository.complete)
+@Repository
+@Profile("reactive")
+public class ReactiveIdempotencyRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveIdempotencyRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Void> complete(String key, int responseStatus, String responseBody) {
+        // El estado como literal: r2dbc-h2 enviaría el parámetro como CLOB, que H2 no convierte a su columna ENUM
+        return databaseClient.sql("UPDATE idempotency_keys SET status = '" + IdempotencyRecord.Status.COMPLETED.name()
+                        + "', response_status = :responseStatus, response_body = :responseBody WHERE idempotency_key = :key")
+                .bind("responseStatus", responseStatus)
+                .bind("responseBody", responseBody)
+                .bind("key", key)
+                .then();
+    }
+}
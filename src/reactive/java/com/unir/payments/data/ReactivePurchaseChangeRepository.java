@@ -0,0 +1,72 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.data.model.PurchaseView;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+// Versión no bloqueante de PurchaseChangeRepository; append se ejecuta en la transacción reactiva de la compra
+@Repository
+@Profile("reactive")
+public class ReactivePurchaseChangeRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactivePurchaseChangeRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    // Sin número de secuencia: lo asigna PurchaseChangeFeed al confirmar (PurchaseChangeRepository.sequence)
+    public Mono<Void> append(PurchaseChange.Operation operation, Purchase purchase) {
+        return databaseClient.sql("""
+                        INSERT INTO purchase_changes (purchase_id, operation, changed_at, book_id, purchase_date,
+                            quantity, buyer, status)
+                        VALUES (:id, :operation, :changedAt, :bookId, :purchaseDate, :quantity, :buyer, :status)""")
+                .bind("id", purchase.getId())
+                .bind("operation", operation.name())
+                .bind("changedAt", LocalDateTime.now())
+                .bind("bookId", purchase.getBookId())
+                .bind("purchaseDate", purchase.getPurchaseDate())
+                .bind("quantity", purchase.getQuantity())
+                .bind("buyer", purchase.getBuyer())
+                .bind("status", purchase.getStatus())
+                .then();
+    }
+
+    public Mono<Long> lastSeq() {
+        return databaseClient.sql("SELECT last_seq FROM purchase_change_seq WHERE id = 1")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Flux<PurchaseChange> since(long seq, int limit) {
+        return databaseClient.sql("""
+                        SELECT seq, operation, changed_at, purchase_id, book_id, purchase_date, quantity, buyer, status
+                        FROM purchase_changes WHERE seq > :seq ORDER BY seq FETCH FIRST :limit ROWS ONLY""")
+                .bind("seq", seq)
+                .bind("limit", limit)
+                .map(ReactivePurchaseChangeRepository::toChange)
+                .all();
+    }
+
+    private static PurchaseChange toChange(Readable row) {
+        return new PurchaseChange(
+                row.get("seq", Long.class),
+                PurchaseChange.Operation.valueOf(row.get("operation", String.class)),
+                row.get("changed_at", LocalDateTime.class),
+                new PurchaseView(
+                        row.get("purchase_id", Long.class),
+                        row.get("book_id", String.class),
+                        row.get("purchase_date", LocalDateTime.class),
+                        row.get("quantity", Integer.class),
+                        row.get("buyer", String.class),
+                        row.get("status", String.class)));
+    }
+}
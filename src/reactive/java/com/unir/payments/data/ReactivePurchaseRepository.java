@@ -0,0 +1,182 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchasePage;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseField;
+import com.unir.payments.data.utils.PurchaseQuery;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Acceso no bloqueante a la tabla purchases (perfil reactive), con las mismas consultas que PurchaseRepository
+@Repository
+@Profile("reactive")
+public class ReactivePurchaseRepository {
+
+    private static final String COLUMNS = "id, book_id, purchase_date, quantity, buyer, status, version, last_modified";
+
+    // Incremento de purchases_seq (allocationSize de Purchase)
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+
+    private final String nextId;
+
+    // Identificadores ya reservados en la secuencia y aún sin usar
+    private final Queue<Long> ids = new ConcurrentLinkedQueue<>();
+
+    public ReactivePurchaseRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.nextId = DatabaseDriver.fromProductName(connectionFactory.getMetadata().getName()) == DatabaseDriver.POSTGRESQL
+                ? "SELECT nextval('purchases_seq')"
+                : "SELECT NEXT VALUE FOR purchases_seq";
+    }
+
+    // Página de compras según la consulta, con el cursor de la siguiente si está completa
+    public Mono<PurchasePage> search(PurchaseQuery query) {
+        return rows(query)
+                .collectList()
+                .map(rows -> new PurchasePage(
+                        rows.stream().map(row -> toView(query, row)).toList(),
+                        rows.size() == query.getLimit() ? query.cursorOf(rows.getLast()::get) : null));
+    }
+
+    // Todas las compras que cumplen los filtros, según llegan de la base de datos
+    public Flux<PurchaseView> stream(PurchaseQuery query) {
+        return rows(query).map(row -> toView(query, row));
+    }
+
+    // Mismo SQL que genera PurchaseRepository: solo las columnas pedidas y las de la ordenación
+    private Flux<Map<PurchaseField, Object>> rows(PurchaseQuery query) {
+        PurchaseSql sql = PurchaseSql.of(query, false);
+        Set<PurchaseField> columns = query.columns();
+        return databaseClient.sql(sql.getSql())
+                .bindValues(sql.getParams())
+                .map(row -> {
+                    Map<PurchaseField, Object> values = new EnumMap<>(PurchaseField.class);
+                    columns.forEach(field -> values.put(field, row.get(field.getColumn(), field.getType())));
+                    return values;
+                })
+                .all();
+    }
+
+    public Mono<Purchase> getById(Long id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM purchases WHERE id = :id")
+                .bind("id", id)
+                .map(ReactivePurchaseRepository::toPurchase)
+                .one();
+    }
+
+    // Asigna el identificador de la secuencia e inserta la compra con la versión 0, como Hibernate
+    public Mono<Purchase> insert(Purchase purchase) {
+        return nextId()
+                .flatMap(id -> {
+                    purchase.setId(id);
+                    purchase.setVersion(0L);
+                    purchase.setLastModified(LocalDateTime.now());
+                    return databaseClient.sql("INSERT INTO purchases (" + COLUMNS
+                                    + ") VALUES (:id, :bookId, :purchaseDate, :quantity, :buyer, :status, :version, :lastModified)")
+                            .bindValues(values(purchase))
+                            .then();
+                })
+                .thenReturn(purchase);
+    }
+
+    // Igual que el optimizador pooled de Hibernate: cada valor V de la secuencia reserva los identificadores
+    // (V - 50, V], así que los bloques de esta instancia nunca coinciden con los de Hibernate ni con los de otras
+    private Mono<Long> nextId() {
+        Long id = ids.poll();
+        if (id != null) {
+            return Mono.just(id);
+        }
+        return databaseClient.sql(nextId)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(hi -> {
+                    // El primer valor de la secuencia es 1: no hay identificadores válidos por debajo
+                    long first = Math.max(1, hi - ALLOCATION_SIZE + 1);
+                    for (long next = first + 1; next <= hi; next++) {
+                        ids.add(next);
+                    }
+                    return first;
+                });
+    }
+
+    // Bloqueo optimista, como @Version en Hibernate: si otra escritura ha cambiado la versión no se actualiza
+    // ninguna fila (devuelve 0). Si se actualiza, la compra queda con la nueva versión y fecha
+    public Mono<Long> update(Purchase purchase) {
+        LocalDateTime lastModified = LocalDateTime.now();
+        Map<String, Object> values = new HashMap<>(values(purchase));
+        values.put("lastModified", lastModified);
+        return databaseClient.sql("""
+                        UPDATE purchases SET book_id = :bookId, purchase_date = :purchaseDate, quantity = :quantity,
+                            buyer = :buyer, status = :status, version = version + 1, last_modified = :lastModified
+                        WHERE id = :id AND version = :version""")
+                .bindValues(values)
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(updated -> {
+                    if (updated > 0) {
+                        purchase.setVersion(purchase.getVersion() + 1);
+                        purchase.setLastModified(lastModified);
+                    }
+                });
+    }
+
+    public Mono<Long> delete(Long id) {
+        return databaseClient.sql("DELETE FROM purchases WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Map<String, Object> values(Purchase purchase) {
+        return Map.of(
+                "id", purchase.getId(),
+                "bookId", purchase.getBookId(),
+                "purchaseDate", purchase.getPurchaseDate(),
+                "quantity", purchase.getQuantity(),
+                "buyer", purchase.getBuyer(),
+                "status", purchase.getStatus(),
+                "version", purchase.getVersion(),
+                "lastModified", purchase.getLastModified());
+    }
+
+    private static PurchaseView toView(PurchaseQuery query, Map<PurchaseField, Object> row) {
+        Set<PurchaseField> fields = query.getFields();
+        return new PurchaseView(
+                fields.contains(PurchaseField.ID) ? (Long) row.get(PurchaseField.ID) : null,
+                fields.contains(PurchaseField.BOOK_ID) ? (String) row.get(PurchaseField.BOOK_ID) : null,
+                fields.contains(PurchaseField.PURCHASE_DATE) ? (LocalDateTime) row.get(PurchaseField.PURCHASE_DATE) : null,
+                fields.contains(PurchaseField.QUANTITY) ? (Integer) row.get(PurchaseField.QUANTITY) : null,
+                fields.contains(PurchaseField.BUYER) ? (String) row.get(PurchaseField.BUYER) : null,
+                fields.contains(PurchaseField.STATUS) ? (String) row.get(PurchaseField.STATUS) : null);
+    }
+
+    private static Purchase toPurchase(Readable row) {
+        return Purchase.builder()
+                .id(row.get("id", Long.class))
+                .bookId(row.get("book_id", String.class))
+                .purchaseDate(row.get("purchase_date", LocalDateTime.class))
+                .quantity(row.get("quantity", Integer.class))
+                .buyer(row.get("buyer", String.class))
+                .status(row.get("status", String.class))
+                .version(row.get("version", Long.class))
+                .lastModified(row.get("last_modified", LocalDateTime.class))
+                .build();
+    }
+}
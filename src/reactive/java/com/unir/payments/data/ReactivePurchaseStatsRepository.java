@@ -0,0 +1,74 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.utils.PurchaseStatsDelta;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Versión no bloqueante de PurchaseStatsRepository.apply; se ejecuta en la transacción reactiva de la compra
+@Repository
+@Profile("reactive")
+public class ReactivePurchaseStatsRepository {
+
+    private static final String UPSERT_POSTGRESQL = """
+            INSERT INTO purchase_stats (dimension, dim_key, stat_date, shard, purchases, quantity)
+            VALUES (:dimension, :key, :date, :shard, :purchases, :quantity)
+            ON CONFLICT (stat_date, dimension, dim_key, shard) DO UPDATE
+            SET purchases = purchase_stats.purchases + EXCLUDED.purchases,
+                quantity = purchase_stats.quantity + EXCLUDED.quantity""";
+
+    private static final String UPSERT_STANDARD = """
+            MERGE INTO purchase_stats t
+            USING (VALUES (CAST(:dimension AS VARCHAR(20)), CAST(:key AS VARCHAR(255)), CAST(:date AS DATE),
+                           CAST(:shard AS INTEGER), CAST(:purchases AS BIGINT), CAST(:quantity AS BIGINT)))
+                AS s (dimension, dim_key, stat_date, shard, purchases, quantity)
+            ON t.dimension = s.dimension AND t.dim_key = s.dim_key AND t.stat_date = s.stat_date AND t.shard = s.shard
+            WHEN MATCHED THEN UPDATE SET purchases = t.purchases + s.purchases, quantity = t.quantity + s.quantity
+            WHEN NOT MATCHED THEN INSERT (dimension, dim_key, stat_date, shard, purchases, quantity)
+                VALUES (s.dimension, s.dim_key, s.stat_date, s.shard, s.purchases, s.quantity)""";
+
+    private final DatabaseClient databaseClient;
+
+    private final String upsert;
+
+    private final boolean postgresql;
+
+    private final int shards;
+
+    public ReactivePurchaseStatsRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory,
+                                           @Value("${purchases.stats.shards:16}") int shards) {
+        this.databaseClient = databaseClient;
+        this.postgresql = DatabaseDriver.fromProductName(connectionFactory.getMetadata().getName()) == DatabaseDriver.POSTGRESQL;
+        this.upsert = postgresql ? UPSERT_POSTGRESQL : UPSERT_STANDARD;
+        this.shards = Math.max(1, shards);
+    }
+
+    // Misma shard y mismo orden de filas que PurchaseStatsRepository.apply
+    public Mono<Void> apply(PurchaseStatsDelta delta) {
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        return Flux.fromIterable(delta.getChanges().entrySet())
+                .sort(Map.Entry.comparingByKey(PurchaseStatsRepository.KEY_ORDER))
+                .concatMap(change -> {
+                    Mono<Void> upsertRow = databaseClient.sql(upsert)
+                            .bind("dimension", change.getKey().getDimension().name())
+                            .bind("key", change.getKey().getKey())
+                            .bind("date", change.getKey().getDate())
+                            .bind("shard", shard)
+                            .bind("purchases", change.getValue()[0])
+                            .bind("quantity", change.getValue()[1])
+                            .then();
+                    // Inserción simultánea de la misma fila en H2 (ver PurchaseStatsRepository.apply)
+                    return postgresql ? upsertRow : upsertRow.onErrorResume(DataIntegrityViolationException.class, e -> upsertRow);
+                })
+                .then();
+    }
+}
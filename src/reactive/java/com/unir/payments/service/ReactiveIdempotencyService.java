@@ -0,0 +1,37 @@
+package com.unir.payments.service;
+
+import com.unir.payments.data.ReactiveIdempotencyRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+// Versión reactiva de IdempotencyService.complete. La petición en curso no viaja en el hilo sino en el contexto de
+// Reactor, que añade quien se suscribe con contextWrite(context())
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveIdempotencyService {
+
+    private final IdempotencyService idempotencyService;
+
+    private final ReactiveIdempotencyRepository repository;
+
+    public Mono<Void> complete(HttpStatus status, Object body) {
+        return Mono.deferContextual(context -> context.<IdempotencyService.Execution>getOrEmpty(IdempotencyService.Execution.class)
+                .map(execution -> {
+                    String json = idempotencyService.serialize(body);
+                    return repository.complete(execution.key(), status.value(), json)
+                            .doOnSuccess(done -> execution.completed(status.value(), json));
+                })
+                .orElse(Mono.empty()));
+    }
+
+    // Contexto de Reactor con la petición en curso en este hilo
+    public Context context() {
+        IdempotencyService.Execution execution = idempotencyService.current();
+        return execution != null ? Context.of(IdempotencyService.Execution.class, execution) : Context.empty();
+    }
+}
@@ -0,0 +1,314 @@
+package com.unir.payments.service;
+
+import com.unir.payments.client.CatalogueUnavailableException;
+import com.unir.payments.client.ReactiveBooksCatalogueClient;
+import com.unir.payments.controller.model.BookResponseDTO;
+import com.unir.payments.controller.model.CreatePurchaseRequest;
+import com.unir.payments.controller.model.PurchaseDto;
+import com.unir.payments.data.ReactiveBookReservationRepository;
+import com.unir.payments.data.ReactiveCatalogueOutboxRepository;
+import com.unir.payments.data.ReactivePurchaseChangeRepository;
+import com.unir.payments.data.ReactivePurchaseRepository;
+import com.unir.payments.data.ReactivePurchaseStatsRepository;
+import com.unir.payments.data.model.CatalogueOutboxEvent;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import com.unir.payments.data.model.PurchasePage;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.unir.payments.data.utils.PurchaseStatsDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+// Mismas reglas que PurchasesServiceImpl sobre la pila no bloqueante (perfil reactive).
+// Ninguna operación retiene un hilo mientras espera al catálogo o a la base de datos.
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactivePurchasesService {
+
+    private final ReactivePurchaseRepository repository;
+
+    private final ReactiveBookReservationRepository reservationRepository;
+
+    private final ReactiveCatalogueOutboxRepository outboxRepository;
+
+    private final ReactivePurchaseStatsRepository statsRepository;
+
+    private final ReactivePurchaseChangeRepository changeRepository;
+
+    private final PurchaseChangeFeed changeFeed;
+
+    private final ReactiveIdempotencyService idempotencyService;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ReactiveBooksCatalogueClient catalogueClient;
+
+    private final PurchaseMergePatcher mergePatcher;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final List<PurchaseCacheBroadcaster> cacheBroadcasters;
+
+    private final MeterRegistry meterRegistry;
+
+    // Comportamiento cuando el catálogo no responde: REJECT (503) o PENDING (se reconcilia después)
+    @Value("${catalogue.degraded-mode:REJECT}")
+    private CatalogueDegradedMode degradedMode;
+
+    // Como en PurchasesServiceImpl, la versión se lee antes que las compras: la página nunca es más antigua
+    public Mono<PurchasePage> getPurchases(PurchaseQuery query) {
+        return changeRepository.lastSeq()
+                .flatMap(version -> repository.search(query).map(page -> page.withVersion(version)));
+    }
+
+    // Como en PurchasesServiceImpl, la secuencia confirmada en la base de datos
+    public Mono<Long> getPurchasesVersion() {
+        return changeRepository.lastSeq();
+    }
+
+    public Flux<PurchaseView> streamPurchases(PurchaseQuery query) {
+        return repository.stream(query);
+    }
+
+    public Mono<Purchase> getPurchase(String purchaseId) {
+        return repository.getById(Long.valueOf(purchaseId));
+    }
+
+    public Mono<Boolean> removePurchase(String purchaseId) {
+        Long id = Long.valueOf(purchaseId);
+        return repository.getById(id)
+                .flatMap(purchase -> repository.delete(id)
+                        .then(statsRepository.apply(new PurchaseStatsDelta().subtract(purchase)))
+                        .then(adjustReservation(BookReservations.held(purchase), null))
+                        .then(recordChange(PurchaseChange.Operation.DELETED, purchase))
+                        .thenReturn(Boolean.TRUE))
+                .as(transactionalOperator::transactional)
+                .doOnNext(removed -> purchaseChanged(id))
+                .defaultIfEmpty(Boolean.FALSE);
+    }
+
+    // Registra la latencia del alta según su resultado: CONFIRMED, CANCELLED, PENDING, REJECTED (datos incorrectos) o ERROR.
+    // Termina vacío si los datos son incorrectos.
+    public Mono<Purchase> createPurchase(CreatePurchaseRequest request) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return create(request)
+                    .doOnSuccess(purchase -> stopCreate(sample, purchase != null ? purchase.getStatus() : "REJECTED"))
+                    .doOnError(e -> stopCreate(sample, "ERROR"));
+        });
+    }
+
+    private Mono<Purchase> create(CreatePurchaseRequest request) {
+        if (!isValid(request)) {
+            return Mono.empty();
+        }
+        Purchase purchase = Purchase.builder()
+                .bookId(request.getBookId())
+                .purchaseDate(request.getPurchaseDate() != null ? request.getPurchaseDate() : LocalDateTime.now())
+                .quantity(request.getQuantity())
+                .buyer(request.getBuyer())
+                .build();
+
+        // Los errores del catálogo (caído, circuito abierto o bulkhead lleno) pasan al modo degradado;
+        // los del registro de la compra se propagan
+        return catalogueClient.getBook(purchase.getBookId())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(book -> register(purchase, book.orElse(null)),
+                        e -> createDegraded(purchase, e),
+                        Mono::empty)
+                .next()
+                .doOnNext(saved -> countRegistered(saved.getStatus()));
+    }
+
+    private Mono<Purchase> register(Purchase purchase, BookResponseDTO book) {
+        String bookId = purchase.getBookId();
+        boolean visible = book != null && Boolean.TRUE.equals(book.getVisible());
+        if (book != null) {
+            log.info("Libro consultado: ID={}, visible={}", book.getBookId(), visible);
+        } else {
+            log.warn("No se encontró el libro con ID: {}", bookId);
+        }
+
+        if (!visible) {
+            purchase.setStatus("CANCELLED");
+            return insert(purchase)
+                    .as(transactionalOperator::transactional)
+                    .doOnNext(saved -> log.info("Compra registrada con status CANCELLED, libro no disponible."));
+        }
+
+        // La reserva de ejemplares decide el estado; si agota el libro, el evento del outbox va en la misma transacción
+        return reserve(bookId, book, purchase.getQuantity())
+                .flatMap(reservation -> {
+                    purchase.setStatus(reservation.isConfirmed() ? "CONFIRMED" : "CANCELLED");
+                    Mono<Void> hideBook = reservation == BookReservations.Reservation.SOLD_OUT
+                            ? outboxRepository.save(CatalogueOutboxEvent.hideBook(bookId))
+                            : Mono.empty();
+                    return insert(purchase).then(hideBook).thenReturn(reservation);
+                })
+                .as(transactionalOperator::transactional)
+                .map(reservation -> {
+                    if (reservation == BookReservations.Reservation.SOLD_OUT) {
+                        catalogueClient.invalidate(bookId);
+                    } else if (reservation == BookReservations.Reservation.REJECTED) {
+                        log.info("Compra registrada con status CANCELLED, sin ejemplares disponibles.");
+                    }
+                    return purchase;
+                });
+    }
+
+    // Mismo algoritmo que BookReservations.reserve. No hay lock por libro: la guarda es el UPDATE condicional.
+    private Mono<BookReservations.Reservation> reserve(String bookId, BookResponseDTO book, Integer quantity) {
+        return reservationRepository.createIfAbsent(bookId, BookReservations.stockOf(book))
+                .then(reservationRepository.reserve(bookId, BookReservations.unitsOf(book, quantity)))
+                .flatMap(reserved -> !reserved
+                        ? Mono.just(BookReservations.Reservation.REJECTED)
+                        : reservationRepository.available(bookId).map(available -> available > 0
+                                ? BookReservations.Reservation.RESERVED
+                                : BookReservations.Reservation.SOLD_OUT));
+    }
+
+    // Sin catálogo, según catalogue.degraded-mode: se rechaza la compra (503) o se registra como PENDING
+    private Mono<Purchase> createDegraded(Purchase purchase, Throwable cause) {
+        log.warn("Catálogo no disponible al registrar la compra del libro {}: {}", purchase.getBookId(), cause.getMessage());
+        if (degradedMode == CatalogueDegradedMode.REJECT) {
+            return Mono.error(new CatalogueUnavailableException(cause));
+        }
+        purchase.setStatus("PENDING");
+        return insert(purchase).as(transactionalOperator::transactional);
+    }
+
+    // Como en PurchasesServiceImpl, la Idempotency-Key de la petición se completa en la misma transacción
+    private Mono<Purchase> insert(Purchase purchase) {
+        return repository.insert(purchase)
+                .flatMap(saved -> statsRepository.apply(new PurchaseStatsDelta().add(saved))
+                        .then(idempotencyService.complete(HttpStatus.CREATED, saved))
+                        .then(recordChange(PurchaseChange.Operation.CREATED, saved)));
+    }
+
+    // Termina vacío si la compra no existe o el parche no es válido
+    public Mono<Purchase> updatePurchase(String purchaseId, String patch) {
+        Long id = Long.valueOf(purchaseId);
+        return repository.getById(id)
+                .flatMap(purchase -> {
+                    PurchaseStatsDelta delta = new PurchaseStatsDelta().subtract(purchase);
+                    BookReservations.Held held = BookReservations.held(purchase);
+                    try {
+                        if (!mergePatcher.apply(purchase, patch)) {
+                            return Mono.just(purchase);
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        log.error("Error updating purchase {}: {}", purchaseId, e.getMessage());
+                        return Mono.empty();
+                    }
+                    return update(purchase, delta, held);
+                })
+                .as(transactionalOperator::transactional)
+                .doOnNext(purchase -> purchaseChanged(id));
+    }
+
+    public Mono<Purchase> updatePurchase(String purchaseId, PurchaseDto updateRequest) {
+        return repository.getById(Long.valueOf(purchaseId))
+                .flatMap(purchase -> {
+                    PurchaseStatsDelta delta = new PurchaseStatsDelta().subtract(purchase);
+                    BookReservations.Held held = BookReservations.held(purchase);
+                    purchase.update(updateRequest);
+                    return update(purchase, delta, held);
+                })
+                .as(transactionalOperator::transactional)
+                .doOnNext(purchase -> purchaseChanged(purchase.getId()));
+    }
+
+    private Mono<Purchase> update(Purchase purchase, PurchaseStatsDelta delta, BookReservations.Held held) {
+        return repository.update(purchase)
+                .flatMap(updated -> updated > 0
+                        ? Mono.<Void>empty()
+                        : Mono.<Void>error(new PurchaseConflictException(String.valueOf(purchase.getId()), null)))
+                .then(statsRepository.apply(delta.add(purchase)))
+                .then(adjustReservation(held, BookReservations.held(purchase)))
+                .then(recordChange(PurchaseChange.Operation.UPDATED, purchase));
+    }
+
+    // Mismo ajuste que BookReservations.adjust; si el libro vuelve a tener ejemplares, se muestra en el catálogo
+    private Mono<Void> adjustReservation(BookReservations.Held before, BookReservations.Held after) {
+        if (Objects.equals(before, after)) {
+            return Mono.empty();
+        }
+        return (before != null ? reservationRepository.release(before.bookId(), before.units()) : Mono.just(false))
+                .flatMap(restored -> (after != null ? reservationRepository.hold(after.bookId(), after.units()) : Mono.<Void>empty())
+                        .then(restored && after != null && after.bookId().equals(before.bookId())
+                                ? reservationRepository.available(before.bookId()).map(available -> available > 0)
+                                : Mono.just(restored)))
+                .flatMap(restored -> restored
+                        ? outboxRepository.save(CatalogueOutboxEvent.showBook(before.bookId()))
+                        : Mono.empty());
+    }
+
+    // Igual que PurchaseChangeFeed.record: el cambio se registra en la transacción y, al confirmarse, se numera
+    // y se despierta a los consumidores de esta instancia. La numeración es JDBC: se hace en boundedElastic
+    private Mono<Purchase> recordChange(PurchaseChange.Operation operation, Purchase purchase) {
+        return changeRepository.append(operation, purchase)
+                .then(TransactionSynchronizationManager.forCurrentTransaction())
+                .doOnNext(synchronization -> synchronization.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCommit() {
+                        return Mono.fromRunnable(changeFeed::committed).subscribeOn(Schedulers.boundedElastic()).then();
+                    }
+                }))
+                .thenReturn(purchase);
+    }
+
+    // Las escrituras por R2DBC no pasan por Hibernate: se descarta la compra de la caché de segundo nivel
+    // local y se avisa a las demás réplicas, igual que hace PurchaseCacheListener tras confirmar
+    private void purchaseChanged(Long id) {
+        entityManagerFactory.getCache().evict(Purchase.class, id);
+        cacheBroadcasters.forEach(broadcaster -> broadcaster.purchaseChanged(id));
+    }
+
+    private void stopCreate(Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("purchases.create")
+                .description("Latencia del alta de una compra")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private void countRegistered(String status) {
+        Counter.builder("purchases.registered")
+                .description("Compras registradas por estado")
+                .tag("status", status)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private boolean isValid(CreatePurchaseRequest request) {
+        return request != null
+                && StringUtils.hasText(request.getBookId())
+                && request.getQuantity() != null
+                && StringUtils.hasText(request.getBuyer())
+                && StringUtils.hasText(request.getStatus());
+    }
+}
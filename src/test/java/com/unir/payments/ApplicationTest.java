@@ -0,0 +1,35 @@
+package com.unir.payments;
+
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+// Aplicación completa sobre H2 con las migraciones de Flyway, frente a CatalogueStub y sin Eureka. Las clases que la
+// extienden comparten el contexto y la base de datos: cada prueba usa sus propios libros y compradores
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:application_test;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.sql.init.mode=never",
+        "eureka.client.enabled=false",
+        "purchases.stream.buffer-size=4",
+        "purchases.stream.stall-timeout=500ms",
+        "purchases.batch.chunk-size=3",
+        "purchases.reservations.sync-token=" + ApplicationTest.SYNC_TOKEN,
+        "purchases.cache.invalidation.token=" + ApplicationTest.CACHE_TOKEN})
+@AutoConfigureMockMvc
+public abstract class ApplicationTest {
+
+    protected static final String SYNC_TOKEN = "reservations-test-token";
+
+    protected static final String CACHE_TOKEN = "cache-test-token";
+
+    protected static final CatalogueStub CATALOGUE = new CatalogueStub();
+
+    @DynamicPropertySource
+    static void catalogue(DynamicPropertyRegistry registry) {
+        registry.add("gateway.url", CATALOGUE::getUrl);
+    }
+}
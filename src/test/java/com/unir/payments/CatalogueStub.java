@@ -0,0 +1,119 @@
+package com.unir.payments;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Catálogo de libros simulado detrás del Gateway: cada prueba registra sus libros (visibilidad y stock) y
+// consulta cuántas veces se ha pedido cada uno y cuáles están ocultos. Un libro no registrado responde 404
+public class CatalogueStub implements AutoCloseable {
+
+    private static final String BOOK_PATH = "/ms-books-catalogue/books/";
+
+    private final HttpServer server;
+
+    private final Map<String, String> books = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+    private final Set<String> hidden = ConcurrentHashMap.newKeySet();
+
+    // Libros cuya consulta responde 500
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+    // Espera antes de responder a cada consulta
+    private volatile long latencyMillis;
+
+    public CatalogueStub() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.createContext(BOOK_PATH, this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // stock null: el catálogo no lo envía (ejemplar único)
+    public void book(String isbn, boolean visible, Integer stock) {
+        books.put(isbn, "{\"bookId\": 1, \"isbn\": \"" + isbn + "\", \"visible\": " + visible
+                + (stock != null ? ", \"stock\": " + stock : "") + "}");
+    }
+
+    public void setFailing(String isbn, boolean failing) {
+        if (failing) {
+            this.failing.add(isbn);
+        } else {
+            this.failing.remove(isbn);
+        }
+    }
+
+    public int lookups(String isbn) {
+        AtomicInteger count = lookups.get(isbn);
+        return count != null ? count.get() : 0;
+    }
+
+    public boolean isHidden(String isbn) {
+        return hidden.contains(isbn);
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    // El Gateway recibe siempre un POST con el método destino en el cuerpo (BooksCatalogueClient)
+    private void handle(HttpExchange exchange) throws IOException {
+        String isbn = exchange.getRequestURI().getPath().substring(BOOK_PATH.length());
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (request.contains("\"PATCH\"")) {
+            if (request.contains("\"visible\": true")) {
+                hidden.remove(isbn);
+            } else {
+                hidden.add(isbn);
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        lookups.computeIfAbsent(isbn, key -> new AtomicInteger()).incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String book = books.get(isbn);
+        if (book == null || failing.contains(isbn)) {
+            exchange.sendResponseHeaders(book == null ? 404 : 500, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = book.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
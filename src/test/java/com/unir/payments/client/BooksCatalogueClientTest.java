@@ -0,0 +1,288 @@
+package com.unir.payments.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.unir.payments.config.CatalogueHttpProperties;
+import com.unir.payments.config.RestTemplateConfig;
+import com.unir.payments.controller.model.BookResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withResourceNotFound;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+// Cliente del catálogo con el RestTemplate de RestTemplateConfig: respuestas del Gateway con MockRestServiceServer,
+// y timeouts y pool contra un catálogo simulado en un puerto local (MockRestServiceServer no abre conexiones)
+class BooksCatalogueClientTest {
+
+    private static final String ISBN = "9780307389732";
+
+    private static final String BOOK = "{\"bookId\": 1, \"isbn\": \"" + ISBN + "\", \"visible\": true, \"stock\": 3}";
+
+    private final RestTemplateConfig config = new RestTemplateConfig();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CatalogueHttpProperties properties = new CatalogueHttpProperties();
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private CloseableHttpClient httpClient;
+
+    private HttpServer catalogue;
+
+    private volatile HttpHandler handler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setReadTimeout(Duration.ofMillis(300));
+        properties.setConnectionRequestTimeout(Duration.ofMillis(200));
+        properties.setMaxConnectionsPerRoute(1);
+
+        catalogue = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        catalogue.createContext("/", exchange -> handler.handle(exchange));
+        catalogue.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        catalogue.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+            connectionManager.close();
+        }
+        catalogue.stop(0);
+    }
+
+    @Test
+    void getBookReturnsTheCatalogueBook() {
+        BooksCatalogueClient client = client(mockedRestTemplate(server -> server
+                .expect(requestTo("http://gateway/ms-books-catalogue/books/" + ISBN))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().json("{\"targetMethod\": \"GET\"}"))
+                .andRespond(withSuccess(BOOK, MediaType.APPLICATION_JSON))));
+
+        BookResponseDTO book = client.getBook(ISBN);
+
+        assertThat(book.getIsbn()).isEqualTo(ISBN);
+        assertThat(book.getStock()).isEqualTo(3);
+        assertThat(outcomes()).containsExactly("SUCCESS");
+    }
+
+    // 404: el catálogo no conoce el libro, es una respuesta válida (se cachea y no abre el circuito)
+    @Test
+    void notFoundMeansUnknownBook() {
+        BooksCatalogueClient client = client(mockedRestTemplate(server -> server
+                .expect(requestTo("http://gateway/ms-books-catalogue/books/" + ISBN))
+                .andRespond(withResourceNotFound())));
+
+        assertThat(client.getBook(ISBN)).isNull();
+        assertThat(outcomes()).containsExactly("CLIENT_ERROR");
+    }
+
+    // Los demás 4xx no se confunden con un libro inexistente, pero tampoco cuentan como fallo del catálogo
+    @Test
+    void otherClientErrorsArePropagated() {
+        BooksCatalogueClient client = client(mockedRestTemplate(server -> server
+                .expect(requestTo("http://gateway/ms-books-catalogue/books/" + ISBN))
+                .andRespond(withStatus(HttpStatus.BAD_REQUEST))));
+
+        assertThatThrownBy(() -> client.getBook(ISBN)).isInstanceOf(HttpClientErrorException.BadRequest.class);
+        assertThat(outcomes()).containsExactly("CLIENT_ERROR");
+    }
+
+    // 5xx: HttpServerErrorException, que el circuit breaker registra como fallo (resilience4j.*.record-exceptions)
+    @Test
+    void serverErrorsArePropagated() {
+        BooksCatalogueClient client = client(mockedRestTemplate(server -> {
+            server.expect(requestTo("http://gateway/ms-books-catalogue/books/" + ISBN))
+                    .andRespond(withServerError());
+            server.expect(requestTo("http://gateway/ms-books-catalogue/books/" + ISBN))
+                    .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        }));
+
+        assertThatThrownBy(() -> client.getBook(ISBN)).isInstanceOf(HttpServerErrorException.InternalServerError.class);
+        assertThatThrownBy(() -> client.getBook(ISBN)).isInstanceOf(HttpServerErrorException.ServiceUnavailable.class);
+        assertThat(outcomes()).containsExactly("SERVER_ERROR", "SERVER_ERROR");
+    }
+
+    @Test
+    void hideBookSendsThePatchThroughTheGateway() {
+        BooksCatalogueClient client = client(mockedRestTemplate(server -> server
+                .expect(requestTo("http://gateway/ms-books-catalogue/books/" + ISBN))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().json("{\"targetMethod\": \"PATCH\", \"body\": {\"visible\": false}}"))
+                .andRespond(withSuccess())));
+
+        client.hideBook(ISBN);
+
+        assertThat(outcomes()).containsExactly("SUCCESS");
+    }
+
+    // Un catálogo que no responde corta la llamada en read-timeout, no en el timeout del sistema operativo
+    @Test
+    void slowCatalogueTimesOut() {
+        CountDownLatch release = new CountDownLatch(1);
+        handler = exchange -> {
+            await(release);
+            respond(exchange, 200, BOOK);
+        };
+        BooksCatalogueClient client = pooledClient();
+
+        long start = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> client.getBook(ISBN))
+                    .isInstanceOf(ResourceAccessException.class)
+                    .hasRootCauseInstanceOf(SocketTimeoutException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(outcomes()).containsExactly("ERROR");
+    }
+
+    // Con el pool agotado la petición espera como máximo connection-request-timeout, sin abrir más conexiones
+    @Test
+    void exhaustedPoolFailsFast() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        properties.setReadTimeout(Duration.ofSeconds(5));
+        handler = exchange -> {
+            received.countDown();
+            await(release);
+            respond(exchange, 200, BOOK);
+        };
+        BooksCatalogueClient client = pooledClient();
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<BookResponseDTO> first = executor.submit(() -> client.getBook(ISBN));
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(connectionManager.getTotalStats().getLeased()).isEqualTo(1);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> client.getBook(ISBN))
+                    .isInstanceOf(ResourceAccessException.class)
+                    .hasRootCauseInstanceOf(ConnectionRequestTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS).getIsbn()).isEqualTo(ISBN);
+        }
+    }
+
+    // Las llamadas sucesivas reutilizan la conexión del pool (keep-alive) en lugar de abrir una por petición
+    @Test
+    void connectionsAreReused() {
+        Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+        handler = exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            if (exchange.getRequestURI().getPath().endsWith("/missing")) {
+                respond(exchange, 404, "{}");
+            } else {
+                respond(exchange, 200, BOOK);
+            }
+        };
+        BooksCatalogueClient client = pooledClient();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(client.getBook(ISBN)).isNotNull();
+        }
+        assertThat(client.getBook("missing")).isNull();
+
+        assertThat(clientPorts).hasSize(1);
+        assertThat(connectionManager.getTotalStats().getAvailable()).isEqualTo(1);
+        assertThat(connectionManager.getTotalStats().getLeased()).isZero();
+    }
+
+    private BooksCatalogueClient pooledClient() {
+        try {
+            connectionManager = config.catalogueConnectionManager(properties);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        httpClient = config.catalogueHttpClient(connectionManager, properties);
+        RestTemplate restTemplate = config.restTemplate(
+                new StaticListableBeanFactory().getBeanProvider(RestTemplateBuilder.class), httpClient);
+        BooksCatalogueClient client = client(restTemplate);
+        ReflectionTestUtils.setField(client, "gatewayUrl", "http://localhost:" + catalogue.getAddress().getPort());
+        return client;
+    }
+
+    private RestTemplate mockedRestTemplate(Consumer<MockRestServiceServer> expectations) {
+        RestTemplate restTemplate = new RestTemplate();
+        expectations.accept(MockRestServiceServer.bindTo(restTemplate).build());
+        return restTemplate;
+    }
+
+    private BooksCatalogueClient client(RestTemplate restTemplate) {
+        BooksCatalogueClient client = new BooksCatalogueClient(restTemplate, meterRegistry);
+        ReflectionTestUtils.setField(client, "gatewayUrl", "http://gateway");
+        return client;
+    }
+
+    private List<String> outcomes() {
+        return meterRegistry.find("catalogue.requests").timers().stream()
+                .flatMap(timer -> Stream.generate(() -> timer.getId().getTag("outcome"))
+                        .limit(timer.count()))
+                .toList();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.unir.payments.controller;
+
+import com.unir.payments.ApplicationTest;
+import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.service.DiscoveryPurchaseCacheBroadcaster;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryClient;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryProperties;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Caché de segundo nivel de Purchase: las escrituras la mantienen al día, el borrado la descarta y el endpoint
+// interno entre réplicas solo la invalida con el token configurado (cache-test-token en ApplicationTest)
+class InternalCacheControllerTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PurchaseRepository repository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void saveRefreshesAndDeleteEvictsTheCachedPurchase() throws Exception {
+        String isbn = "9791000000400";
+        CATALOGUE.book(isbn, true, 10);
+        Long id = save(isbn, "cache-write@example.com").getId();
+        entityManagerFactory.getCache().evict(Purchase.class, id);
+
+        mockMvc.perform(get("/purchases/{id}", id)).andExpect(status().isOk());
+        assertThat(entityManagerFactory.getCache().contains(Purchase.class, id)).isTrue();
+
+        mockMvc.perform(put("/purchases/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookId\": \"" + isbn + "\", \"quantity\": 3, \"buyer\": \"cache-write@example.com\","
+                                + " \"status\": \"COMPLETED\", \"purchaseDate\": \"2025-02-07T10:30:00\"}"))
+                .andExpect(status().isOk());
+        // La lectura siguiente sale de la caché, ya con la versión guardada
+        long hits = cacheHits();
+        mockMvc.perform(get("/purchases/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(3))
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+        assertThat(cacheHits()).isEqualTo(hits + 1);
+
+        // Tras el borrado la caché ya no sirve la compra: la lectura va a la base de datos y no la encuentra
+        mockMvc.perform(delete("/purchases/{id}", id)).andExpect(status().isOk());
+        hits = cacheHits();
+        mockMvc.perform(get("/purchases/{id}", id)).andExpect(status().isNotFound());
+        assertThat(cacheHits()).isEqualTo(hits);
+    }
+
+    @Test
+    void internalEvictionRequiresTheToken() throws Exception {
+        Long id = save("9791000000417", "cache-token@example.com").getId();
+        mockMvc.perform(get("/purchases/{id}", id)).andExpect(status().isOk());
+        Cache cache = entityManagerFactory.getCache();
+
+        mockMvc.perform(delete(InternalCacheController.PURCHASE_CACHE_PATH, id)).andExpect(status().isForbidden());
+        mockMvc.perform(delete(InternalCacheController.PURCHASE_CACHE_PATH, id)
+                        .header(InternalCacheController.TOKEN_HEADER, CACHE_TOKEN + "x"))
+                .andExpect(status().isForbidden());
+        assertThat(cache.contains(Purchase.class, id)).isTrue();
+
+        mockMvc.perform(delete(InternalCacheController.PURCHASE_CACHE_PATH, id)
+                        .header(InternalCacheController.TOKEN_HEADER, CACHE_TOKEN))
+                .andExpect(status().isNoContent());
+        assertThat(cache.contains(Purchase.class, id)).isFalse();
+    }
+
+    // En modo discovery las réplicas se llaman entre sí: sin token el endpoint quedaría cerrado o abierto a cualquiera
+    @Test
+    void discoveryModeRequiresTheToken() {
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withInitializer(context -> context.getBeanFactory()
+                        .setConversionService(ApplicationConversionService.getSharedInstance()))
+                .withBean(DiscoveryClient.class, () -> new SimpleDiscoveryClient(new SimpleDiscoveryProperties()))
+                .withUserConfiguration(DiscoveryPurchaseCacheBroadcaster.class)
+                .withPropertyValues("spring.application.name=ms-books-payments", "purchases.cache.invalidation.mode=discovery");
+
+        runner.run(context -> assertThat(context).hasFailed()
+                .getFailure().rootCause().hasMessageContaining("purchases.cache.invalidation.token"));
+        runner.withPropertyValues("purchases.cache.invalidation.token=" + CACHE_TOKEN)
+                .run(context -> assertThat(context).hasNotFailed().hasSingleBean(DiscoveryPurchaseCacheBroadcaster.class));
+    }
+
+    private long cacheHits() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+                .getDomainDataRegionStatistics(Purchase.CACHE_REGION).getHitCount();
+    }
+
+    private Purchase save(String isbn, String buyer) {
+        return repository.save(Purchase.builder()
+                .bookId(isbn)
+                .purchaseDate(LocalDateTime.of(2025, 2, 7, 10, 30))
+                .quantity(1)
+                .buyer(buyer)
+                .status("PENDING")
+                .build());
+    }
+}
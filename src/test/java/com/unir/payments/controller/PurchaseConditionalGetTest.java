@@ -0,0 +1,98 @@
+package com.unir.payments.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.ApplicationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Peticiones condicionales de GET /purchases y GET /purchases/{purchaseId}: 304 mientras nada cambia y 200 con otro
+// ETag tras modificar la compra
+class PurchaseConditionalGetTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void unchangedPurchaseIsNotModified() throws Exception {
+        long purchaseId = purchase("conditional-item@example.com");
+        MockHttpServletResponse first = mockMvc.perform(get("/purchases/" + purchaseId)).andReturn().getResponse();
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        String lastModified = first.getHeader(HttpHeaders.LAST_MODIFIED);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(etag).startsWith("W/\"");
+        assertThat(lastModified).isNotNull();
+
+        MockHttpServletResponse byEtag = mockMvc.perform(get("/purchases/" + purchaseId)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().getResponse();
+        assertThat(byEtag.getStatus()).isEqualTo(304);
+        assertThat(byEtag.getContentAsString()).isEmpty();
+        assertThat(mockMvc.perform(get("/purchases/" + purchaseId)
+                .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified)).andReturn().getResponse().getStatus()).isEqualTo(304);
+
+        patchQuantity(purchaseId);
+
+        MockHttpServletResponse changed = mockMvc.perform(get("/purchases/" + purchaseId)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().getResponse();
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+        assertThat(objectMapper.readTree(changed.getContentAsString()).get("quantity").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void unchangedCollectionIsNotModified() throws Exception {
+        long purchaseId = purchase("conditional-collection@example.com");
+        MockHttpServletResponse first = search(null);
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(etag).startsWith("W/\"");
+
+        MockHttpServletResponse unchanged = search(etag);
+        assertThat(unchanged.getStatus()).isEqualTo(304);
+        assertThat(unchanged.getContentAsString()).isEmpty();
+
+        patchQuantity(purchaseId);
+
+        MockHttpServletResponse changed = search(etag);
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+        assertThat(objectMapper.readTree(changed.getContentAsString()).get(0).get("quantity").asInt()).isEqualTo(2);
+    }
+
+    private MockHttpServletResponse search(String ifNoneMatch) throws Exception {
+        MockHttpServletRequestBuilder request = get("/purchases").param("buyer", "conditional-collection@example.com");
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private long purchase(String buyer) throws Exception {
+        String isbn = "9791000000066";
+        CATALOGUE.book(isbn, true, 100);
+        String body = mockMvc.perform(post("/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookId\": \"" + isbn + "\", \"quantity\": 1, \"buyer\": \"" + buyer + "\", \"status\": \"PENDING\"}"))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private void patchQuantity(long purchaseId) throws Exception {
+        assertThat(mockMvc.perform(patch("/purchases/" + purchaseId)
+                        .contentType("application/merge-patch+json")
+                        .content("{\"quantity\": 2}"))
+                .andReturn().getResponse().getStatus()).isEqualTo(200);
+    }
+}
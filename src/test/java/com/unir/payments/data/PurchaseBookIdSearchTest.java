@@ -0,0 +1,198 @@
+package com.unir.payments.data;
+
+import com.unir.payments.data.utils.PurchaseQuery;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.postgresql.core.BaseConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Filtro bookIsbn (PurchaseRepository.bookIdStatement) con el SQL de PurchaseSql: resultados y planes (EXPLAIN)
+// sobre el esquema de las migraciones de Flyway
+class PurchaseBookIdSearchTest {
+
+    private static final List<String> BOOK_IDS = List.of(
+            "9780307389732", "9780307474728", "9788420674278", "080442957X", "080442957x", "84%_\\0001", "84!'x");
+
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    class H2 {
+
+        private SingleConnectionDataSource dataSource;
+
+        private NamedParameterJdbcTemplate jdbcTemplate;
+
+        @BeforeAll
+        void migrate() {
+            dataSource = new SingleConnectionDataSource("jdbc:h2:mem:book_id_search;DB_CLOSE_DELAY=-1", "sa", "", true);
+            jdbcTemplate = migrateAndLoad(dataSource, "classpath:db/migration/h2");
+        }
+
+        @AfterAll
+        void close() {
+            dataSource.destroy();
+        }
+
+        @Test
+        void fullIsbnIsAnIndexedEquality() {
+            assertThat(search(jdbcTemplate, "9780307389732")).containsExactly("9780307389732");
+            assertThat(explain(jdbcTemplate, "9780307389732")).contains("IDX_PURCHASES_BOOK_ID");
+        }
+
+        @Test
+        void partialIsbnIsACaseInsensitivePrefix() {
+            assertThat(search(jdbcTemplate, "978030")).containsExactly("9780307389732", "9780307474728");
+            assertThat(search(jdbcTemplate, "080442957X")).containsExactly("080442957X", "080442957x");
+            assertThat(search(jdbcTemplate, "0307")).isEmpty();
+        }
+
+        @Test
+        void leadingAsteriskSearchesASubstring() {
+            assertThat(search(jdbcTemplate, "*0307")).containsExactly("9780307389732", "9780307474728");
+            assertThat(search(jdbcTemplate, "*957x")).containsExactly("080442957X", "080442957x");
+        }
+
+        @Test
+        void wildcardsAreLiteral() {
+            assertThat(search(jdbcTemplate, "84%")).containsExactly("84%_\\0001");
+            assertThat(search(jdbcTemplate, "*%_\\")).containsExactly("84%_\\0001");
+            assertThat(search(jdbcTemplate, "*_")).containsExactly("84%_\\0001");
+            assertThat(search(jdbcTemplate, "*!'")).containsExactly("84!'x");
+        }
+    }
+
+    // Necesita un servidor PostgreSQL con permiso para crear bases de datos, p. ej.
+    // PURCHASES_TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/catalogue. La base de datos de la prueba usa
+    // una intercalación ICU (en-US), con la que un índice B-tree normal de book_id no sirve LIKE 'prefijo%'
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @EnabledIfEnvironmentVariable(named = "PURCHASES_TEST_POSTGRES_URL", matches = ".+")
+    class Postgres {
+
+        private final String database = "purchases_book_id_search_" + System.nanoTime();
+
+        private SingleConnectionDataSource admin;
+
+        private SingleConnectionDataSource dataSource;
+
+        private NamedParameterJdbcTemplate jdbcTemplate;
+
+        @BeforeAll
+        void migrate() {
+            String url = System.getenv("PURCHASES_TEST_POSTGRES_URL");
+            String username = Objects.requireNonNullElse(System.getenv("PURCHASES_TEST_POSTGRES_USERNAME"), "books");
+            String password = Objects.requireNonNullElse(System.getenv("PURCHASES_TEST_POSTGRES_PASSWORD"), "books123");
+            admin = new SingleConnectionDataSource(url, username, password, true);
+            new JdbcTemplate(admin).execute("CREATE DATABASE " + database
+                    + " TEMPLATE template0 ENCODING 'UTF8' LOCALE_PROVIDER icu ICU_LOCALE 'en-US' LOCALE 'C'");
+            dataSource = new SingleConnectionDataSource(url.replaceFirst("/[^/?]*(\\?|$)", "/" + database + "$1"),
+                    username, password, true);
+            jdbcTemplate = migrateAndLoad(dataSource, "classpath:db/migration/postgresql");
+            // Con tan pocas filas el planificador elegiría recorrer la tabla: así solo lo hace si no hay índice aplicable
+            jdbcTemplate.getJdbcTemplate().execute("ANALYZE purchases");
+            jdbcTemplate.getJdbcTemplate().execute("SET enable_seqscan = off");
+        }
+
+        @AfterAll
+        void drop() {
+            if (dataSource != null) {
+                dataSource.destroy();
+            }
+            new JdbcTemplate(admin).execute("DROP DATABASE IF EXISTS " + database);
+            admin.destroy();
+        }
+
+        @Test
+        void fullIsbnIsAnIndexedEquality() {
+            assertThat(search(jdbcTemplate, "9780307389732")).containsExactly("9780307389732");
+            assertThat(explain(jdbcTemplate, "9780307389732")).contains("Index Cond: ((book_id)::text = ");
+        }
+
+        // text_pattern_ops: el prefijo se convierte en el rango ~>=~ / ~<~ (byte a byte) del índice de lower(book_id)
+        @Test
+        void partialIsbnUsesThePatternOpsIndex() {
+            assertThat(search(jdbcTemplate, "978030")).containsExactly("9780307389732", "9780307474728");
+            assertThat(search(jdbcTemplate, "080442957X")).containsExactly("080442957X", "080442957x");
+            assertThat(explain(jdbcTemplate, "978030"))
+                    .contains("Index Cond: ((lower((book_id)::text) ~>=~ '978030'::text)");
+        }
+
+        // Sin recorrer la clave primaria en el orden de id, que también evitaría la tabla pero leyendo todo el índice
+        @Test
+        void substringUsesTheTrigramIndex() {
+            assertThat(search(jdbcTemplate, "*0307")).containsExactly("9780307389732", "9780307474728");
+            jdbcTemplate.getJdbcTemplate().execute("SET enable_indexscan = off");
+            try {
+                assertThat(explain(jdbcTemplate, "*0307"))
+                        .contains("Bitmap Index Scan")
+                        .contains("Index Cond: (lower((book_id)::text) ~~ '%0307%'::text)");
+            } finally {
+                jdbcTemplate.getJdbcTemplate().execute("RESET enable_indexscan");
+            }
+        }
+
+        @Test
+        void wildcardsAreLiteral() {
+            assertThat(search(jdbcTemplate, "84%")).containsExactly("84%_\\0001");
+            assertThat(search(jdbcTemplate, "*%_\\")).containsExactly("84%_\\0001");
+        }
+
+        // La consulta de COPY (valores como literales) con las barras invertidas y comillas escapadas según la conexión
+        @Test
+        void inlinedLiteralsFollowStandardConformingStrings() throws SQLException {
+            for (String setting : List.of("on", "off")) {
+                jdbcTemplate.getJdbcTemplate().execute("SET standard_conforming_strings = " + setting);
+                try {
+                    boolean standardConformingStrings = dataSource.getConnection().unwrap(BaseConnection.class)
+                            .getStandardConformingStrings();
+                    assertThat(standardConformingStrings).isEqualTo(setting.equals("on"));
+                    assertThat(inlined(jdbcTemplate, "*%_\\", standardConformingStrings)).containsExactly("84%_\\0001");
+                    assertThat(inlined(jdbcTemplate, "*\\", standardConformingStrings)).containsExactly("84%_\\0001");
+                    assertThat(inlined(jdbcTemplate, "*!'", standardConformingStrings)).containsExactly("84!'x");
+                } finally {
+                    jdbcTemplate.getJdbcTemplate().execute("RESET standard_conforming_strings");
+                }
+            }
+        }
+    }
+
+    private static NamedParameterJdbcTemplate migrateAndLoad(SingleConnectionDataSource dataSource, String location) {
+        Flyway.configure().dataSource(dataSource).locations(location).load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < BOOK_IDS.size(); i++) {
+            jdbcTemplate.update("INSERT INTO purchases (id, book_id, buyer, status, quantity, purchase_date)"
+                    + " VALUES (?, ?, 'ana@example.com', 'COMPLETED', 1, ?)", i + 1, BOOK_IDS.get(i), now);
+        }
+        return new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    private static List<String> search(NamedParameterJdbcTemplate jdbcTemplate, String bookIsbn) {
+        PurchaseSql sql = PurchaseSql.of(PurchaseQuery.builder().bookId(bookIsbn).build(), false);
+        return jdbcTemplate.query(sql.getSql(), sql.getParams(), (rs, row) -> rs.getString("book_id"));
+    }
+
+    private static List<String> inlined(NamedParameterJdbcTemplate jdbcTemplate, String bookIsbn,
+                                        boolean standardConformingStrings) throws SQLException {
+        PurchaseSql sql = PurchaseSql.of(PurchaseQuery.builder().bookId(bookIsbn).build(), false);
+        return jdbcTemplate.getJdbcTemplate().query(sql.inlined(standardConformingStrings), (rs, row) -> rs.getString("book_id"));
+    }
+
+    private static String explain(NamedParameterJdbcTemplate jdbcTemplate, String bookIsbn) {
+        PurchaseSql sql = PurchaseSql.of(PurchaseQuery.builder().bookId(bookIsbn).build(), false);
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql.getSql(), sql.getParams(), String.class));
+    }
+}
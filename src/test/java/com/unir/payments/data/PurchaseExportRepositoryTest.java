@@ -0,0 +1,159 @@
+package com.unir.payments.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.data.utils.PurchaseExportFormat;
+import com.unir.payments.data.utils.PurchaseQuery;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Exportación de PurchaseExportRepository: el cursor JDBC (H2) y COPY (PostgreSQL) escriben exactamente el mismo
+// fichero para las mismas compras
+class PurchaseExportRepositoryTest {
+
+    // Fechas con fracción de segundo: en NDJSON se truncan al segundo como en la API y en CSV se conservan como COPY
+    private static final String CSV = """
+            id,bookId,purchaseDate,quantity,buyer,status
+            1,9780307389732,2025-02-07 10:30:00.123456,2,ana@example.com,COMPLETED
+            2,9780307474728,2025-02-08 09:00:00,1,"luis, el de ""arriba""@example.com",PENDING
+            """;
+
+    private static final String NDJSON = """
+            {"id":1,"bookId":"9780307389732","purchaseDate":"2025-02-07T10:30:00","quantity":2,"buyer":"ana@example.com","status":"COMPLETED"}
+            {"id":2,"bookId":"9780307474728","purchaseDate":"2025-02-08T09:00:00","quantity":1,"buyer":"luis, el de \\"arriba\\"@example.com","status":"PENDING"}
+            """;
+
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    class H2 {
+
+        private SingleConnectionDataSource dataSource;
+
+        private PurchaseExportRepository repository;
+
+        @BeforeAll
+        void migrate() throws MetaDataAccessException {
+            dataSource = new SingleConnectionDataSource("jdbc:h2:mem:purchase_export;DB_CLOSE_DELAY=-1", "sa", "", true);
+            repository = migrateAndLoad(dataSource, "classpath:db/migration/h2");
+        }
+
+        @AfterAll
+        void close() {
+            dataSource.destroy();
+        }
+
+        @Test
+        void csvMatchesCopy() {
+            assertThat(export(repository, PurchaseQuery.builder().build(), PurchaseExportFormat.CSV)).isEqualTo(CSV);
+        }
+
+        @Test
+        void ndjsonMatchesCopy() {
+            assertThat(export(repository, PurchaseQuery.builder().build(), PurchaseExportFormat.NDJSON)).isEqualTo(NDJSON);
+        }
+
+        @Test
+        void onlyRequestedFieldsAreExported() {
+            assertSparseFields(repository);
+        }
+    }
+
+    // Necesita un servidor PostgreSQL con permiso para crear bases de datos, p. ej.
+    // PURCHASES_TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/catalogue
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @EnabledIfEnvironmentVariable(named = "PURCHASES_TEST_POSTGRES_URL", matches = ".+")
+    class Postgres {
+
+        private final String database = "purchases_export_" + System.nanoTime();
+
+        private SingleConnectionDataSource admin;
+
+        private SingleConnectionDataSource dataSource;
+
+        private PurchaseExportRepository repository;
+
+        @BeforeAll
+        void migrate() throws MetaDataAccessException {
+            String url = System.getenv("PURCHASES_TEST_POSTGRES_URL");
+            String username = Objects.requireNonNullElse(System.getenv("PURCHASES_TEST_POSTGRES_USERNAME"), "books");
+            String password = Objects.requireNonNullElse(System.getenv("PURCHASES_TEST_POSTGRES_PASSWORD"), "books123");
+            admin = new SingleConnectionDataSource(url, username, password, true);
+            new JdbcTemplate(admin).execute("CREATE DATABASE " + database);
+            dataSource = new SingleConnectionDataSource(url.replaceFirst("/[^/?]*(\\?|$)", "/" + database + "$1"),
+                    username, password, true);
+            repository = migrateAndLoad(dataSource, "classpath:db/migration/postgresql");
+        }
+
+        @AfterAll
+        void drop() {
+            if (dataSource != null) {
+                dataSource.destroy();
+            }
+            new JdbcTemplate(admin).execute("DROP DATABASE IF EXISTS " + database);
+            admin.destroy();
+        }
+
+        @Test
+        void csvMatchesCursor() {
+            assertThat(export(repository, PurchaseQuery.builder().build(), PurchaseExportFormat.CSV)).isEqualTo(CSV);
+        }
+
+        @Test
+        void ndjsonMatchesCursor() {
+            assertThat(export(repository, PurchaseQuery.builder().build(), PurchaseExportFormat.NDJSON)).isEqualTo(NDJSON);
+        }
+
+        @Test
+        void onlyRequestedFieldsAreExported() {
+            assertSparseFields(repository);
+        }
+    }
+
+    // Ordenar por quantity no añade la columna a la exportación
+    private static void assertSparseFields(PurchaseExportRepository repository) {
+        PurchaseQuery query = PurchaseQuery.builder().fields("status").sort("quantity").build();
+        assertThat(export(repository, query, PurchaseExportFormat.CSV)).isEqualTo("""
+                status
+                PENDING
+                COMPLETED
+                """);
+        assertThat(export(repository, query, PurchaseExportFormat.NDJSON)).isEqualTo("""
+                {"status":"PENDING"}
+                {"status":"COMPLETED"}
+                """);
+    }
+
+    private static PurchaseExportRepository migrateAndLoad(SingleConnectionDataSource dataSource, String location)
+            throws MetaDataAccessException {
+        Flyway.configure().dataSource(dataSource).locations(location).load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO purchases (id, book_id, buyer, status, quantity, purchase_date)"
+                        + " VALUES (1, '9780307389732', 'ana@example.com', 'COMPLETED', 2, ?)",
+                LocalDateTime.of(2025, 2, 7, 10, 30, 0, 123_456_000));
+        jdbcTemplate.update("INSERT INTO purchases (id, book_id, buyer, status, quantity, purchase_date)"
+                        + " VALUES (2, '9780307474728', 'luis, el de \"arriba\"@example.com', 'PENDING', 1, ?)",
+                LocalDateTime.of(2025, 2, 8, 9, 0));
+        return new PurchaseExportRepository(dataSource, new ObjectMapper(), 1);
+    }
+
+    private static String export(PurchaseExportRepository repository, PurchaseQuery query, PurchaseExportFormat format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        repository.export(query, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
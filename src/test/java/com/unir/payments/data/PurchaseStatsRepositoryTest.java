@@ -0,0 +1,134 @@
+package com.unir.payments.data;
+
+import com.unir.payments.controller.model.PurchaseStatDto;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseStat;
+import com.unir.payments.data.utils.PurchaseStatsDelta;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// purchase_stats sobre H2 con las migraciones de Flyway: relleno inicial (V8) y escrituras simultáneas
+class PurchaseStatsRepositoryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    private static final LocalDate ARCHIVED_DAY = LocalDate.of(2020, 1, 1);
+
+    private HikariDataSource dataSource;
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    @Test
+    void migrationRebuildsTheDaysThatStillHavePurchases() throws Exception {
+        dataSource = dataSource("purchase_stats_migration");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").target("7").load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        insertPurchase(jdbcTemplate, 1, "9780307389732", 2, "COMPLETED", DAY.atTime(9, 0));
+        insertPurchase(jdbcTemplate, 2, "9780307389732", 3, "COMPLETED", DAY.atTime(18, 30));
+        insertPurchase(jdbcTemplate, 3, "9788420674278", 1, "PENDING", DAY.plusDays(1).atStartOfDay());
+        // Fila a medias de un día con compras y resumen de un día ya archivado (sin compras en la tabla)
+        jdbcTemplate.update("INSERT INTO purchase_stats (dimension, dim_key, stat_date, purchases, quantity)"
+                + " VALUES ('STATUS', 'COMPLETED', ?, 1, 2)", DAY);
+        jdbcTemplate.update("INSERT INTO purchase_stats (dimension, dim_key, stat_date, purchases, quantity)"
+                + " VALUES ('STATUS', 'COMPLETED', ?, 4, 4)", ARCHIVED_DAY);
+
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+
+        PurchaseStatsRepository repository = new PurchaseStatsRepository(jdbcTemplate, dataSource, 16);
+        assertThat(repository.aggregateByDay(ARCHIVED_DAY, DAY.plusDays(1))).containsExactly(
+                new PurchaseStatDto(ARCHIVED_DAY.toString(), 4, 4),
+                new PurchaseStatDto(DAY.toString(), 2, 5),
+                new PurchaseStatDto(DAY.plusDays(1).toString(), 1, 1));
+        assertThat(repository.aggregate(PurchaseStat.Dimension.BOOK, DAY, DAY.plusDays(1))).containsExactly(
+                new PurchaseStatDto("9780307389732", 2, 5),
+                new PurchaseStatDto("9788420674278", 1, 1));
+    }
+
+    // Una sola shard: todas las transacciones suman en la misma fila, que al principio no existe
+    @Test
+    void concurrentDeltasOnTheSameRowAreAllCounted() throws Exception {
+        assertConcurrentDeltasAreCounted("purchase_stats_one_shard", 1);
+    }
+
+    @Test
+    void concurrentDeltasSpreadOverShardsAreAllCounted() throws Exception {
+        assertConcurrentDeltasAreCounted("purchase_stats_shards", 16);
+    }
+
+    private void assertConcurrentDeltasAreCounted(String database, int shards) throws Exception {
+        dataSource = dataSource(database);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+        PurchaseStatsRepository repository = new PurchaseStatsRepository(new JdbcTemplate(dataSource), dataSource, shards);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        int threads = 8;
+        int transactions = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < transactions; i++) {
+                        transactionTemplate.executeWithoutResult(status -> repository.apply(
+                                new PurchaseStatsDelta().add(purchase("COMPLETED", 2))));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+
+        long total = (long) threads * transactions;
+        assertThat(repository.aggregateByDay(DAY, DAY)).containsExactly(new PurchaseStatDto(DAY.toString(), total, 2 * total));
+        assertThat(repository.aggregate(PurchaseStat.Dimension.BOOK, DAY, DAY))
+                .containsExactly(new PurchaseStatDto("9780307389732", total, 2 * total));
+        assertThat(new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM purchase_stats WHERE dimension = 'STATUS'", Long.class)).isBetween(1L, (long) shards);
+    }
+
+    private static HikariDataSource dataSource(String database) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(10);
+        return dataSource;
+    }
+
+    private static void insertPurchase(JdbcTemplate jdbcTemplate, long id, String bookId, int quantity, String status,
+                                       LocalDateTime purchaseDate) {
+        jdbcTemplate.update("INSERT INTO purchases (id, book_id, buyer, status, quantity, purchase_date)"
+                + " VALUES (?, ?, 'ana@example.com', ?, ?, ?)", id, bookId, status, quantity, purchaseDate);
+    }
+
+    private static Purchase purchase(String status, int quantity) {
+        return Purchase.builder()
+                .bookId("9780307389732")
+                .buyer("ana@example.com")
+                .status(status)
+                .quantity(quantity)
+                .purchaseDate(DAY.atTime(12, 0))
+                .build();
+    }
+}
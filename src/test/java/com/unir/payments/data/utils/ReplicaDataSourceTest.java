@@ -0,0 +1,191 @@
+package com.unir.payments.data.utils;
+
+import com.unir.payments.data.ReadYourWrites;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Primario y réplica en dos bases de datos H2, montados como en DataSourceConfig. Cada una guarda su nombre en la
+// tabla node: la consulta dice de cuál sale la conexión de cada transacción
+class ReplicaDataSourceTest {
+
+    private static final AtomicLong DATABASES = new AtomicLong();
+
+    private final long database = DATABASES.incrementAndGet();
+
+    private HikariDataSource primary;
+
+    private CountingDataSource replica;
+
+    private ReplicaDataSource replicaDataSource;
+
+    private ReadYourWrites readYourWrites;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readWrite;
+
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        HikariConfig primaryConfig = config("primary");
+        primaryConfig.setConnectionTimeout(5000);
+        primary = new HikariDataSource(primaryConfig);
+        replica = new CountingDataSource(config("replica"));
+        for (HikariDataSource node : List.of(primary, replica)) {
+            JdbcTemplate template = new JdbcTemplate(node);
+            template.execute("CREATE TABLE node (name varchar(20))");
+            template.update("INSERT INTO node VALUES (?)", node.getPoolName());
+        }
+        replica.calls.set(0);
+        readYourWrites = new ReadYourWrites();
+        ReflectionTestUtils.setField(readYourWrites, "window", Duration.ofSeconds(5));
+        route(replica);
+    }
+
+    @AfterEach
+    void close() {
+        RequestContextHolder.resetRequestAttributes();
+        replicaDataSource.close();
+        primary.close();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertThat(readOnlyNode()).isEqualTo("replica");
+        assertThat(readWriteNode()).isEqualTo("primary");
+        assertThat(node()).isEqualTo("primary");
+    }
+
+    // Tras confirmar una escritura, el resto de la petición y las siguientes con la cookie leen del primario
+    @Test
+    void writesPinTheRequestAndTheClientToThePrimary() {
+        MockHttpServletResponse response = request(new MockHttpServletRequest());
+        assertThat(readOnlyNode()).isEqualTo("replica");
+        readWrite.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE node SET name = name");
+            readYourWrites.written();
+            assertThat(response.getCookies()).isEmpty();
+        });
+        assertThat(readOnlyNode()).isEqualTo("primary");
+        Cookie lastWrite = response.getCookie("purchases_last_write");
+        assertThat(lastWrite).isNotNull();
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setCookies(lastWrite);
+        request(next);
+        assertThat(readOnlyNode()).isEqualTo("primary");
+
+        request(new MockHttpServletRequest());
+        assertThat(readOnlyNode()).isEqualTo("replica");
+
+        RequestContextHolder.resetRequestAttributes();
+        assertThat(readOnlyNode()).isEqualTo("replica");
+    }
+
+    // Con el pool de la réplica lleno se lee del primario, pero la réplica no se aparta durante retryAfter
+    @Test
+    void exhaustedReplicaPoolIsNotMarkedDown() throws SQLException {
+        try (Connection busy = replica.getConnection()) {
+            assertThat(readOnlyNode()).isEqualTo("primary");
+        }
+        assertThat(readOnlyNode()).isEqualTo("replica");
+        assertThat(replica.calls).hasValue(3);
+    }
+
+    // Una réplica que no acepta conexiones se salta durante retryAfter sin volver a esperarla
+    @Test
+    void unreachableReplicaIsMarkedDown() {
+        replicaDataSource.close();
+        CountingDataSource unreachable = new CountingDataSource(config("unreachable"));
+        route(unreachable);
+        assertThatThrownBy(unreachable::getConnection)
+                .isInstanceOfSatisfying(SQLException.class, e -> assertThat(ReplicaDataSource.isPoolExhausted(e)).isFalse());
+
+        assertThat(readOnlyNode()).isEqualTo("primary");
+        assertThat(readOnlyNode()).isEqualTo("primary");
+        assertThat(unreachable.calls).hasValue(2);
+    }
+
+    private void route(HikariDataSource replica) {
+        replicaDataSource = new ReplicaDataSource(primary, List.of(replica), readYourWrites::requiresPrimary, Duration.ofHours(1));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private String readOnlyNode() {
+        return readOnly.execute(status -> node());
+    }
+
+    private String readWriteNode() {
+        return readWrite.execute(status -> node());
+    }
+
+    private static MockHttpServletResponse request(MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    // Pool de una conexión que espera poco por ella, como una réplica; "unreachable" apunta a una base de datos
+    // que no existe
+    private HikariConfig config(String name) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:replica_test_" + name + "_" + database + ";DB_CLOSE_DELAY=-1"
+                + (name.equals("unreachable") ? ";IFEXISTS=TRUE" : ""));
+        config.setUsername("sa");
+        config.setPoolName(name);
+        config.setMaximumPoolSize(1);
+        config.setConnectionTimeout(250);
+        config.setInitializationFailTimeout(-1);
+        return config;
+    }
+
+    // Cuenta las conexiones pedidas a la réplica
+    private static final class CountingDataSource extends HikariDataSource {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingDataSource(HikariConfig config) {
+            super(config);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            calls.incrementAndGet();
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.unir.payments.service;
+
+import com.unir.payments.controller.model.BookResponseDTO;
+import com.unir.payments.data.BookReservationRepository;
+import com.unir.payments.data.model.Purchase;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// book_reservations sobre H2 con las migraciones de Flyway: compras simultáneas del mismo libro desde dos
+// instancias (cada una con sus locks por franja), devolución de ejemplares y sincronización del stock
+class BookReservationsTest {
+
+    private static final AtomicLong DATABASES = new AtomicLong();
+
+    private static final String BOOK_ID = "9780307389732";
+
+    private HikariDataSource dataSource;
+
+    private TransactionTemplate transactionTemplate;
+
+    private BookReservationRepository repository;
+
+    @BeforeEach
+    void migrate() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:book_reservations_" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(20);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new BookReservationRepository(new JdbcTemplate(dataSource), dataSource);
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    // Más compradores que ejemplares: se confirman exactamente stock unidades y solo una compra agota el libro
+    @Test
+    void concurrentPurchasesNeverOversell() throws Exception {
+        int stock = 50;
+        List<BookReservations.Reservation> results = buyConcurrently(book(stock), 16, 10);
+
+        assertThat(results).hasSize(160);
+        assertThat(results).filteredOn(BookReservations.Reservation::isConfirmed).hasSize(stock);
+        assertThat(results).filteredOn(reservation -> reservation == BookReservations.Reservation.SOLD_OUT).hasSize(1);
+        assertThat(repository.available(BOOK_ID)).isZero();
+        assertThat(reserved()).isEqualTo(stock);
+    }
+
+    // Una compra confirmada que se cancela o se borra devuelve sus ejemplares; solo la primera vez. El libro agotado
+    // vuelve a tener ejemplares y hay que mostrarlo en el catálogo
+    @Test
+    void cancelledPurchaseReleasesItsUnits() {
+        BookReservations reservations = reservations();
+        assertThat(reserve(reservations, book(3), 3)).isEqualTo(BookReservations.Reservation.SOLD_OUT);
+        Purchase purchase = purchase("CONFIRMED", 3);
+
+        BookReservations.Held held = BookReservations.held(purchase);
+        purchase.setStatus("CANCELLED");
+        assertThat(adjust(reservations, held, BookReservations.held(purchase))).isEqualTo(BOOK_ID);
+        assertThat(repository.available(BOOK_ID)).isEqualTo(3);
+        assertThat(adjust(reservations, BookReservations.held(purchase), null)).isNull();
+        assertThat(repository.available(BOOK_ID)).isEqualTo(3);
+
+        assertThat(reserve(reservations, book(3), 2)).isEqualTo(BookReservations.Reservation.RESERVED);
+        assertThat(repository.available(BOOK_ID)).isEqualTo(1);
+    }
+
+    // Cambiar la cantidad de una compra confirmada ajusta la diferencia; volver a confirmarla la retiene otra vez
+    @Test
+    void confirmedPurchaseChangesMoveItsUnits() {
+        BookReservations reservations = reservations();
+        reserve(reservations, book(10), 2);
+        Purchase purchase = purchase("CONFIRMED", 2);
+
+        BookReservations.Held held = BookReservations.held(purchase);
+        purchase.setQuantity(5);
+        adjust(reservations, held, BookReservations.held(purchase));
+        assertThat(repository.available(BOOK_ID)).isEqualTo(5);
+
+        held = BookReservations.held(purchase);
+        purchase.setStatus("CANCELLED");
+        assertThat(adjust(reservations, held, BookReservations.held(purchase))).isNull();
+        assertThat(repository.available(BOOK_ID)).isEqualTo(10);
+
+        held = BookReservations.held(purchase);
+        purchase.setStatus("CONFIRMED");
+        adjust(reservations, held, BookReservations.held(purchase));
+        assertThat(repository.available(BOOK_ID)).isEqualTo(5);
+    }
+
+    // Un ejemplar único reservó una unidad aunque la compra pidiera más: al cancelarla no queda reserved negativo
+    @Test
+    void singleCopyReleaseIsLimitedToTheStock() {
+        BookReservations reservations = reservations();
+        BookResponseDTO book = book(null);
+        assertThat(reserve(reservations, book, 4)).isEqualTo(BookReservations.Reservation.SOLD_OUT);
+
+        adjust(reservations, BookReservations.held(purchase("CONFIRMED", 4)), null);
+        assertThat(reserved()).isZero();
+        assertThat(repository.available(BOOK_ID)).isEqualTo(1);
+    }
+
+    // El stock del catálogo solo se toma en la primera reserva: un valor distinto (p. ej. cacheado) no lo sustituye
+    @Test
+    void catalogueStockDoesNotOverwriteTheReservation() {
+        BookReservations reservations = reservations();
+        assertThat(reserve(reservations, book(5), 2)).isEqualTo(BookReservations.Reservation.RESERVED);
+
+        assertThat(reserve(reservations, book(2), 1)).isEqualTo(BookReservations.Reservation.RESERVED);
+        assertThat(reserve(reservations, book(12), 3)).isEqualTo(BookReservations.Reservation.REJECTED);
+        assertThat(repository.available(BOOK_ID)).isEqualTo(2);
+    }
+
+    // Tras agotarse, la sincronización con una reposición del catálogo permite volver a vender y muestra el libro
+    @Test
+    void restockedBookCanBeSoldAgain() throws Exception {
+        assertThat(buyConcurrently(book(5), 4, 5)).filteredOn(BookReservations.Reservation::isConfirmed).hasSize(5);
+        assertThat(reserve(reservations(), book(12), 1)).isEqualTo(BookReservations.Reservation.REJECTED);
+
+        assertThat(restock(reservations(), 12)).isTrue();
+        assertThat(restock(reservations(), 12)).isFalse();
+        List<BookReservations.Reservation> restocked = buyConcurrently(book(12), 4, 5);
+        assertThat(restocked).filteredOn(BookReservations.Reservation::isConfirmed).hasSize(7);
+        assertThat(repository.available(BOOK_ID)).isZero();
+        assertThat(reserved()).isEqualTo(12);
+    }
+
+    // La mitad de los hilos compra a través de cada una de dos instancias: los locks por franja solo encadenan
+    // las compras de la misma instancia y entre ambas la guarda es el UPDATE condicional
+    private List<BookReservations.Reservation> buyConcurrently(BookResponseDTO book, int threads, int purchases)
+            throws Exception {
+        List<BookReservations> instances = List.of(reservations(), reservations());
+        ConcurrentLinkedQueue<BookReservations.Reservation> results = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> buyers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                BookReservations reservations = instances.get(t % instances.size());
+                buyers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < purchases; i++) {
+                        results.add(reservations.withLock(BOOK_ID, () -> reserve(reservations, book, 1)));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> buyer : buyers) {
+                buyer.get();
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    private BookReservations reservations() {
+        BookReservations reservations = new BookReservations(repository);
+        ReflectionTestUtils.setField(reservations, "lockStripes", 4);
+        reservations.init();
+        return reservations;
+    }
+
+    private BookReservations.Reservation reserve(BookReservations reservations, BookResponseDTO book, int quantity) {
+        return transactionTemplate.execute(status -> reservations.reserve(BOOK_ID, book, quantity));
+    }
+
+    private String adjust(BookReservations reservations, BookReservations.Held before, BookReservations.Held after) {
+        return transactionTemplate.execute(status -> reservations.adjust(before, after));
+    }
+
+    private boolean restock(BookReservations reservations, int stock) {
+        return Boolean.TRUE.equals(reservations.withLock(BOOK_ID,
+                () -> transactionTemplate.execute(status -> reservations.restock(BOOK_ID, stock))));
+    }
+
+    private int reserved() {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "SELECT reserved FROM book_reservations WHERE book_id = ?", Integer.class, BOOK_ID);
+    }
+
+    private static BookResponseDTO book(Integer stock) {
+        BookResponseDTO book = new BookResponseDTO();
+        book.setBookId(1L);
+        book.setVisible(true);
+        book.setStock(stock);
+        return book;
+    }
+
+    private static Purchase purchase(String status, int quantity) {
+        return Purchase.builder()
+                .bookId(BOOK_ID)
+                .buyer("ana@example.com")
+                .status(status)
+                .quantity(quantity)
+                .build();
+    }
+}
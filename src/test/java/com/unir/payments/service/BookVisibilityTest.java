@@ -0,0 +1,90 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.ApplicationTest;
+import com.unir.payments.controller.InternalReservationsController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+// Visibilidad en el catálogo a través de catalogue_outbox: el libro se oculta al agotarse y se vuelve a mostrar
+// cuando recupera ejemplares, por el borrado de una compra o por la sincronización del stock
+class BookVisibilityTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void deletedPurchaseShowsTheSoldOutBook() throws Exception {
+        String isbn = "9791000000042";
+        CATALOGUE.book(isbn, true, 2);
+        long purchaseId = purchase(isbn, 2, "visibility-delete@example.com");
+        assertThat(await(() -> CATALOGUE.isHidden(isbn))).isTrue();
+
+        assertThat(mockMvc.perform(delete("/purchases/" + purchaseId)).andReturn().getResponse().getStatus())
+                .isEqualTo(200);
+        assertThat(await(() -> !CATALOGUE.isHidden(isbn))).isTrue();
+    }
+
+    @Test
+    void restockShowsTheSoldOutBook() throws Exception {
+        String isbn = "9791000000059";
+        CATALOGUE.book(isbn, true, 1);
+        purchase(isbn, 1, "visibility-restock@example.com");
+        assertThat(await(() -> CATALOGUE.isHidden(isbn))).isTrue();
+
+        assertThat(restock(isbn, 3, null).getStatus()).isEqualTo(403);
+        assertThat(restock(isbn, 3, "wrong-token").getStatus()).isEqualTo(403);
+        assertThat(restock(isbn, 3, SYNC_TOKEN).getStatus()).isEqualTo(204);
+        assertThat(await(() -> !CATALOGUE.isHidden(isbn))).isTrue();
+
+        String body = mockMvc.perform(post("/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request(isbn, 2, "visibility-restock@example.com")))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(objectMapper.readTree(body).get("status").asText()).isEqualTo("CONFIRMED");
+    }
+
+    private long purchase(String isbn, int quantity, String buyer) throws Exception {
+        String body = mockMvc.perform(post("/purchases")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request(isbn, quantity, buyer)))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(objectMapper.readTree(body).get("status").asText()).isEqualTo("CONFIRMED");
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private MockHttpServletResponse restock(String isbn, int stock, String token) throws Exception {
+        var request = put(InternalReservationsController.STOCK_PATH, isbn).param("stock", String.valueOf(stock));
+        if (token != null) {
+            request.header(InternalReservationsController.TOKEN_HEADER, token);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private static String request(String isbn, int quantity, String buyer) {
+        return "{\"bookId\": \"" + isbn + "\", \"quantity\": " + quantity + ", \"buyer\": \"" + buyer
+                + "\", \"status\": \"PENDING\"}";
+    }
+
+    // CatalogueOutboxDispatcher envía los eventos cada segundo
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        return condition.getAsBoolean();
+    }
+}
@@ -0,0 +1,130 @@
+package com.unir.payments.service;
+
+import com.unir.payments.ApplicationTest;
+import com.unir.payments.controller.PurchasesController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// POST /purchases con Idempotency-Key de extremo a extremo: duplicados simultáneos, claves caducadas y errores
+// del servidor, que no se memorizan
+class IdempotencyServiceTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Los duplicados que llegan mientras la primera petición consulta el catálogo esperan su resultado: una compra,
+    // una consulta al catálogo y la misma respuesta para todos
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        String isbn = "9791000000011";
+        CATALOGUE.book(isbn, true, 10);
+        CATALOGUE.setLatencyMillis(300);
+        List<MockHttpServletResponse> responses = new ArrayList<>();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<MockHttpServletResponse>> clients = new ArrayList<>();
+            try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+                for (int i = 0; i < 8; i++) {
+                    clients.add(executor.submit(() -> {
+                        start.await();
+                        return purchase("concurrent-key", isbn, "idempotency-concurrent@example.com");
+                    }));
+                }
+                start.countDown();
+                for (Future<MockHttpServletResponse> client : clients) {
+                    responses.add(client.get());
+                }
+            }
+        } finally {
+            CATALOGUE.setLatencyMillis(0);
+        }
+
+        assertThat(responses).extracting(MockHttpServletResponse::getStatus).containsOnly(201);
+        assertThat(responses).extracting(response -> response.getContentAsString()).hasSize(8).containsOnly(
+                responses.getFirst().getContentAsString());
+        assertThat(responses).extracting(response -> response.getHeader(PurchasesController.IDEMPOTENT_REPLAYED_HEADER))
+                .containsOnlyOnce("false");
+        assertThat(purchases("idempotency-concurrent@example.com")).isEqualTo(1);
+        assertThat(CATALOGUE.lookups(isbn)).isEqualTo(1);
+    }
+
+    // Una clave caducada que la purga aún no ha borrado se reclama como nueva, sin repetir su respuesta antigua
+    @Test
+    void expiredKeyIsClaimedAgain() throws Exception {
+        String isbn = "9791000000028";
+        CATALOGUE.book(isbn, true, 10);
+        LocalDateTime created = LocalDateTime.now().minusDays(2);
+        jdbcTemplate.update("""
+                        INSERT INTO idempotency_keys (idempotency_key, request_hash, status, response_status, response_body,
+                                                      created_at, expires_at)
+                        VALUES ('expired-key', 'stale', 'COMPLETED', 201, '{"id": -1}', ?, ?)""",
+                Timestamp.valueOf(created), Timestamp.valueOf(created.plusDays(1)));
+
+        MockHttpServletResponse first = purchase("expired-key", isbn, "idempotency-expired@example.com");
+        MockHttpServletResponse retry = purchase("expired-key", isbn, "idempotency-expired@example.com");
+
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(first.getHeader(PurchasesController.IDEMPOTENT_REPLAYED_HEADER)).isEqualTo("false");
+        assertThat(first.getContentAsString()).doesNotContain("\"id\":-1");
+        assertThat(retry.getHeader(PurchasesController.IDEMPOTENT_REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(purchases("idempotency-expired@example.com")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT expires_at FROM idempotency_keys WHERE idempotency_key = 'expired-key'", Timestamp.class))
+                .isAfter(Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    // Con el catálogo fallando la respuesta es 503 y la clave se libera: el reintento registra la compra
+    @Test
+    void serverErrorReleasesTheKey() throws Exception {
+        String isbn = "9791000000035";
+        CATALOGUE.book(isbn, true, 10);
+        CATALOGUE.setFailing(isbn, true);
+        MockHttpServletResponse failed;
+        try {
+            failed = purchase("failing-key", isbn, "idempotency-failing@example.com");
+        } finally {
+            CATALOGUE.setFailing(isbn, false);
+        }
+
+        assertThat(failed.getStatus()).isEqualTo(503);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = 'failing-key'", Integer.class)).isZero();
+
+        MockHttpServletResponse retry = purchase("failing-key", isbn, "idempotency-failing@example.com");
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getHeader(PurchasesController.IDEMPOTENT_REPLAYED_HEADER)).isEqualTo("false");
+        assertThat(purchases("idempotency-failing@example.com")).isEqualTo(1);
+    }
+
+    private MockHttpServletResponse purchase(String key, String isbn, String buyer) throws Exception {
+        return mockMvc.perform(post("/purchases")
+                        .header(PurchasesController.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookId\": \"" + isbn + "\", \"quantity\": 1, \"buyer\": \"" + buyer + "\", \"status\": \"PENDING\"}"))
+                .andReturn().getResponse();
+    }
+
+    private int purchases(String buyer) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM purchases WHERE buyer = ?", Integer.class, buyer);
+    }
+}
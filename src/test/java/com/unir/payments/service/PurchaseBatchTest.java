@@ -0,0 +1,131 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.ApplicationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// POST /purchases/batch de extremo a extremo, en bloques de 3 compras (ApplicationTest): resultado por fila en el
+// orden del lote, una consulta al catálogo por libro y rechazos que no detienen el resto
+class PurchaseBatchTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Ocho compras en tres bloques: el libro con 2 ejemplares confirma dos y cancela la tercera, la fila sin comprador
+    // se rechaza y el libro que el catálogo no sirve se rechaza en cada fila con una sola consulta
+    @Test
+    void everyRowGetsItsResult() throws Exception {
+        String plenty = "9791000000073";
+        String scarce = "9791000000080";
+        String failing = "9791000000097";
+        CATALOGUE.book(plenty, true, 100);
+        CATALOGUE.book(scarce, true, 2);
+        CATALOGUE.book(failing, true, 100);
+        CATALOGUE.setFailing(failing, true);
+        String buyer = "batch-rows@example.com";
+        List<JsonNode> results;
+        try {
+            results = batch(String.join("\n",
+                    row(plenty, buyer), row(scarce, buyer), row(failing, buyer),
+                    row(scarce, buyer), row(plenty, null), row(failing, buyer),
+                    row(scarce, buyer), row(plenty, buyer)));
+        } finally {
+            CATALOGUE.setFailing(failing, false);
+        }
+
+        assertThat(results).extracting(result -> result.get("index").asInt()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+        assertThat(results).extracting(result -> result.get("result").asText()).containsExactly(
+                "CREATED", "CREATED", "REJECTED", "CREATED", "REJECTED", "REJECTED", "CREATED", "CREATED");
+        assertThat(results).extracting(result -> result.has("purchase") ? result.get("purchase").get("status").asText() : null)
+                .containsExactly("CONFIRMED", "CONFIRMED", null, "CONFIRMED", null, null, "CANCELLED", "CONFIRMED");
+        assertThat(results.get(2).get("error").asText()).isEqualTo("No se pudo consultar el libro " + failing);
+        assertThat(results.get(4).get("error").asText()).isEqualTo("Datos incorrectos introducidos.");
+
+        assertThat(CATALOGUE.lookups(plenty)).isEqualTo(1);
+        assertThat(CATALOGUE.lookups(scarce)).isEqualTo(1);
+        assertThat(CATALOGUE.lookups(failing)).isEqualTo(1);
+        assertThat(awaitHidden(scarce)).isTrue();
+        assertThat(purchases(buyer)).isEqualTo(5);
+    }
+
+    // El mismo lote como array JSON, con más compras que varios bloques
+    @Test
+    void jsonArrayIsReadInChunks() throws Exception {
+        String isbn = "9791000000103";
+        CATALOGUE.book(isbn, true, 100);
+        String buyer = "batch-array@example.com";
+
+        List<JsonNode> results = batch("[" + String.join(",", IntStream.range(0, 10).mapToObj(i -> row(isbn, buyer)).toList()) + "]",
+                "application/json");
+
+        assertThat(results).extracting(result -> result.get("index").asInt())
+                .containsExactlyElementsOf(IntStream.range(0, 10).boxed().toList());
+        assertThat(results).extracting(result -> result.get("result").asText()).containsOnly("CREATED");
+        assertThat(CATALOGUE.lookups(isbn)).isEqualTo(1);
+        assertThat(purchases(buyer)).isEqualTo(10);
+    }
+
+    // Una línea mal formada detiene la carga: lo leído antes se registra y la línea se rechaza
+    @Test
+    void malformedRowStopsTheBatch() throws Exception {
+        String isbn = "9791000000110";
+        CATALOGUE.book(isbn, true, 100);
+        String buyer = "batch-malformed@example.com";
+
+        List<JsonNode> results = batch(String.join("\n",
+                row(isbn, buyer), row(isbn, buyer), row(isbn, buyer), row(isbn, buyer), "{\"bookId\": ", row(isbn, buyer)));
+
+        assertThat(results).extracting(result -> result.get("result").asText())
+                .containsExactly("CREATED", "CREATED", "CREATED", "CREATED", "REJECTED");
+        assertThat(results.get(4).get("index").asInt()).isEqualTo(4);
+        assertThat(results.get(4).get("error").asText()).startsWith("Compra mal formada");
+        assertThat(purchases(buyer)).isEqualTo(4);
+    }
+
+    private List<JsonNode> batch(String body) throws Exception {
+        return batch(body, "application/x-ndjson");
+    }
+
+    private List<JsonNode> batch(String body, String contentType) throws Exception {
+        String response = mockMvc.perform(post("/purchases/batch").contentType(contentType).content(body))
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> results = new ArrayList<>();
+        objectMapper.readTree(response).forEach(results::add);
+        return results;
+    }
+
+    private static String row(String isbn, String buyer) {
+        return "{\"bookId\": \"" + isbn + "\", \"quantity\": 1, "
+                + (buyer != null ? "\"buyer\": \"" + buyer + "\", " : "") + "\"status\": \"PENDING\"}";
+    }
+
+    private int purchases(String buyer) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM purchases WHERE buyer = ?", Integer.class, buyer);
+    }
+
+    // CatalogueOutboxDispatcher envía los eventos cada segundo
+    private static boolean awaitHidden(String isbn) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!CATALOGUE.isHidden(isbn) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        return CATALOGUE.isHidden(isbn);
+    }
+}
@@ -0,0 +1,197 @@
+package com.unir.payments.service;
+
+import com.unir.payments.data.PurchaseChangeRepository;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseChange;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+// Registro de cambios sobre H2 con las migraciones de Flyway: numeración en orden de confirmación sin bloquear
+// las escrituras y sin huecos para los consumidores
+class PurchaseChangeFeedTest {
+
+    private static final AtomicLong DATABASES = new AtomicLong();
+
+    private HikariDataSource dataSource;
+
+    private TransactionTemplate transactionTemplate;
+
+    private PurchaseChangeFeed feed;
+
+    @BeforeEach
+    void migrate() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:purchase_changes_" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(20);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        feed = feed(new PurchaseChangeRepository(new JdbcTemplate(dataSource)), dataSource);
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    // Sin consultas al crear el bean: la base de datos puede no estar disponible todavía
+    @Test
+    void constructorDoesNotQueryTheDatabase() {
+        DriverManagerDataSource unavailable = new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "sa", "");
+        assertThatCode(() -> feed(new PurchaseChangeRepository(new JdbcTemplate(unavailable)), unavailable))
+                .doesNotThrowAnyException();
+    }
+
+    // La escritura retiene su conexión mientras numera tras confirmar (con open-in-view, hasta el final de la
+    // petición): aunque ocupe todo su pool, la numeración no espera a que quede otra libre
+    @Test
+    void sequencingDoesNotWaitForTheWritersPool() throws Exception {
+        try (HikariDataSource writers = new HikariDataSource()) {
+            writers.setJdbcUrl(dataSource.getJdbcUrl());
+            writers.setUsername("sa");
+            writers.setMaximumPoolSize(1);
+            writers.setConnectionTimeout(5000);
+            TransactionTemplate writerTransactions = new TransactionTemplate(new DataSourceTransactionManager(writers));
+            PurchaseChangeFeed writerFeed = feed(new PurchaseChangeRepository(new JdbcTemplate(writers)), dataSource);
+
+            CompletableFuture.runAsync(() -> writerTransactions.executeWithoutResult(
+                    status -> writerFeed.record(PurchaseChange.Operation.CREATED, purchase(1)))).get(2, TimeUnit.SECONDS);
+            assertThat(writerFeed.lastSeq()).isEqualTo(1);
+        }
+    }
+
+    // Una transacción abierta con un cambio registrado no retiene a otra escritura; cada una recibe su
+    // secuencia al confirmarse, en ese orden
+    @Test
+    void openWriteDoesNotBlockOtherWrites() throws Exception {
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            feed.record(PurchaseChange.Operation.CREATED, purchase(1));
+            recorded.countDown();
+            await(release);
+        }));
+        assertThat(recorded.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> feed.record(PurchaseChange.Operation.CREATED, purchase(2)))).get(5, TimeUnit.SECONDS);
+        assertThat(feed.lastSeq()).isEqualTo(1);
+        assertThat(feed.read(0, 10)).extracting(change -> change.purchase().id()).containsExactly(2L);
+
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+        assertThat(feed.lastSeq()).isEqualTo(2);
+        assertThat(feed.read(0, 10)).extracting(PurchaseChange::seq).containsExactly(1L, 2L);
+        assertThat(feed.read(0, 10)).extracting(change -> change.purchase().id()).containsExactly(2L, 1L);
+    }
+
+    // Escrituras simultáneas, algunas deshechas, mientras un consumidor lee: ve todos los cambios confirmados
+    // una sola vez, con secuencias consecutivas (read lanzaría 410 ante un hueco)
+    @Test
+    void concurrentWritesProduceAGapFreeSequence() throws Exception {
+        int threads = 8;
+        int transactions = 40;
+        AtomicLong ids = new AtomicLong();
+        AtomicLong committed = new AtomicLong();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<PurchaseChange> received = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads + 1)) {
+            Future<?> reader = executor.submit(() -> {
+                long cursor = 0;
+                while (writing.get() || cursor < feed.lastSeq()) {
+                    List<PurchaseChange> changes = feed.read(cursor, 50);
+                    received.addAll(changes);
+                    cursor = changes.isEmpty() ? cursor : changes.getLast().seq();
+                    if (changes.isEmpty()) {
+                        feed.awaitAfter(cursor).completeOnTimeout(cursor, 50, TimeUnit.MILLISECONDS).join();
+                    }
+                }
+                return null;
+            });
+            for (int t = 0; t < threads; t++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < transactions; i++) {
+                        long id = ids.incrementAndGet();
+                        transactionTemplate.executeWithoutResult(status -> {
+                            feed.record(PurchaseChange.Operation.CREATED, List.of(purchase(id), purchase(-id)));
+                            if (id % 5 == 0) {
+                                status.setRollbackOnly();
+                            }
+                        });
+                        if (id % 5 != 0) {
+                            committed.addAndGet(2);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            reader.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(feed.lastSeq()).isEqualTo(committed.get());
+        assertThat(received).extracting(PurchaseChange::seq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, committed.get()).boxed().toList());
+        assertThat(received).extracting(change -> change.purchase().id()).doesNotHaveDuplicates()
+                .noneMatch(id -> id % 5 == 0);
+    }
+
+    private static PurchaseChangeFeed feed(PurchaseChangeRepository repository, DataSource sequenceDataSource) {
+        PurchaseChangeFeed feed = new PurchaseChangeFeed(repository, sequenceDataSource);
+        ReflectionTestUtils.setField(feed, "retention", Duration.ofDays(7));
+        ReflectionTestUtils.setField(feed, "sequenceBatchSize", 10000);
+        return feed;
+    }
+
+    private static Purchase purchase(long id) {
+        return Purchase.builder()
+                .id(id)
+                .bookId("9780307389732")
+                .buyer("ana@example.com")
+                .status("COMPLETED")
+                .quantity(1)
+                .purchaseDate(LocalDateTime.of(2025, 3, 10, 12, 0))
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
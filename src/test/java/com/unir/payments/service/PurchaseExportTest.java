@@ -0,0 +1,111 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.ApplicationTest;
+import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.model.Purchase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// GET /purchases/export de extremo a extremo sobre H2 (cursor JDBC): gzip, mismas compras que la búsqueda con los
+// mismos filtros y solo los campos pedidos
+class PurchaseExportTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PurchaseRepository repository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void csvExportsTheSearchResults() throws Exception {
+        save("export-csv@example.com");
+        List<JsonNode> search = search("export-csv@example.com");
+
+        MockHttpServletResponse response = export("csv", "export-csv@example.com");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).isEqualTo("application/gzip");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION)).endsWith(".csv.gz\"");
+        List<String> expected = new ArrayList<>(List.of("id,status"));
+        search.forEach(purchase -> expected.add(purchase.get("id").asLong() + "," + purchase.get("status").asText()));
+        assertThat(gunzip(response).lines()).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void ndjsonExportsTheSearchResults() throws Exception {
+        save("export-ndjson@example.com");
+        List<JsonNode> search = search("export-ndjson@example.com");
+
+        MockHttpServletResponse response = export("ndjson", "export-ndjson@example.com");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION)).endsWith(".ndjson.gz\"");
+        List<JsonNode> exported = new ArrayList<>();
+        for (String line : gunzip(response).lines().toList()) {
+            exported.add(objectMapper.readTree(line));
+        }
+        assertThat(exported).isEqualTo(search);
+    }
+
+    @Test
+    void unknownFormatIsABadRequest() throws Exception {
+        assertThat(mockMvc.perform(get("/purchases/export").param("format", "xml")).andReturn().getResponse().getStatus())
+                .isEqualTo(400);
+    }
+
+    // Mismos filtros, orden y campos en la búsqueda y en la exportación; se ordena por quantity sin pedirla
+    private List<JsonNode> search(String buyer) throws Exception {
+        String body = mockMvc.perform(get("/purchases")
+                        .param("buyer", buyer).param("minQuantity", "3").param("sort", "-quantity").param("fields", "id,status"))
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> purchases = new ArrayList<>();
+        objectMapper.readTree(body).forEach(purchases::add);
+        assertThat(purchases).hasSize(4);
+        return purchases;
+    }
+
+    private MockHttpServletResponse export(String format, String buyer) throws Exception {
+        return mockMvc.perform(get("/purchases/export").param("format", format)
+                        .param("buyer", buyer).param("minQuantity", "3").param("sort", "-quantity").param("fields", "id,status"))
+                .andReturn().getResponse();
+    }
+
+    private static String gunzip(MockHttpServletResponse response) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void save(String buyer) {
+        repository.saveAll(IntStream.rangeClosed(1, 6)
+                .mapToObj(quantity -> Purchase.builder()
+                        .bookId("9780307389732")
+                        .purchaseDate(LocalDateTime.of(2025, 2, 7, 10, 30))
+                        .quantity(quantity)
+                        .buyer(buyer)
+                        .status(quantity % 2 == 0 ? "COMPLETED" : "PENDING")
+                        .build())
+                .toList());
+    }
+}
@@ -0,0 +1,69 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.data.model.Purchase;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PurchaseMergePatcherTest {
+
+    private final PurchaseMergePatcher patcher = new PurchaseMergePatcher(new ObjectMapper());
+
+    @Test
+    void appliesTheFieldsOfThePatch() throws Exception {
+        Purchase purchase = purchase();
+
+        boolean changed = patcher.apply(purchase, """
+                {"quantity": "3", "status": "CANCELLED", "purchaseDate": "2025-02-01T09:00:00"}""");
+
+        assertThat(changed).isTrue();
+        assertThat(purchase.getQuantity()).isEqualTo(3);
+        assertThat(purchase.getStatus()).isEqualTo("CANCELLED");
+        assertThat(purchase.getPurchaseDate()).isEqualTo(LocalDateTime.of(2025, 2, 1, 9, 0));
+        assertThat(purchase.getBookId()).isEqualTo("9780307389732");
+    }
+
+    @Test
+    void sameValuesDoNotChangeThePurchase() throws Exception {
+        assertThat(patcher.apply(purchase(), "{\"id\": 7, \"quantity\": 2}")).isFalse();
+    }
+
+    // Como la deserialización de Purchase (FAIL_ON_UNKNOWN_PROPERTIES desactivado): también con null u objetos
+    @Test
+    void ignoresUnknownFields() throws Exception {
+        Purchase purchase = purchase();
+
+        boolean changed = patcher.apply(purchase, """
+                {"comment": "regalo", "extra": {"a": [1, {"b": null}]}, "other": null, "buyer": "ana@example.com"}""");
+
+        assertThat(changed).isTrue();
+        assertThat(purchase.getBuyer()).isEqualTo("ana@example.com");
+    }
+
+    @Test
+    void rejectsInvalidPatches() {
+        assertThatThrownBy(() -> patcher.apply(purchase(), "{\"buyer\": null}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> patcher.apply(purchase(), "{\"quantity\": {\"value\": 1}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> patcher.apply(purchase(), "{\"id\": 8}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> patcher.apply(purchase(), "[]"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Purchase purchase() {
+        return Purchase.builder()
+                .id(7L)
+                .bookId("9780307389732")
+                .purchaseDate(LocalDateTime.of(2025, 2, 7, 10, 30))
+                .quantity(2)
+                .buyer("user1@example.com")
+                .status("PENDING")
+                .build();
+    }
+}
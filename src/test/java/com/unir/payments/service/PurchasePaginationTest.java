@@ -0,0 +1,113 @@
+package com.unir.payments.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.payments.ApplicationTest;
+import com.unir.payments.controller.PurchasesController;
+import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.model.Purchase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Paginación por cursor (keyset) de GET /purchases: siguiendo X-Next-Cursor se recorren todas las compras una sola
+// vez y en el orden pedido, también con valores repetidos en la ordenación
+class PurchasePaginationTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PurchaseRepository repository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void cursorWalksEveryPurchaseOnce() throws Exception {
+        List<Purchase> saved = save("pagination-default@example.com");
+
+        List<Long> ids = walk("pagination-default@example.com", null);
+
+        assertThat(ids).containsExactlyElementsOf(saved.stream().map(Purchase::getId).sorted().toList());
+    }
+
+    // quantity se repite: el id que cierra la ordenación decide entre las compras empatadas
+    @Test
+    void cursorKeepsTheRequestedOrder() throws Exception {
+        List<Purchase> saved = save("pagination-sorted@example.com");
+
+        List<Long> ids = walk("pagination-sorted@example.com", "-quantity,purchaseDate");
+
+        assertThat(ids).containsExactlyElementsOf(saved.stream()
+                .sorted(Comparator.comparing(Purchase::getQuantity).reversed()
+                        .thenComparing(Purchase::getPurchaseDate)
+                        .thenComparing(Purchase::getId))
+                .map(Purchase::getId)
+                .toList());
+    }
+
+    // Un cursor de otra ordenación, o que no se puede leer, no se aplica en silencio
+    @Test
+    void foreignCursorIsABadRequest() throws Exception {
+        save("pagination-foreign@example.com");
+        MockHttpServletResponse first = page("pagination-foreign@example.com", "-quantity", null);
+        String cursor = first.getHeader(PurchasesController.NEXT_CURSOR_HEADER);
+        assertThat(cursor).isNotNull();
+
+        assertThat(page("pagination-foreign@example.com", "purchaseDate", cursor).getStatus()).isEqualTo(400);
+        assertThat(page("pagination-foreign@example.com", null, "not-a-cursor").getStatus()).isEqualTo(400);
+    }
+
+    // Sigue X-Next-Cursor hasta la última página, de 3 compras cada una
+    private List<Long> walk(String buyer, String sort) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletResponse response = page(buyer, sort, cursor);
+            assertThat(response.getStatus()).isEqualTo(200);
+            JsonNode page = objectMapper.readTree(response.getContentAsString());
+            assertThat(page.size()).isLessThanOrEqualTo(3);
+            page.forEach(purchase -> ids.add(purchase.get("id").asLong()));
+            cursor = response.getHeader(PurchasesController.NEXT_CURSOR_HEADER);
+            assertThat(++pages).isLessThanOrEqualTo(5);
+        } while (cursor != null);
+        return ids;
+    }
+
+    private MockHttpServletResponse page(String buyer, String sort, String after) throws Exception {
+        MockHttpServletRequestBuilder request = get("/purchases").param("buyer", buyer).param("limit", "3");
+        if (sort != null) {
+            request.param("sort", sort);
+        }
+        if (after != null) {
+            request.param("after", after);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    // Diez compras con cantidades 1-3 repetidas y fechas no ordenadas como los ids
+    private List<Purchase> save(String buyer) {
+        return repository.saveAll(IntStream.range(0, 10)
+                .mapToObj(i -> Purchase.builder()
+                        .bookId("9780307389732")
+                        .purchaseDate(LocalDateTime.of(2025, 2, 1 + (i * 7) % 10, 10, 30))
+                        .quantity(1 + i % 3)
+                        .buyer(buyer)
+                        .status("PENDING")
+                        .build())
+                .toList());
+    }
+}
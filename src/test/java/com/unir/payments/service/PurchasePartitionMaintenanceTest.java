@@ -0,0 +1,145 @@
+package com.unir.payments.service;
+
+import com.unir.payments.data.PurchasePartitionRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Mantenimiento de las particiones mensuales sobre PostgreSQL: creación de los meses siguientes, partición de un
+// mes con compras en purchases_default y archivado en CSV comprimido de los meses fuera de la retención.
+// Necesita un servidor PostgreSQL con permiso para crear bases de datos, p. ej.
+// PURCHASES_TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/catalogue
+@SpringBootTest(properties = {
+        "spring.sql.init.mode=never",
+        "eureka.client.enabled=false",
+        "purchases.partitions.premake-months=1",
+        "purchases.partitions.retention-months=2",
+        "purchases.partitions.maintenance-cron=-"})
+@EnabledIfEnvironmentVariable(named = "PURCHASES_TEST_POSTGRES_URL", matches = ".+")
+class PurchasePartitionMaintenanceTest {
+
+    private static final String DATABASE = "purchases_partitions_" + System.nanoTime();
+
+    private static final Path ARCHIVE_DIRECTORY = temporaryDirectory();
+
+    @Autowired
+    private PurchasePartitionMaintenance maintenance;
+
+    @Autowired
+    private PurchasePartitionRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        String url = System.getenv("PURCHASES_TEST_POSTGRES_URL");
+        try (SingleConnectionDataSource admin = admin()) {
+            new JdbcTemplate(admin).execute("CREATE DATABASE " + DATABASE);
+        }
+        registry.add("spring.datasource.url", () -> url.replaceFirst("/[^/?]*(\\?|$)", "/" + DATABASE + "$1"));
+        registry.add("spring.datasource.username", PurchasePartitionMaintenanceTest::username);
+        registry.add("spring.datasource.password", PurchasePartitionMaintenanceTest::password);
+        registry.add("purchases.partitions.archive-directory", ARCHIVE_DIRECTORY::toString);
+    }
+
+    @AfterAll
+    static void drop() {
+        try (SingleConnectionDataSource admin = admin()) {
+            new JdbcTemplate(admin).execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        }
+    }
+
+    @Test
+    void expiredMonthsAreArchivedAndDropped() throws IOException {
+        YearMonth current = YearMonth.now();
+        YearMonth expired = current.minusMonths(6);
+        // Al arrancar se crean el mes actual y el siguiente
+        assertThat(inTransaction(repository::partitions)).contains(current, current.plusMonths(1));
+
+        insert(1, expired.atDay(3).atTime(10, 0), 7);
+        insert(2, expired.atEndOfMonth().atTime(23, 59), 7);
+        insert(3, current.atDay(1).atTime(9, 0), 0);
+        assertThat(count("purchases_default")).isEqualTo(2);
+
+        // Las compras de purchases_default pasan a la nueva partición con todas sus columnas
+        transactionTemplate.executeWithoutResult(status -> repository.createPartition(expired));
+        assertThat(count("purchases_default")).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT version FROM purchases WHERE id IN (1, 2)", Long.class))
+                .containsOnly(7L);
+
+        maintenance.maintain();
+
+        assertThat(inTransaction(repository::partitions)).doesNotContain(expired).contains(current, current.plusMonths(1));
+        assertThat(inTransaction(repository::archives)).isEmpty();
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM purchases", Long.class)).containsExactly(3L);
+        List<String> archived = gunzip(ARCHIVE_DIRECTORY.resolve("purchases_" + expired + ".csv.gz")).lines().toList();
+        assertThat(archived).hasSize(3);
+        assertThat(archived.getFirst()).contains("id", "purchase_date", "version", "last_modified");
+        assertThat(archived.subList(1, 3)).allSatisfy(line -> assertThat(line).contains("9780307389732"));
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    private void insert(long id, LocalDateTime purchaseDate, long version) {
+        jdbcTemplate.update("INSERT INTO purchases (id, book_id, buyer, status, quantity, purchase_date, version)"
+                + " VALUES (?, '9780307389732', 'partitions@example.com', 'COMPLETED', 1, ?, ?)", id, purchaseDate, version);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private static String gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static SingleConnectionDataSource admin() {
+        return new SingleConnectionDataSource(System.getenv("PURCHASES_TEST_POSTGRES_URL"), username(), password(), true);
+    }
+
+    private static String username() {
+        return Objects.requireNonNullElse(System.getenv("PURCHASES_TEST_POSTGRES_USERNAME"), "books");
+    }
+
+    private static String password() {
+        return Objects.requireNonNullElse(System.getenv("PURCHASES_TEST_POSTGRES_PASSWORD"), "books123");
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("purchases-archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.unir.payments.service;
+
+import com.unir.payments.ApplicationTest;
+import com.unir.payments.data.PurchaseRepository;
+import com.unir.payments.data.model.Purchase;
+import com.unir.payments.data.model.PurchaseView;
+import com.unir.payments.data.utils.PurchaseQuery;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Streaming NDJSON de GET /purchases con lectura por adelantado: buffer-size 4 y stall-timeout 500 ms (ApplicationTest)
+class PurchaseStreamTest extends ApplicationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PurchasesService service;
+
+    @Autowired
+    private PurchaseRepository repository;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primaryDataSource;
+
+    // Más compras que el búfer: todas, una por línea y en el orden pedido
+    @Test
+    void ndjsonStreamsEveryMatchingPurchase() throws Exception {
+        save("stream-all@example.com", 10);
+
+        String body = mockMvc.perform(get("/purchases")
+                        .param("buyer", "stream-all@example.com")
+                        .param("sort", "-quantity")
+                        .param("fields", "quantity")
+                        .accept("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.lines()).containsExactlyElementsOf(IntStream.rangeClosed(1, 10)
+                .map(quantity -> 11 - quantity)
+                .mapToObj(quantity -> "{\"quantity\":" + quantity + "}")
+                .toList());
+    }
+
+    // Un cliente que deja de leer no retiene la conexión: pasado stall-timeout la consulta se abandona, y la
+    // respuesta termina con error tras las compras que ya estaban en el búfer
+    @Test
+    void stalledClientReleasesTheConnection() {
+        save("stream-stall@example.com", 20);
+        PurchaseQuery query = PurchaseQuery.builder().buyer("stream-stall@example.com").build();
+        List<PurchaseView> written = new ArrayList<>();
+        List<Integer> activeWhileStalled = new ArrayList<>();
+
+        assertThatThrownBy(() -> service.streamPurchases(query, purchase -> {
+            if (written.isEmpty()) {
+                activeWhileStalled.add(awaitIdlePool());
+            }
+            written.add(purchase);
+        })).hasMessageContaining("El cliente no ha leído compras");
+
+        assertThat(activeWhileStalled).containsExactly(0);
+        assertThat(written).hasSizeBetween(1, 6);
+    }
+
+    private int awaitIdlePool() {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (primaryDataSource.getHikariPoolMXBean().getActiveConnections() > 0
+                && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return primaryDataSource.getHikariPoolMXBean().getActiveConnections();
+    }
+
+    private void save(String buyer, int count) {
+        repository.saveAll(IntStream.rangeClosed(1, count)
+                .mapToObj(quantity -> Purchase.builder()
+                        .bookId("9780307389732")
+                        .purchaseDate(LocalDateTime.of(2025, 2, 7, 10, 30))
+                        .quantity(quantity)
+                        .buyer(buyer)
+                        .status("PENDING")
+                        .build())
+                .toList());
+    }
+}